@@ -0,0 +1,131 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.jdt.internal.corext.dom.ASTNodes;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Calls the {@link ASTNodes} predicates the cleanup rules call the most on all
+ * the matching nodes of a sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ASTNodesBenchmark {
+    /** The file name of the input sample, set by {@link BenchmarksRunner}. */
+    @Param("AddBracketsToControlStatementSample.java")
+    public String sampleName;
+
+    private final List<Expression> expressions= new ArrayList<>();
+    private final List<SimpleName> names= new ArrayList<>();
+    private final List<List<Statement>> statementLists= new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final CompilationUnit astRoot= BenchmarkProject.parse(BenchmarkProject.createSample(sampleName),
+                BenchmarkProject.newJavaProjectOptions());
+        astRoot.accept(new ASTVisitor() {
+            @Override
+            public void preVisit(ASTNode node) {
+                if (node instanceof Expression) {
+                    expressions.add((Expression) node);
+                }
+                if (node instanceof SimpleName) {
+                    names.add((SimpleName) node);
+                }
+            }
+
+            @Override
+            public boolean visit(Block node) {
+                statementLists.add(ASTNodes.statements(node));
+                return true;
+            }
+        });
+    }
+
+    @Benchmark
+    public void hasType(Blackhole blackhole) {
+        for (Expression expression : expressions) {
+            blackhole.consume(ASTNodes.hasType(expression, String.class.getCanonicalName(),
+                    List.class.getCanonicalName(), Integer.class.getCanonicalName()));
+        }
+    }
+
+    @Benchmark
+    public void instanceOf(Blackhole blackhole) {
+        for (Expression expression : expressions) {
+            blackhole.consume(ASTNodes.instanceOf(expression, Iterable.class.getCanonicalName()));
+        }
+    }
+
+    /**
+     * After the first invocation, this measures the lookup of the side effect
+     * level memoized on the nodes, which is what the rules mostly pay.
+     */
+    @Benchmark
+    public void isPassive(Blackhole blackhole) {
+        for (Expression expression : expressions) {
+            blackhole.consume(ASTNodes.isPassive(expression));
+        }
+    }
+
+    @Benchmark
+    public void isSameVariable(Blackhole blackhole) {
+        for (int i= 1; i < names.size(); i++) {
+            blackhole.consume(ASTNodes.isSameVariable(names.get(i - 1), names.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void match(Blackhole blackhole) {
+        for (List<Statement> statements : statementLists) {
+            for (int i= 1; i < statements.size(); i++) {
+                blackhole.consume(ASTNodes.match(statements.get(i - 1), statements.get(i)));
+            }
+        }
+    }
+}
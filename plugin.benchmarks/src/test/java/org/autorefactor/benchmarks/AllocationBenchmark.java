@@ -0,0 +1,231 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import static org.autorefactor.benchmarks.BenchmarkProject.ENVIRONMENT;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRun;
+import org.autorefactor.jdt.internal.ui.fix.AggregateASTVisitor;
+import org.autorefactor.jdt.internal.ui.fix.AllCleanUpRules;
+import org.autorefactor.jdt.internal.ui.fix.RefactoringContext;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+/**
+ * Measures the bytes allocated per visited AST node by one pass over the input
+ * samples, and fails when they exceed the allocation budget.
+ * <p>
+ * The engine overhead alone is measured by visiting the samples with no rule.
+ * The allocations of each rule are measured on its own sample, minus the
+ * engine overhead on this sample. The allocations are counted by the virtual
+ * machine for the current thread, so the rules must not run in parallel. Each
+ * measure is the smallest one of several passes, because the first passes also
+ * fill the caches of the AST nodes and of the rules.
+ * <p>
+ * The budget is read from <code>allocation.budget</code>,
+ * <code>allocation-budget.properties</code> by default. Its keys are
+ * <code>engine</code> for the engine overhead, the simple class names of the
+ * rules having their own budget, and <code>rules</code> for all the other
+ * rules. The values are in bytes per node. The report is written to
+ * <code>allocation.report</code>, <code>target/allocation-report.txt</code> by
+ * default, in the format of the budget, so that it can be used as a new
+ * budget: its values are the measures plus the headroom of
+ * <code>allocation.headroom</code>, 25% by default, against the noise of the
+ * measures. The benchmark is skipped while the budget has no value.
+ * <p>
+ * The samples are selected with <code>benchmarks.samples</code>, like for
+ * {@link BenchmarksRunner}.
+ */
+public class AllocationBenchmark {
+    private static final String ENGINE_KEY= "engine"; //$NON-NLS-1$
+    private static final String RULES_KEY= "rules"; //$NON-NLS-1$
+    private static final int NB_WARMUP_PASSES= 5;
+    private static final int NB_PASSES= 10;
+    private static final double DEFAULT_HEADROOM= 0.25;
+
+    private final ThreadMXBean threadMXBean= ManagementFactory.getThreadMXBean();
+    /**
+     * {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)}, looked
+     * up by reflection because this package is not part of the execution
+     * environment of the bundle.
+     */
+    private final Method getThreadAllocatedBytes;
+    private final JavaProjectOptions options= BenchmarkProject.newJavaProjectOptions();
+
+    public AllocationBenchmark() throws Exception {
+        getThreadAllocatedBytes= Class.forName("com.sun.management.ThreadMXBean") //$NON-NLS-1$
+                .getMethod("getThreadAllocatedBytes", long.class); //$NON-NLS-1$
+    }
+
+    @Test
+    public void checkAllocationBudget() throws Exception {
+        final String samples= System.getProperty("benchmarks.samples"); //$NON-NLS-1$
+        final String[] sampleNames= samples != null && !samples.isEmpty() ? samples.split(",") //$NON-NLS-1$
+                : BenchmarkProject.getSampleNames();
+        final Properties budget= loadBudget();
+
+        long engineBytes= 0;
+        long engineNodes= 0;
+        final Map<String, Double> measuredBytesPerNode= new TreeMap<>();
+        for (String sampleName : sampleNames) {
+            final ICompilationUnit cu= BenchmarkProject.createSample(sampleName);
+            final CompilationUnit astRoot= BenchmarkProject.parse(cu, options);
+            final long nbNodes= countNodes(astRoot);
+
+            final long sampleEngineBytes= measure(cu, astRoot, Collections.<RefactoringRule>emptyList());
+            engineBytes+= sampleEngineBytes;
+            engineNodes+= nbNodes;
+
+            final RefactoringRule rule= getRule(sampleName);
+            if (rule != null) {
+                final long ruleBytes= measure(cu, astRoot, Collections.singletonList(rule)) - sampleEngineBytes;
+                measuredBytesPerNode.put(rule.getClass().getSimpleName(), (double) Math.max(0, ruleBytes) / nbNodes);
+            }
+        }
+        measuredBytesPerNode.put(ENGINE_KEY, (double) engineBytes / Math.max(1, engineNodes));
+
+        final List<String> overBudget= new ArrayList<>();
+        for (Map.Entry<String, Double> entry : measuredBytesPerNode.entrySet()) {
+            final double bytesPerNode= entry.getValue();
+            final double budgetBytesPerNode= getBudget(budget, entry.getKey());
+            if (bytesPerNode > budgetBytesPerNode) {
+                overBudget.add(String.format(Locale.ROOT, "%s allocates %.1f bytes per node, its budget is %.1f", //$NON-NLS-1$
+                        entry.getKey(), bytesPerNode, budgetBytesPerNode));
+            }
+        }
+        writeReport(measuredBytesPerNode);
+        assumeFalse("No allocation budget, see the measures in the report", budget.isEmpty()); //$NON-NLS-1$
+        assertTrue("Allocation budget exceeded: " + overBudget, overBudget.isEmpty()); //$NON-NLS-1$
+    }
+
+    /** Returns the smallest number of bytes allocated by a pass of the provided rules. */
+    private long measure(ICompilationUnit cu, CompilationUnit astRoot, List<RefactoringRule> rules) throws Exception {
+        final AggregateASTVisitor visitor= new AggregateASTVisitor(rules);
+        long minBytes= Long.MAX_VALUE;
+        for (int i= 0; i < NB_WARMUP_PASSES + NB_PASSES; i++) {
+            final RefactoringContext ctx= new RefactoringContext(cu, astRoot, options,
+                    SubMonitor.convert(new NullProgressMonitor()), ENVIRONMENT, new RefactoringRun());
+            final long threadId= Thread.currentThread().getId();
+            final long start= getAllocatedBytes(threadId);
+            visitor.setRefactoringContext(ctx);
+            visitor.getRefactorings(astRoot);
+            final long bytes= getAllocatedBytes(threadId) - start;
+            if (i >= NB_WARMUP_PASSES) {
+                minBytes= Math.min(minBytes, bytes);
+            }
+        }
+        return minBytes;
+    }
+
+    private long getAllocatedBytes(long threadId) throws Exception {
+        return (Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId);
+    }
+
+    private static long countNodes(CompilationUnit astRoot) {
+        final long[] nbNodes= { 0 };
+        astRoot.accept(new ASTVisitor() {
+            @Override
+            public void preVisit(ASTNode node) {
+                nbNodes[0]++;
+            }
+        });
+        return nbNodes[0];
+    }
+
+    private static RefactoringRule getRule(String sampleName) {
+        final String ruleName= sampleName.replace("Sample.java", "CleanUp"); //$NON-NLS-1$ //$NON-NLS-2$
+        for (RefactoringRule rule : AllCleanUpRules.getAllCleanUpRules()) {
+            if (rule.getClass().getSimpleName().equals(ruleName)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static Properties loadBudget() throws Exception {
+        final Properties budget= new Properties();
+        final InputStream in= new FileInputStream(
+                System.getProperty("allocation.budget", "allocation-budget.properties")); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            budget.load(in);
+        } finally {
+            in.close();
+        }
+        return budget;
+    }
+
+    private static double getBudget(Properties budget, String key) {
+        final String value= budget.getProperty(key,
+                ENGINE_KEY.equals(key) ? null : budget.getProperty(RULES_KEY));
+        return value != null ? Double.parseDouble(value) : Double.MAX_VALUE;
+    }
+
+    private static void writeReport(Map<String, Double> measuredBytesPerNode) throws Exception {
+        final File reportFile= new File(
+                System.getProperty("allocation.report", "target/allocation-report.txt")); //$NON-NLS-1$ //$NON-NLS-2$
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        final double headroom= Double.parseDouble(
+                System.getProperty("allocation.headroom", String.valueOf(DEFAULT_HEADROOM))); //$NON-NLS-1$
+        final PrintWriter out= new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8")); //$NON-NLS-1$
+        try {
+            out.println(String.format(Locale.ROOT, "# Bytes allocated per visited AST node, plus %.0f%% of headroom", //$NON-NLS-1$
+                    headroom * 100));
+            for (Map.Entry<String, Double> entry : measuredBytesPerNode.entrySet()) {
+                out.println(String.format(Locale.ROOT, "# %s measured %.1f", entry.getKey(), entry.getValue())); //$NON-NLS-1$
+                out.println(String.format(Locale.ROOT, "%s=%.0f", entry.getKey(), //$NON-NLS-1$
+                        Math.max(1, Math.ceil(entry.getValue() * (1 + headroom)))));
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
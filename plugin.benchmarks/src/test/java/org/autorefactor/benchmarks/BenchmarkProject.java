@@ -0,0 +1,239 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.autorefactor.environment.Environment;
+import org.autorefactor.environment.EventLoop;
+import org.autorefactor.environment.LogEvent;
+import org.autorefactor.environment.Logger;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptionsImpl;
+import org.autorefactor.jdt.internal.corext.dom.Release;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * The Java project the benchmarks create their compilation units in. Its class
+ * path is the class path of the samples, so that the bindings resolve like in
+ * the tests.
+ */
+public final class BenchmarkProject {
+    /** The directory of the samples of each cleanup rule. */
+    public static final String SAMPLES_BASE_DIR= "../samples/src/test/java/org/autorefactor/jdt/internal/ui/fix/"; //$NON-NLS-1$
+    /** The package of the input samples. */
+    public static final String SAMPLES_IN_PACKAGE= "org.autorefactor.jdt.internal.ui.fix.samples_in"; //$NON-NLS-1$
+
+    /** Environment running the event loop on the current thread and logging to the standard error. */
+    public static final Environment ENVIRONMENT= new Environment(new EventLoop() {
+        public <E extends Exception> void syncExec(Callable<E> callable) throws E {
+            try {
+                final E ex= callable.call();
+                if (ex != null) {
+                    throw ex;
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }, null, new Logger() {
+        public void error(String message) {
+            System.err.println("ERROR " + message); //$NON-NLS-1$
+        }
+
+        public void error(String message, Exception e) {
+            error(message);
+            e.printStackTrace();
+        }
+
+        public void warn(String message) {
+            System.err.println("WARN " + message); //$NON-NLS-1$
+        }
+
+        public void info(String message) {
+            // The benchmarks output must not be cluttered
+        }
+
+        public void log(LogEvent event) {
+            if (event.getSeverity() != LogEvent.Severity.INFO) {
+                System.err.println(event);
+                if (event.getException() != null) {
+                    event.getException().printStackTrace();
+                }
+            }
+        }
+    }, null);
+
+    private static IPackageFragmentRoot sourceFolder;
+
+    private BenchmarkProject() {
+    }
+
+    /**
+     * Returns the Java project options of the samples.
+     *
+     * @return the Java project options of the samples
+     */
+    public static JavaProjectOptions newJavaProjectOptions() {
+        final JavaProjectOptionsImpl options= new JavaProjectOptionsImpl();
+        options.setTabSize(4);
+        options.setJavaSERelease(Release.javaSE("1.8.0")); //$NON-NLS-1$
+        return options;
+    }
+
+    /**
+     * Returns the file names of the input samples, sorted.
+     *
+     * @return the file names of the input samples
+     */
+    public static String[] getSampleNames() {
+        final String[] sampleNames= new File(SAMPLES_BASE_DIR, "samples_in").list(); //$NON-NLS-1$
+        Arrays.sort(sampleNames);
+        return sampleNames;
+    }
+
+    /**
+     * Creates the compilation unit of an input sample in the benchmark project.
+     *
+     * @param sampleName the file name of the input sample
+     * @return the compilation unit
+     * @throws Exception if the compilation unit cannot be created
+     */
+    public static ICompilationUnit createSample(String sampleName) throws Exception {
+        final String source= new String(Files.readAllBytes(new File(SAMPLES_BASE_DIR, "samples_in/" + sampleName) //$NON-NLS-1$
+                .toPath()), StandardCharsets.UTF_8);
+        return createCompilationUnit(SAMPLES_IN_PACKAGE, sampleName, source);
+    }
+
+    /**
+     * Creates a compilation unit in the benchmark project.
+     *
+     * @param packageName the package of the compilation unit
+     * @param fileName    the file name of the compilation unit
+     * @param source      the source of the compilation unit
+     * @return the compilation unit
+     * @throws Exception if the compilation unit cannot be created
+     */
+    public static synchronized ICompilationUnit createCompilationUnit(String packageName, String fileName,
+            String source) throws Exception {
+        if (sourceFolder == null) {
+            sourceFolder= createSourceFolder();
+        }
+        final IPackageFragment packageFragment= sourceFolder.createPackageFragment(packageName, true, null);
+        final ICompilationUnit cu= packageFragment.createCompilationUnit(fileName, source, true, null);
+        cu.save(null, true);
+        return cu;
+    }
+
+    /**
+     * Parses the provided compilation unit with the bindings, like the cleanup
+     * engine does.
+     *
+     * @param cu      the compilation unit
+     * @param options the Java project options
+     * @return the AST of the compilation unit
+     */
+    public static CompilationUnit parse(ICompilationUnit cu, JavaProjectOptions options) {
+        final ASTParser parser= ASTParser.newParser(AST.JLS8);
+        parser.setSource(cu);
+        parser.setResolveBindings(true);
+        parser.setCompilerOptions(options.getCompilerOptions());
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    private static IPackageFragmentRoot createSourceFolder() throws Exception {
+        final IProject project= ResourcesPlugin.getWorkspace().getRoot().getProject("benchmarks"); //$NON-NLS-1$
+        if (!project.exists()) {
+            project.create(null);
+        }
+        project.open(null);
+        final IProjectDescription description= project.getDescription();
+        description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+        project.setDescription(description, null);
+
+        final IFolder binFolder= project.getFolder("bin"); //$NON-NLS-1$
+        if (!binFolder.exists()) {
+            binFolder.create(false, true, null);
+        }
+        final IFolder srcFolder= project.getFolder("src"); //$NON-NLS-1$
+        if (!srcFolder.exists()) {
+            srcFolder.create(false, true, null);
+        }
+
+        final IJavaProject javaProject= JavaCore.create(project);
+        javaProject.setOutputLocation(binFolder.getFullPath(), null);
+        final IPackageFragmentRoot root= javaProject.getPackageFragmentRoot(srcFolder);
+        final List<IClasspathEntry> entries= new ArrayList<>();
+        entries.add(JavaCore.newSourceEntry(root.getPath()));
+        for (File jar : SamplesClasspath.getJars()) {
+            entries.add(JavaCore.newLibraryEntry(new Path(jar.getAbsolutePath()), null, null));
+        }
+        javaProject.setRawClasspath(entries.toArray(new IClasspathEntry[entries.size()]), null);
+        return root;
+    }
+
+    /**
+     * Imports into the workspace an existing Java project, for example created by
+     * the {@link SyntheticProjectGenerator}. The project is not copied.
+     *
+     * @param projectDir the directory of the project, holding its
+     *                   <code>.project</code> file
+     * @return the Java project
+     * @throws CoreException if the project cannot be imported
+     */
+    public static IJavaProject importProject(File projectDir) throws CoreException {
+        final IWorkspace workspace= ResourcesPlugin.getWorkspace();
+        final IProjectDescription description= workspace
+                .loadProjectDescription(new Path(projectDir.getAbsolutePath()).append(".project")); //$NON-NLS-1$
+        final IProject project= workspace.getRoot().getProject(description.getName());
+        if (!project.exists()) {
+            project.create(description, null);
+        }
+        project.open(null);
+        return JavaCore.create(project);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH benchmarks of this bundle from the Eclipse test runtime and
+ * writes their results as JSON.
+ * <p>
+ * The system properties are:
+ * <ul>
+ * <li><code>benchmarks.include</code>: regular expression selecting the
+ * benchmarks to run, all of them by default;</li>
+ * <li><code>benchmarks.samples</code>: comma separated file names of the
+ * samples to run the benchmarks on, all the input samples by default;</li>
+ * <li><code>benchmarks.result</code>: the JSON result file,
+ * <code>target/jmh-result.json</code> by default;</li>
+ * <li><code>benchmarks.gc</code>: <code>true</code> to add the JMH GC
+ * profiler, which reports the bytes allocated per operation as
+ * <code>gc.alloc.rate.norm</code>.</li>
+ * </ul>
+ */
+public class BenchmarksRunner {
+    @Test
+    public void runBenchmarks() throws Exception {
+        final String samples= System.getProperty("benchmarks.samples"); //$NON-NLS-1$
+        final String[] sampleNames= samples != null && !samples.isEmpty() ? samples.split(",") //$NON-NLS-1$
+                : BenchmarkProject.getSampleNames();
+        final File resultFile= new File(System.getProperty("benchmarks.result", "target/jmh-result.json")); //$NON-NLS-1$ //$NON-NLS-2$
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+
+        final ChainedOptionsBuilder builder= new OptionsBuilder()
+                .include(System.getProperty("benchmarks.include", ".*")) //$NON-NLS-1$ //$NON-NLS-2$
+                .param("sampleName", sampleNames) //$NON-NLS-1$
+                // The rules need the workspace and the Java model of this virtual machine
+                .forks(0)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.milliseconds(500))
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.getPath());
+        if (Boolean.getBoolean("benchmarks.gc")) { //$NON-NLS-1$
+            builder.addProfiler(GCProfiler.class);
+        }
+        final Options options= builder.build();
+        final Collection<RunResult> results= new Runner(options).run();
+        assertFalse("No benchmark matched " + options.getIncludes(), results.isEmpty()); //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.cfg.CFGBasicBlock;
+import org.autorefactor.cfg.CFGBuilder;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Builds the control flow graphs of all the methods of a sample. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CFGBuilderBenchmark {
+    /** The file name of the input sample, set by {@link BenchmarksRunner}. */
+    @Param("AddBracketsToControlStatementSample.java")
+    public String sampleName;
+
+    private String source;
+    private JavaProjectOptions options;
+    private CompilationUnit astRoot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final ICompilationUnit cu= BenchmarkProject.createSample(sampleName);
+        source= cu.getSource();
+        options= BenchmarkProject.newJavaProjectOptions();
+        astRoot= BenchmarkProject.parse(cu, options);
+    }
+
+    @Benchmark
+    public List<CFGBasicBlock> buildCFG() {
+        return new CFGBuilder(source, options).buildCFG(astRoot);
+    }
+}
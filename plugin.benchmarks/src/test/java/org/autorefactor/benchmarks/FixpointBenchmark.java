@@ -0,0 +1,94 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import static org.autorefactor.benchmarks.BenchmarkProject.ENVIRONMENT;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.jdt.internal.corext.dom.ApplyRefactoringsJob;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.ui.fix.AggregateASTVisitor;
+import org.autorefactor.jdt.internal.ui.fix.AllCleanUpRules;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.TextEdit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Runs the whole cleanup engine on a sample: all the cleanup rules are applied
+ * pass after pass until none of them changes the source any more.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FixpointBenchmark {
+    /** The file name of the input sample, set by {@link BenchmarksRunner}. */
+    @Param("AddBracketsToControlStatementSample.java")
+    public String sampleName;
+
+    private ICompilationUnit cu;
+    private String source;
+    private JavaProjectOptions options;
+    private ApplyRefactoringsJob job;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cu= BenchmarkProject.createSample(sampleName);
+        source= cu.getSource();
+        options= BenchmarkProject.newJavaProjectOptions();
+        job= new ApplyRefactoringsJob(null, null, ENVIRONMENT);
+    }
+
+    /**
+     * Restores the source of the sample: each invocation saves the refactored
+     * source in the compilation unit, so the next one would only parse code which
+     * is already clean.
+     */
+    @Setup(Level.Invocation)
+    public void restoreSample() throws Exception {
+        cu.getBuffer().setContents(source);
+        cu.save(null, true);
+    }
+
+    @Benchmark
+    public List<TextEdit> applyRefactoring() throws Exception {
+        return job.applyRefactoring(new Document(source), cu,
+                new AggregateASTVisitor(AllCleanUpRules.getAllCleanUpRules()), options,
+                SubMonitor.convert(new NullProgressMonitor()), true);
+    }
+}
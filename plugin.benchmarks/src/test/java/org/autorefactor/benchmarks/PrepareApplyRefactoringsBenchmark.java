@@ -0,0 +1,104 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+package org.autorefactor.benchmarks;
+
+import static org.autorefactor.benchmarks.BenchmarkProject.ENVIRONMENT;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.jdt.internal.corext.dom.PrepareApplyRefactoringsJob;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringUnit;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Collects the compilation units of a source folder with thousands of packages,
+ * like {@link PrepareApplyRefactoringsJob} does before cleaning them up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrepareApplyRefactoringsBenchmark {
+    private static final int NB_TOP_PACKAGES= 40;
+    private static final int NB_SUB_PACKAGES= 50;
+
+    private List<IJavaElement> rootSelection;
+    private List<IJavaElement> packagesSelection;
+    private PrepareApplyRefactoringsJob rootJob;
+    private PrepareApplyRefactoringsJob packagesJob;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        IPackageFragmentRoot root= null;
+        for (int t= 0; t < NB_TOP_PACKAGES; t++) {
+            for (int s= 0; s < NB_SUB_PACKAGES; s++) {
+                final String packageName= "benchmark.top" + t + ".sub" + s; //$NON-NLS-1$ //$NON-NLS-2$
+                final ICompilationUnit cu= BenchmarkProject.createCompilationUnit(packageName, "A.java", //$NON-NLS-1$
+                        "package " + packageName + ";\n\npublic class A {\n}\n"); //$NON-NLS-1$ //$NON-NLS-2$
+                root= (IPackageFragmentRoot) cu.getParent().getParent();
+            }
+        }
+
+        rootSelection= Collections.<IJavaElement>singletonList(root);
+        packagesSelection= new ArrayList<>();
+        for (int t= 0; t < NB_TOP_PACKAGES; t++) {
+            packagesSelection.add(root.getPackageFragment("benchmark.top" + t)); //$NON-NLS-1$
+        }
+
+        rootJob= newJob(rootSelection);
+        packagesJob= newJob(packagesSelection);
+    }
+
+    private static PrepareApplyRefactoringsJob newJob(List<IJavaElement> selection) {
+        return new PrepareApplyRefactoringsJob(selection, Collections.<RefactoringRule>emptyList(), ENVIRONMENT);
+    }
+
+    /** The whole source folder is selected. */
+    @Benchmark
+    public Queue<RefactoringUnit> collectRoot() {
+        return rootJob.collectRefactoringUnits(rootSelection, new NullProgressMonitor());
+    }
+
+    /** The packages are selected and looked up with their subpackages. */
+    @Benchmark
+    public Queue<RefactoringUnit> collectPackages() {
+        return packagesJob.collectRefactoringUnits(packagesSelection, new NullProgressMonitor());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+package org.autorefactor.benchmarks;
+
+import static org.autorefactor.benchmarks.BenchmarkProject.ENVIRONMENT;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.Refactorings;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Records many edits in {@link Refactorings} for a big file, while checking
+ * whether the deepest nodes have already been refactored like the cleanups do.
+ * The results are per edit: with the GC profiler, <code>gc.alloc.rate.norm</code>
+ * is the number of bytes allocated per edit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RefactoringsBenchmark {
+    private static final int NB_METHODS= 200;
+    private static final int NB_STATEMENTS= 50;
+
+    private ICompilationUnit cu;
+    private JavaProjectOptions options;
+    private CompilationUnit astRoot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cu= BenchmarkProject.createCompilationUnit("org.autorefactor.benchmark", "ManyEdits.java", newSource()); //$NON-NLS-1$ //$NON-NLS-2$
+        options= BenchmarkProject.newJavaProjectOptions();
+    }
+
+    /** Each invocation records its edits in a new AST, like each pass of the cleanups. */
+    @Setup(Level.Invocation)
+    public void parse() {
+        astRoot= BenchmarkProject.parse(cu, options);
+    }
+
+    private static String newSource() {
+        final StringBuilder sb= new StringBuilder();
+        sb.append("package org.autorefactor.benchmark;\n\npublic class ManyEdits {\n"); //$NON-NLS-1$
+        sb.append("    private int sum(int i) {\n        return i + 1;\n    }\n\n"); //$NON-NLS-1$
+        for (int m= 0; m < NB_METHODS; m++) {
+            sb.append("    public int method").append(m).append("(int i) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            for (int s= 0; s < NB_STATEMENTS; s++) {
+                sb.append("        if (i > ").append(s).append(") {\n            i= sum(i);\n        }\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            sb.append("        return i;\n    }\n\n"); //$NON-NLS-1$
+        }
+        return sb.append("}\n").toString(); //$NON-NLS-1$
+    }
+
+    /** Removes, replaces and inserts statements in every method. */
+    @Benchmark
+    @OperationsPerInvocation(NB_METHODS * NB_STATEMENTS)
+    public Refactorings recordEdits() {
+        final Refactorings refactorings= new Refactorings(astRoot, ENVIRONMENT.getEventLoop(),
+                SubMonitor.convert(new NullProgressMonitor()));
+        final TypeDeclaration type= (TypeDeclaration) astRoot.types().get(0);
+
+        for (MethodDeclaration method : type.getMethods()) {
+            @SuppressWarnings("unchecked")
+            final List<Statement> statements= method.getBody().statements();
+
+            for (int i= 0; i < statements.size() - 1; i++) {
+                final Statement statement= statements.get(i);
+                if (refactorings.hasBeenRefactored(statement)) {
+                    continue;
+                }
+
+                switch (i % 3) {
+                case 0:
+                    refactorings.remove(statement);
+                    break;
+
+                case 1:
+                    refactorings.replace(statement, refactorings.createCopyTarget(statements.get(i + 1)));
+                    break;
+
+                default:
+                    refactorings.insertBefore(refactorings.createCopyTarget(statement), statement);
+                    break;
+                }
+            }
+        }
+        return refactorings;
+    }
+}
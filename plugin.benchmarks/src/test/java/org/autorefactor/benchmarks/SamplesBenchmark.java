@@ -0,0 +1,82 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import static org.autorefactor.benchmarks.BenchmarkProject.ENVIRONMENT;
+
+import java.util.concurrent.TimeUnit;
+
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRun;
+import org.autorefactor.jdt.internal.corext.dom.Refactorings;
+import org.autorefactor.jdt.internal.ui.fix.AggregateASTVisitor;
+import org.autorefactor.jdt.internal.ui.fix.AllCleanUpRules;
+import org.autorefactor.jdt.internal.ui.fix.RefactoringContext;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses a sample and runs one pass of all the cleanup rules over its AST,
+ * without applying the changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SamplesBenchmark {
+    /** The file name of the input sample, set by {@link BenchmarksRunner}. */
+    @Param("AddBracketsToControlStatementSample.java")
+    public String sampleName;
+
+    private ICompilationUnit cu;
+    private JavaProjectOptions options;
+    private AggregateASTVisitor visitor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cu= BenchmarkProject.createSample(sampleName);
+        options= BenchmarkProject.newJavaProjectOptions();
+        visitor= new AggregateASTVisitor(AllCleanUpRules.getAllCleanUpRules());
+    }
+
+    @Benchmark
+    public Refactorings parseAndVisit() {
+        final CompilationUnit astRoot= BenchmarkProject.parse(cu, options);
+        visitor.setRefactoringContext(new RefactoringContext(cu, astRoot, options,
+                SubMonitor.convert(new NullProgressMonitor()), ENVIRONMENT, new RefactoringRun()));
+        return visitor.getRefactorings(astRoot);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * The class path the samples compile against: the Java runtime library and the
+ * dependencies declared by the pom of the samples, in the local Maven
+ * repository.
+ * <p>
+ * This class only depends on the JDK, so that the
+ * {@link SyntheticProjectGenerator} can run outside of Eclipse.
+ */
+final class SamplesClasspath {
+    private static final String SAMPLES_POM= "../samples/pom.xml"; //$NON-NLS-1$
+
+    private SamplesClasspath() {
+    }
+
+    /**
+     * Returns the jars of the class path of the samples.
+     *
+     * @return the jars of the class path of the samples
+     * @throws IOException if the pom of the samples cannot be read
+     */
+    static List<File> getJars() throws IOException {
+        final List<File> jars= new ArrayList<>();
+        jars.add(getRtJar());
+        jars.addAll(getSamplesDependencies());
+        return jars;
+    }
+
+    private static File getRtJar() {
+        final String classPath= System.getProperty("sun.boot.class.path"); //$NON-NLS-1$
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (entry.endsWith("rt.jar")) { //$NON-NLS-1$
+                return new File(entry);
+            }
+        }
+        throw new IllegalStateException("Could not find Java runtime library rt.jar"); //$NON-NLS-1$
+    }
+
+    private static List<File> getSamplesDependencies() throws IOException {
+        final File m2Repo= new File(System.getProperty("maven.repo.local", //$NON-NLS-1$
+                System.getProperty("user.home") + "/.m2/repository")); //$NON-NLS-1$ //$NON-NLS-2$
+        final NodeList dependencies;
+        try {
+            dependencies= DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(SAMPLES_POM))
+                    .getElementsByTagName("dependency"); //$NON-NLS-1$
+        } catch (Exception e) {
+            throw new IOException("Cannot read " + SAMPLES_POM, e); //$NON-NLS-1$
+        }
+        final List<File> jars= new ArrayList<>(dependencies.getLength());
+        for (int i= 0; i < dependencies.getLength(); i++) {
+            final Element dependency= (Element) dependencies.item(i);
+            final String groupId= getText(dependency, "groupId"); //$NON-NLS-1$
+            final String artifactId= getText(dependency, "artifactId"); //$NON-NLS-1$
+            final String version= getText(dependency, "version"); //$NON-NLS-1$
+            jars.add(new File(m2Repo, groupId.replace('.', '/') + '/' + artifactId + '/' + version + '/' + artifactId
+                    + '-' + version + ".jar")); //$NON-NLS-1$
+        }
+        return jars;
+    }
+
+    private static String getText(Element element, String tagName) throws IOException {
+        final NodeList nodes= element.getElementsByTagName(tagName);
+        if (nodes.getLength() == 0) {
+            throw new IOException("Missing " + tagName + " in a dependency of " + SAMPLES_POM); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return nodes.item(0).getTextContent().trim();
+    }
+}
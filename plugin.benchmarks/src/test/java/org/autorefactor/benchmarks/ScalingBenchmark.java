@@ -0,0 +1,115 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import static org.autorefactor.benchmarks.BenchmarkProject.ENVIRONMENT;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.autorefactor.jdt.internal.corext.dom.ApplyRefactoringsJob;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRun;
+import org.autorefactor.jdt.internal.corext.dom.RunStatistics;
+import org.autorefactor.jdt.internal.ui.fix.AggregateASTVisitor;
+import org.autorefactor.jdt.internal.ui.fix.AllCleanUpRules;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.junit.Test;
+
+/**
+ * Cleans up a whole synthetic project, one file after the other, and reports
+ * the files per second, the peak heap usage and the iterations per file.
+ * <p>
+ * The project is the one in the directory of the <code>benchmarks.project</code>
+ * system property, <code>target/synthetic-project</code> by default. When it
+ * does not exist, it is generated by the {@link SyntheticProjectGenerator} with
+ * <code>benchmarks.files</code> files, 1000 by default.
+ * <p>
+ * The files are changed: generate a new project to run the benchmark again.
+ * This is not run by default. Run it on demand with
+ * {@code mvn clean install -Pbenchmarks -Dtest=ScalingBenchmark}.
+ */
+public class ScalingBenchmark {
+    private static final int MEMORY_SAMPLING_PERIOD= 50;
+
+    @Test
+    public void refactorSyntheticProject() throws Exception {
+        final File projectDir= new File(System.getProperty("benchmarks.project", "target/synthetic-project")); //$NON-NLS-1$ //$NON-NLS-2$
+        if (!new File(projectDir, ".project").exists()) { //$NON-NLS-1$
+            final SyntheticProjectGenerator generator= new SyntheticProjectGenerator();
+            generator.setNbFiles(Integer.getInteger("benchmarks.files", 1000)); //$NON-NLS-1$
+            generator.generate(projectDir);
+        }
+        final List<ICompilationUnit> compilationUnits= getCompilationUnits(BenchmarkProject.importProject(projectDir));
+
+        final JavaProjectOptions options= BenchmarkProject.newJavaProjectOptions();
+        final RefactoringRun run= new RefactoringRun();
+        final ApplyRefactoringsJob job= new ApplyRefactoringsJob(null, null, ENVIRONMENT, run);
+        final AggregateASTVisitor visitor= new AggregateASTVisitor(AllCleanUpRules.getAllCleanUpRules());
+        final Runtime runtime= Runtime.getRuntime();
+        runtime.gc();
+        final long usedBefore= runtime.totalMemory() - runtime.freeMemory();
+        long maxUsed= usedBefore;
+
+        run.start();
+        final long start= System.nanoTime();
+        for (int i= 0; i < compilationUnits.size(); i++) {
+            job.applyRefactoring(compilationUnits.get(i), visitor, options,
+                    SubMonitor.convert(new NullProgressMonitor()), true);
+            if (i % MEMORY_SAMPLING_PERIOD == 0) {
+                maxUsed= Math.max(maxUsed, runtime.totalMemory() - runtime.freeMemory());
+            }
+        }
+        final long nanos= System.nanoTime() - start;
+
+        final RunStatistics statistics= run.getStatistics();
+        assertTrue(statistics.getFilesRefactored() > 0);
+        System.out.println(getClass().getSimpleName() + ": " + compilationUnits.size() + " files, " //$NON-NLS-1$ //$NON-NLS-2$
+                + compilationUnits.size() * 1000000000L / nanos + " files/s, " //$NON-NLS-1$
+                + (maxUsed - usedBefore) / (1024 * 1024) + " MB peak heap growth, " //$NON-NLS-1$
+                + String.format("%.2f", statistics.getAverageIterations()) + " average and " //$NON-NLS-1$ //$NON-NLS-2$
+                + statistics.getMaxIterations() + " max iterations per file"); //$NON-NLS-1$
+    }
+
+    private static List<ICompilationUnit> getCompilationUnits(IJavaProject javaProject) throws Exception {
+        final List<ICompilationUnit> compilationUnits= new ArrayList<>();
+        for (IPackageFragment packageFragment : javaProject.getPackageFragments()) {
+            if (packageFragment.getKind() == IPackageFragmentRoot.K_SOURCE) {
+                for (ICompilationUnit cu : packageFragment.getCompilationUnits()) {
+                    compilationUnits.add(cu);
+                }
+            }
+        }
+        return compilationUnits;
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates a synthetic Java project at production scale out of the input
+ * samples of the cleanup rules, to measure how the cleanup engine scales.
+ * <p>
+ * Each generated file holds a top level class which contains:
+ * <ul>
+ * <li>copies of randomly picked input samples, as static nested types, so that
+ * every rule finds code to clean up;</li>
+ * <li>generated methods of the requested length and nesting depth.</li>
+ * </ul>
+ * The imports of the samples are merged, and some of them are turned into
+ * wildcard imports. The samples whose imports clash with the imports already in
+ * the file are skipped for this file. Like in real code bases, two wildcard
+ * imports may still make a simple name ambiguous.
+ * <p>
+ * The project directory holds the <code>.project</code> and
+ * <code>.classpath</code> files of an Eclipse Java project compiling against the
+ * class path of the samples: it can be imported as is in a workspace. The
+ * generation is deterministic for a given seed.
+ * <p>
+ * This class only depends on the JDK. Run it with:
+ *
+ * <pre>
+ * java org.autorefactor.benchmarks.SyntheticProjectGenerator &lt;project directory&gt; [files=1000] [samplesPerFile=2]
+ *     [methodsPerFile=5] [methodLength=20] [nestingDepth=2] [commentDensity=0.1] [wildcardImportRatio=0.2]
+ *     [seed=42]
+ * </pre>
+ *
+ * It must run from the <code>plugin.benchmarks</code> directory, like the
+ * benchmarks, to find the samples.
+ */
+public class SyntheticProjectGenerator {
+    private static final String SAMPLES_IN_DIR= BenchmarkProject.SAMPLES_BASE_DIR + "samples_in"; //$NON-NLS-1$
+    private static final int FILES_PER_PACKAGE= 50;
+    private static final String LIST_IMPORT= "java.util.List"; //$NON-NLS-1$
+
+    private static final Pattern PACKAGE= Pattern.compile("^package\\s+[\\w.]+\\s*;", Pattern.MULTILINE); //$NON-NLS-1$
+    private static final Pattern IMPORT= Pattern.compile("^import\\s+(static\\s+)?([\\w.]+?)(\\.\\*)?\\s*;", //$NON-NLS-1$
+            Pattern.MULTILINE);
+    private static final Pattern TOP_LEVEL_TYPE= Pattern.compile(
+            "^((?:(?:public|protected|private|abstract|final|strictfp)\\s+)*)(class|interface|enum|@interface)\\b", //$NON-NLS-1$
+            Pattern.MULTILINE);
+    private static final Pattern LINE_START= Pattern.compile("^(?=.)", Pattern.MULTILINE); //$NON-NLS-1$
+
+    /** An input sample, ready to be nested in a generated class. */
+    private static final class Sample {
+        private final List<String> imports;
+        private final List<String> staticImports;
+        private final String body;
+
+        private Sample(List<String> imports, List<String> staticImports, String body) {
+            this.imports= imports;
+            this.staticImports= staticImports;
+            this.body= body;
+        }
+    }
+
+    private int nbFiles= 1000;
+    private int samplesPerFile= 2;
+    private int methodsPerFile= 5;
+    private int methodLength= 20;
+    private int nestingDepth= 2;
+    private double commentDensity= 0.1;
+    private double wildcardImportRatio= 0.2;
+    private long seed= 42;
+
+    /**
+     * Generates a synthetic project.
+     *
+     * @param args the project directory, then the settings as
+     *             <code>name=value</code>
+     * @throws IOException if the project cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SyntheticProjectGenerator <project directory> [files=1000] [samplesPerFile=2]" //$NON-NLS-1$
+                    + " [methodsPerFile=5] [methodLength=20] [nestingDepth=2] [commentDensity=0.1]" //$NON-NLS-1$
+                    + " [wildcardImportRatio=0.2] [seed=42]"); //$NON-NLS-1$
+            System.exit(1);
+        }
+        final SyntheticProjectGenerator generator= new SyntheticProjectGenerator();
+        for (String arg : Arrays.asList(args).subList(1, args.length)) {
+            generator.set(arg);
+        }
+        final long start= System.nanoTime();
+        generator.generate(new File(args[0]));
+        System.out.println("Generated " + generator.nbFiles + " files in " + args[0] + " in " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + (System.nanoTime() - start) / 1000000 + " ms"); //$NON-NLS-1$
+    }
+
+    private void set(String setting) {
+        final int equals= setting.indexOf('=');
+        if (equals == -1) {
+            throw new IllegalArgumentException("Expected name=value, got " + setting); //$NON-NLS-1$
+        }
+        final String name= setting.substring(0, equals);
+        final String value= setting.substring(equals + 1);
+        if ("files".equals(name)) { //$NON-NLS-1$
+            setNbFiles(Integer.parseInt(value));
+        } else if ("samplesPerFile".equals(name)) { //$NON-NLS-1$
+            setSamplesPerFile(Integer.parseInt(value));
+        } else if ("methodsPerFile".equals(name)) { //$NON-NLS-1$
+            setMethodsPerFile(Integer.parseInt(value));
+        } else if ("methodLength".equals(name)) { //$NON-NLS-1$
+            setMethodLength(Integer.parseInt(value));
+        } else if ("nestingDepth".equals(name)) { //$NON-NLS-1$
+            setNestingDepth(Integer.parseInt(value));
+        } else if ("commentDensity".equals(name)) { //$NON-NLS-1$
+            setCommentDensity(Double.parseDouble(value));
+        } else if ("wildcardImportRatio".equals(name)) { //$NON-NLS-1$
+            setWildcardImportRatio(Double.parseDouble(value));
+        } else if ("seed".equals(name)) { //$NON-NLS-1$
+            setSeed(Long.parseLong(value));
+        } else {
+            throw new IllegalArgumentException("Unknown setting " + name); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Sets the number of files to generate.
+     *
+     * @param nbFiles the number of files to generate
+     */
+    public void setNbFiles(int nbFiles) {
+        this.nbFiles= nbFiles;
+    }
+
+    /**
+     * Sets the number of input samples copied in each file, which mostly drives
+     * the size of the files.
+     *
+     * @param samplesPerFile the number of input samples copied in each file
+     */
+    public void setSamplesPerFile(int samplesPerFile) {
+        this.samplesPerFile= samplesPerFile;
+    }
+
+    /**
+     * Sets the number of methods generated in each file.
+     *
+     * @param methodsPerFile the number of methods generated in each file
+     */
+    public void setMethodsPerFile(int methodsPerFile) {
+        this.methodsPerFile= methodsPerFile;
+    }
+
+    /**
+     * Sets the number of statements of the generated methods, nested statements
+     * included.
+     *
+     * @param methodLength the number of statements of the generated methods
+     */
+    public void setMethodLength(int methodLength) {
+        this.methodLength= methodLength;
+    }
+
+    /**
+     * Sets the maximum depth of the control statements nested in the generated
+     * methods.
+     *
+     * @param nestingDepth the maximum nesting depth, 0 for flat methods
+     */
+    public void setNestingDepth(int nestingDepth) {
+        this.nestingDepth= nestingDepth;
+    }
+
+    /**
+     * Sets the probability that a generated method or statement is commented.
+     *
+     * @param commentDensity the probability, between 0 and 1
+     */
+    public void setCommentDensity(double commentDensity) {
+        this.commentDensity= commentDensity;
+    }
+
+    /**
+     * Sets the probability that an import is turned into a wildcard import of its
+     * package.
+     *
+     * @param wildcardImportRatio the probability, between 0 and 1
+     */
+    public void setWildcardImportRatio(double wildcardImportRatio) {
+        this.wildcardImportRatio= wildcardImportRatio;
+    }
+
+    /**
+     * Sets the seed of the random choices.
+     *
+     * @param seed the seed of the random choices
+     */
+    public void setSeed(long seed) {
+        this.seed= seed;
+    }
+
+    /**
+     * Generates the project in the provided directory.
+     *
+     * @param projectDir the project directory, its name is the project name
+     * @throws IOException if the project cannot be written
+     */
+    public void generate(File projectDir) throws IOException {
+        final List<Sample> samples= loadSamples();
+        final Random random= new Random(seed);
+        writeProjectFiles(projectDir);
+        for (int i= 0; i < nbFiles; i++) {
+            final String packageName= "synthetic.p" + i / FILES_PER_PACKAGE; //$NON-NLS-1$
+            final String className= "Synthetic" + i; //$NON-NLS-1$
+            write(new File(projectDir, "src/" + packageName.replace('.', '/') + '/' + className + ".java"), //$NON-NLS-1$ //$NON-NLS-2$
+                    newSource(packageName, className, samples, random));
+        }
+    }
+
+    private static List<Sample> loadSamples() throws IOException {
+        final String[] sampleNames= new File(SAMPLES_IN_DIR).list();
+        if (sampleNames == null) {
+            throw new IOException("Cannot find the input samples in " + new File(SAMPLES_IN_DIR).getAbsolutePath()); //$NON-NLS-1$
+        }
+        Arrays.sort(sampleNames);
+        final List<Sample> samples= new ArrayList<>(sampleNames.length);
+        for (String sampleName : sampleNames) {
+            final String source= new String(Files.readAllBytes(new File(SAMPLES_IN_DIR, sampleName).toPath()),
+                    StandardCharsets.UTF_8);
+            samples.add(parseSample(source));
+        }
+        return samples;
+    }
+
+    private static Sample parseSample(String source) {
+        int bodyStart= 0;
+        final Matcher packageMatcher= PACKAGE.matcher(source);
+        if (packageMatcher.find()) {
+            bodyStart= packageMatcher.end();
+        }
+
+        final List<String> imports= new ArrayList<>();
+        final List<String> staticImports= new ArrayList<>();
+        final Matcher importMatcher= IMPORT.matcher(source);
+        while (importMatcher.find()) {
+            final String importName= importMatcher.group(2) + (importMatcher.group(3) != null ? ".*" : ""); //$NON-NLS-1$ //$NON-NLS-2$
+            (importMatcher.group(1) != null ? staticImports : imports).add(importName);
+            bodyStart= Math.max(bodyStart, importMatcher.end());
+        }
+
+        // The top level types become static nested types, keeping their name
+        final String body= TOP_LEVEL_TYPE.matcher(source.substring(bodyStart)).replaceAll("$1static $2"); //$NON-NLS-1$
+        return new Sample(imports, staticImports, LINE_START.matcher(body.trim()).replaceAll("    ")); //$NON-NLS-1$
+    }
+
+    private String newSource(String packageName, String className, List<Sample> samples, Random random) {
+        // Simple name -> imported type, to detect clashes
+        final Map<String, String> imports= new LinkedHashMap<>();
+        final Set<String> staticImports= new LinkedHashSet<>();
+        imports.put("List", LIST_IMPORT); //$NON-NLS-1$
+        final StringBuilder members= new StringBuilder();
+
+        final List<Sample> shuffledSamples= new ArrayList<>(samples);
+        Collections.shuffle(shuffledSamples, random);
+        int nbSamples= 0;
+        for (Sample sample : shuffledSamples) {
+            if (nbSamples >= samplesPerFile) {
+                break;
+            }
+            if (addImports(imports, sample)) {
+                staticImports.addAll(sample.staticImports);
+                members.append(sample.body).append("\n\n"); //$NON-NLS-1$
+                nbSamples++;
+            }
+        }
+        for (int m= 0; m < methodsPerFile; m++) {
+            appendMethod(members, m, random);
+        }
+
+        final StringBuilder sb= new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        for (String importName : toImportDeclarations(imports.values(), random)) {
+            sb.append("import ").append(importName).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        for (String staticImport : staticImports) {
+            sb.append("import static ").append(staticImport).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        sb.append("\npublic class ").append(className).append(" {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        sb.append(members);
+        return sb.append("}\n").toString(); //$NON-NLS-1$
+    }
+
+    /**
+     * Adds the imports of the sample, unless one of them clashes with an import
+     * of the file.
+     */
+    private static boolean addImports(Map<String, String> imports, Sample sample) {
+        final Map<String, String> newImports= new LinkedHashMap<>();
+        for (String importName : sample.imports) {
+            final String simpleName= importName.substring(importName.lastIndexOf('.') + 1);
+            final String existingImport= "*".equals(simpleName) ? null : imports.get(simpleName); //$NON-NLS-1$
+            if (existingImport != null && !existingImport.equals(importName)) {
+                return false;
+            }
+            newImports.put("*".equals(simpleName) ? importName : simpleName, importName); //$NON-NLS-1$
+        }
+        imports.putAll(newImports);
+        return true;
+    }
+
+    private List<String> toImportDeclarations(Iterable<String> imports, Random random) {
+        final List<String> results= new ArrayList<>();
+        for (String importName : imports) {
+            final String declaration;
+            if (!importName.endsWith(".*") && random.nextDouble() < wildcardImportRatio) { //$NON-NLS-1$
+                declaration= importName.substring(0, importName.lastIndexOf('.')) + ".*"; //$NON-NLS-1$
+            } else {
+                declaration= importName;
+            }
+            if (!results.contains(declaration)) {
+                results.add(declaration);
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    private void appendMethod(StringBuilder sb, int methodIndex, Random random) {
+        if (random.nextDouble() < commentDensity) {
+            sb.append("    /**\n     * Generated method ").append(methodIndex).append(".\n     */\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        sb.append("    public int method").append(methodIndex).append("(boolean b, List<String> list, int i) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        appendStatements(sb, methodLength, 0, "        ", random); //$NON-NLS-1$
+        sb.append("        return i;\n    }\n\n"); //$NON-NLS-1$
+    }
+
+    /**
+     * Appends the provided number of statements, nested ones included, with code
+     * the cleanup rules fire on.
+     */
+    private void appendStatements(StringBuilder sb, int nbStatements, int depth, String indent, Random random) {
+        int remaining= nbStatements;
+        while (remaining > 0) {
+            if (random.nextDouble() < commentDensity) {
+                sb.append(indent).append("// Generated comment\n"); //$NON-NLS-1$
+            }
+            remaining--;
+            if (depth < nestingDepth && remaining > 0 && random.nextInt(3) == 0) {
+                final int nbNested= 1 + random.nextInt(Math.min(remaining, 5));
+                remaining-= nbNested;
+                final String variable= "j" + depth; //$NON-NLS-1$
+                if (random.nextBoolean()) {
+                    sb.append(indent).append("if (list.size() == 0) {\n"); //$NON-NLS-1$
+                } else {
+                    sb.append(indent).append("for (int ").append(variable).append(" = 0; ").append(variable) //$NON-NLS-1$ //$NON-NLS-2$
+                            .append(" < list.size(); ").append(variable).append("++) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                appendStatements(sb, nbNested, depth + 1, indent + "    ", random); //$NON-NLS-1$
+                sb.append(indent).append("}\n"); //$NON-NLS-1$
+                continue;
+            }
+
+            switch (random.nextInt(5)) {
+            case 0:
+                sb.append(indent).append("if (b == true) {\n").append(indent).append("    i = i + 1;\n") //$NON-NLS-1$ //$NON-NLS-2$
+                        .append(indent).append("}\n"); //$NON-NLS-1$
+                break;
+
+            case 1:
+                sb.append(indent).append("i = new Integer(i).intValue() + list.size();\n"); //$NON-NLS-1$
+                break;
+
+            case 2:
+                sb.append(indent).append("if (\"\".equals(\"\" + i)) {\n").append(indent) //$NON-NLS-1$
+                        .append("    return -1;\n").append(indent).append("} else {\n").append(indent) //$NON-NLS-1$ //$NON-NLS-2$
+                        .append("    i = i * 2;\n").append(indent).append("}\n"); //$NON-NLS-1$ //$NON-NLS-2$
+                break;
+
+            case 3:
+                sb.append(indent).append("while (i > 1000) {\n").append(indent).append("    i = i / 2;\n") //$NON-NLS-1$ //$NON-NLS-2$
+                        .append(indent).append("}\n"); //$NON-NLS-1$
+                break;
+
+            default:
+                sb.append(indent).append("i += list.isEmpty() ? 0 : 1;\n"); //$NON-NLS-1$
+                break;
+            }
+        }
+    }
+
+    private static void writeProjectFiles(File projectDir) throws IOException {
+        write(new File(projectDir, ".project"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" //$NON-NLS-1$ //$NON-NLS-2$
+                + "<projectDescription>\n" //$NON-NLS-1$
+                + "\t<name>" + escape(projectDir.getName()) + "</name>\n" //$NON-NLS-1$ //$NON-NLS-2$
+                + "\t<comment></comment>\n\t<projects></projects>\n" //$NON-NLS-1$
+                + "\t<buildSpec>\n\t\t<buildCommand>\n\t\t\t<name>org.eclipse.jdt.core.javabuilder</name>\n" //$NON-NLS-1$
+                + "\t\t\t<arguments></arguments>\n\t\t</buildCommand>\n\t</buildSpec>\n" //$NON-NLS-1$
+                + "\t<natures>\n\t\t<nature>org.eclipse.jdt.core.javanature</nature>\n\t</natures>\n" //$NON-NLS-1$
+                + "</projectDescription>\n"); //$NON-NLS-1$
+
+        final StringBuilder classpath= new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<classpath>\n"); //$NON-NLS-1$
+        classpath.append("\t<classpathentry kind=\"src\" path=\"src\"/>\n"); //$NON-NLS-1$
+        for (File jar : SamplesClasspath.getJars()) {
+            classpath.append("\t<classpathentry kind=\"lib\" path=\"").append(escape(jar.getAbsolutePath())) //$NON-NLS-1$
+                    .append("\"/>\n"); //$NON-NLS-1$
+        }
+        classpath.append("\t<classpathentry kind=\"output\" path=\"bin\"/>\n</classpath>\n"); //$NON-NLS-1$
+        write(new File(projectDir, ".classpath"), classpath.toString()); //$NON-NLS-1$
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+public class DataFlowSample {
+    private int field;
+
+    public int deadWrite(boolean b) {
+        int i = 0;
+        if (b) {
+            i = 1;
+        }
+        return 2;
+    }
+
+    public int liveWrite(boolean b) {
+        int i = 0;
+        if (b) {
+            i = 1;
+        }
+        return i;
+    }
+
+    public int definiteAssignment(boolean b) {
+        int i;
+        if (b) {
+            i = 1;
+        } else {
+            i = 2;
+        }
+        return i;
+    }
+
+    public void fieldWrite(boolean b) {
+        field = 1;
+        if (b) {
+            this.field = 2;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import static org.autorefactor.cfg.MethodDataFlowTest.buildCFG;
+import static org.autorefactor.cfg.MethodDataFlowTest.getBlock;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the dominator trees of the samples of {@link CFGBuilderTest}. The
+ * blocks are designated by their line and column, as shown in the dot files.
+ */
+public class DominatorTreeTest {
+    @Test
+    public void ifElseIf() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("IfElseIfSample").get(0)); //$NON-NLS-1$
+        final CompactCFG cfg= dataFlow.getCompactCFG();
+        final DominatorTree dominators= dataFlow.getDominatorTree();
+
+        assertEquals(cfg.getEntryBlock(), dominators.getRoot());
+        assertEquals(-1, dominators.getImmediateDominator(cfg.getEntryBlock()));
+        assertEquals(cfg.getEntryBlock(), idom(dataFlow, dominators, 31, 9));
+        assertEquals(index(dataFlow, 31, 9), idom(dataFlow, dominators, 32, 9));
+        assertEquals(index(dataFlow, 32, 9), idom(dataFlow, dominators, 33, 13));
+        assertEquals(index(dataFlow, 32, 9), idom(dataFlow, dominators, 34, 16));
+        assertEquals(index(dataFlow, 34, 16), idom(dataFlow, dominators, 35, 13));
+        assertEquals(index(dataFlow, 34, 16), idom(dataFlow, dominators, 37, 13));
+        assertEquals(index(dataFlow, 32, 9), idom(dataFlow, dominators, 39, 9));
+        assertEquals(index(dataFlow, 39, 9), dominators.getImmediateDominator(cfg.getExitBlock()));
+
+        assertTrue(dataFlow.dominates(getBlock(dataFlow, 32, 9), getBlock(dataFlow, 37, 13)));
+        assertFalse(dataFlow.dominates(getBlock(dataFlow, 33, 13), getBlock(dataFlow, 39, 9)));
+        assertFalse(dominators.strictlyDominates(index(dataFlow, 39, 9), index(dataFlow, 39, 9)));
+
+        final DominatorTree postDominators= dataFlow.getPostDominatorTree();
+        assertEquals(cfg.getExitBlock(), postDominators.getRoot());
+        assertEquals(index(dataFlow, 39, 9), idom(dataFlow, postDominators, 33, 13));
+        assertEquals(index(dataFlow, 39, 9), idom(dataFlow, postDominators, 34, 16));
+        assertEquals(index(dataFlow, 39, 9), idom(dataFlow, postDominators, 32, 9));
+        assertEquals(index(dataFlow, 32, 9), idom(dataFlow, postDominators, 31, 9));
+        assertTrue(dataFlow.postDominates(getBlock(dataFlow, 39, 9), getBlock(dataFlow, 35, 13)));
+        assertFalse(dataFlow.postDominates(getBlock(dataFlow, 35, 13), getBlock(dataFlow, 34, 16)));
+        assertTrue(dataFlow.isOnAllPaths(getBlock(dataFlow, 32, 9)));
+        assertFalse(dataFlow.isOnAllPaths(getBlock(dataFlow, 33, 13)));
+    }
+
+    @Test
+    public void whileLoops() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("WhileLoopsSample").get(2)); //$NON-NLS-1$
+        final CompactCFG cfg= dataFlow.getCompactCFG();
+        final DominatorTree dominators= dataFlow.getDominatorTree();
+
+        assertEquals(cfg.getEntryBlock(), idom(dataFlow, dominators, 40, 9));
+        assertEquals(index(dataFlow, 40, 9), idom(dataFlow, dominators, 41, 16));
+        assertEquals(index(dataFlow, 41, 16), idom(dataFlow, dominators, 42, 13));
+        assertEquals(index(dataFlow, 42, 13), idom(dataFlow, dominators, 43, 13));
+        assertEquals(index(dataFlow, 43, 13), idom(dataFlow, dominators, 44, 17));
+        assertEquals(index(dataFlow, 44, 17), idom(dataFlow, dominators, 45, 21));
+        assertEquals(index(dataFlow, 45, 21), idom(dataFlow, dominators, 47, 17));
+        assertEquals(index(dataFlow, 47, 17), idom(dataFlow, dominators, 49, 20));
+        // Reached from the while condition and from the do while condition
+        assertEquals(index(dataFlow, 41, 16), idom(dataFlow, dominators, 51, 9));
+
+        // The back edge of the do while loop does not make its condition dominate its body
+        assertTrue(dataFlow.dominates(getBlock(dataFlow, 43, 13), getBlock(dataFlow, 49, 20)));
+        assertFalse(dataFlow.dominates(getBlock(dataFlow, 49, 20), getBlock(dataFlow, 43, 13)));
+
+        final DominatorTree postDominators= dataFlow.getPostDominatorTree();
+        assertEquals(index(dataFlow, 51, 9), idom(dataFlow, postDominators, 49, 20));
+        assertEquals(index(dataFlow, 49, 20), idom(dataFlow, postDominators, 47, 17));
+        assertEquals(index(dataFlow, 43, 13), idom(dataFlow, postDominators, 42, 13));
+        assertEquals(index(dataFlow, 51, 9), idom(dataFlow, postDominators, 41, 16));
+        assertTrue(dataFlow.isOnAllPaths(getBlock(dataFlow, 51, 9)));
+        assertFalse(dataFlow.isOnAllPaths(getBlock(dataFlow, 45, 21)));
+    }
+
+    @Test
+    public void labels() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("LabelsSample").get(0)); //$NON-NLS-1$
+        final CompactCFG cfg= dataFlow.getCompactCFG();
+        final DominatorTree dominators= dataFlow.getDominatorTree();
+
+        assertEquals(cfg.getEntryBlock(), idom(dataFlow, dominators, 31, 20));
+        // Reached from the outer loop and from its inner loop, via the continue statements
+        assertEquals(index(dataFlow, 31, 20), idom(dataFlow, dominators, 32, 13));
+        assertEquals(index(dataFlow, 33, 17), idom(dataFlow, dominators, 34, 21));
+        assertEquals(index(dataFlow, 42, 17), idom(dataFlow, dominators, 45, 17));
+        assertEquals(index(dataFlow, 45, 17), idom(dataFlow, dominators, 46, 21));
+        // Reached at the end of the outer loop and by break outerLoop
+        assertEquals(index(dataFlow, 31, 20), idom(dataFlow, dominators, 52, 13));
+        assertEquals(index(dataFlow, 53, 13), idom(dataFlow, dominators, 56, 13));
+        assertEquals(index(dataFlow, 57, 13), idom(dataFlow, dominators, 60, 13));
+        // Reached by the returns inside and after the loops
+        assertEquals(index(dataFlow, 31, 20), dominators.getImmediateDominator(cfg.getExitBlock()));
+
+        assertTrue(dataFlow.dominates(getBlock(dataFlow, 32, 13), getBlock(dataFlow, 43, 21)));
+        assertFalse(dataFlow.dominates(getBlock(dataFlow, 32, 13), getBlock(dataFlow, 52, 13)));
+        assertTrue(dataFlow.isOnAllPaths(getBlock(dataFlow, 31, 20)));
+        assertFalse(dataFlow.isOnAllPaths(getBlock(dataFlow, 52, 13)));
+    }
+
+    private static int index(MethodDataFlow dataFlow, int line, int column) {
+        return dataFlow.getCompactCFG().getBlockIndex(getBlock(dataFlow, line, column));
+    }
+
+    private static int idom(MethodDataFlow dataFlow, DominatorTree tree, int line, int column) {
+        return tree.getImmediateDominator(index(dataFlow, line, column));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import static org.autorefactor.test.TestHelper.readAll;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import org.autorefactor.jdt.internal.corext.dom.ASTNodes;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptionsImpl;
+import org.autorefactor.jdt.internal.ui.fix.JavaCoreHelper;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.junit.Test;
+
+public class MethodDataFlowTest {
+    @Test
+    public void deadWrite() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("DataFlowSample").get(0)); //$NON-NLS-1$
+        final IVariableBinding i= getFirstLocalVariable(dataFlow);
+
+        assertFalse(dataFlow.isLiveOnExit(getBlock(dataFlow, 32, 9), i));
+        assertFalse(dataFlow.isLiveOnExit(getBlock(dataFlow, 34, 13), i));
+        assertFalse(dataFlow.isLiveOnEntry(getBlock(dataFlow, 36, 9), i));
+    }
+
+    @Test
+    public void liveWrite() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("DataFlowSample").get(1)); //$NON-NLS-1$
+        final IVariableBinding i= getFirstLocalVariable(dataFlow);
+
+        assertTrue(dataFlow.isLiveOnExit(getBlock(dataFlow, 40, 9), i));
+        assertTrue(dataFlow.isLiveOnExit(getBlock(dataFlow, 42, 13), i));
+        assertTrue(dataFlow.isLiveOnEntry(getBlock(dataFlow, 44, 9), i));
+        assertFalse(dataFlow.isLiveOnExit(getBlock(dataFlow, 44, 9), i));
+        assertEquals(2, countDefinitions(dataFlow.getReachingDefinitions(getBlock(dataFlow, 44, 9)), i));
+        assertEquals(1, countDefinitions(dataFlow.getReachingDefinitions(getBlock(dataFlow, 42, 13)), i));
+    }
+
+    @Test
+    public void definiteAssignment() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("DataFlowSample").get(2)); //$NON-NLS-1$
+        final IVariableBinding i= getFirstLocalVariable(dataFlow);
+
+        assertFalse(dataFlow.isDefinitelyAssigned(getBlock(dataFlow, 49, 9), i));
+        assertFalse(dataFlow.isDefinitelyAssigned(getBlock(dataFlow, 50, 13), i));
+        assertTrue(dataFlow.isDefinitelyAssigned(getBlock(dataFlow, 54, 9), i));
+        assertEquals(2, countDefinitions(dataFlow.getReachingDefinitions(getBlock(dataFlow, 54, 9)), i));
+    }
+
+    @Test
+    public void fieldWritesAreLive() throws Exception {
+        final MethodDataFlow dataFlow= new MethodDataFlow(buildCFG("DataFlowSample").get(3)); //$NON-NLS-1$
+        final MethodDeclaration method= (MethodDeclaration) dataFlow.getEntryBlock().getNode();
+        final TypeDeclaration type= (TypeDeclaration) method.getParent();
+        final IVariableBinding field= ((VariableDeclarationFragment) type.getFields()[0].fragments().get(0))
+                .resolveBinding();
+
+        assertEquals(-1, dataFlow.getCompactCFG().getVariableIndex(field));
+        assertTrue(dataFlow.isLiveOnExit(getBlock(dataFlow, 58, 9), field));
+        assertTrue(dataFlow.isLiveOnExit(getBlock(dataFlow, 60, 13), field));
+    }
+
+    /**
+     * Builds the CFGs of the methods of the provided sample.
+     *
+     * @param sampleName the name of the sample, in this package
+     * @return the entry blocks of the methods of the sample, in declaration order
+     * @throws Exception if the sample cannot be parsed
+     */
+    static List<CFGBasicBlock> buildCFG(String sampleName) throws Exception {
+        final File javaFile= new File("src/test/java/org/autorefactor/cfg", sampleName + ".java"); //$NON-NLS-1$ $NON-NLS-2$
+        final String javaSource= readAll(javaFile);
+
+        final IPackageFragment packageFragment= JavaCoreHelper.getPackageFragment("org.autorefactor.cfg"); //$NON-NLS-1$
+        final ICompilationUnit cu= packageFragment.createCompilationUnit(javaFile.getName(), javaSource, true, null);
+        cu.getBuffer().setContents(javaSource);
+        cu.save(null, true);
+
+        final JavaProjectOptionsImpl options= new JavaProjectOptionsImpl();
+        options.setTabSize(4);
+        final ASTParser parser= ASTParser.newParser(AST.JLS8);
+        parser.setSource(cu);
+        parser.setResolveBindings(true);
+        final CompilationUnit astRoot= (CompilationUnit) parser.createAST(null);
+        return new CFGBuilder(javaSource, options).buildCFG(astRoot);
+    }
+
+    /**
+     * Returns the reachable basic block starting at the provided line and column.
+     *
+     * @param dataFlow the data flow of the method
+     * @param line     the line of the block, as shown in the dot files
+     * @param column   the column of the block, as shown in the dot files
+     * @return the basic block
+     */
+    static CFGBasicBlock getBlock(MethodDataFlow dataFlow, int line, int column) {
+        for (CFGBasicBlock block : dataFlow.getBasicBlocks()) {
+            if (!block.isEntryBlock() && !block.isExitBlock() && block.getLineAndColumn().getLine() == line
+                    && block.getLineAndColumn().getColumn() == column) {
+                return block;
+            }
+        }
+        fail("No basic block at " + line + ":" + column); //$NON-NLS-1$ $NON-NLS-2$
+        return null;
+    }
+
+    private static int countDefinitions(Set<VariableAccess> definitions, IVariableBinding variable) {
+        int count= 0;
+        for (VariableAccess definition : definitions) {
+            if (variable.isEqualTo(definition.getName().resolveBinding())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static IVariableBinding getFirstLocalVariable(MethodDataFlow dataFlow) {
+        final MethodDeclaration method= (MethodDeclaration) dataFlow.getEntryBlock().getNode();
+        final VariableDeclarationStatement statement= (VariableDeclarationStatement) ASTNodes
+                .statements(method.getBody()).get(0);
+        return ((VariableDeclarationFragment) statement.fragments().get(0)).resolveBinding();
+    }
+}
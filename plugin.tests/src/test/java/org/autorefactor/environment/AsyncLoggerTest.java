@@ -0,0 +1,115 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AsyncLoggerTest {
+    private static final class RecordingLogger implements Logger {
+        private final List<LogEvent> events= new ArrayList<>();
+        private final List<String> warnings= new ArrayList<>();
+
+        public void error(String message) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void error(String message, Exception e) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void warn(String message) {
+            warnings.add(message);
+        }
+
+        public void info(String message) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void log(LogEvent event) {
+            events.add(event);
+        }
+    }
+
+    @Test
+    public void rateLimitsEachRuleAndCategory() throws Exception {
+        final RecordingLogger delegate= new RecordingLogger();
+        final AsyncLogger logger= new AsyncLogger(delegate, 100, 10);
+        for (int i= 0; i < 25; i++) {
+            logger.log(newEvent("FaultyCleanUp", LogEvent.Category.FAULTY_RULE)); //$NON-NLS-1$
+        }
+        for (int i= 0; i < 3; i++) {
+            logger.log(newEvent("FaultyCleanUp", LogEvent.Category.BADLY_BEHAVED_RULE)); //$NON-NLS-1$
+            logger.log(newEvent("OtherCleanUp", LogEvent.Category.FAULTY_RULE)); //$NON-NLS-1$
+        }
+        logger.close();
+
+        assertEquals(16, delegate.events.size());
+        assertEquals(1, delegate.warnings.size());
+        final String summary= delegate.warnings.get(0);
+        assertTrue(summary, summary.contains("FaultyCleanUp FAULTY_RULE: 25 events, 15 not logged")); //$NON-NLS-1$
+        assertTrue(summary, !summary.contains("BADLY_BEHAVED_RULE") && !summary.contains("OtherCleanUp")); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void doesNotRateLimitEventsWithoutRule() throws Exception {
+        final RecordingLogger delegate= new RecordingLogger();
+        final AsyncLogger logger= new AsyncLogger(delegate, 100, 10);
+        for (int i= 0; i < 25; i++) {
+            logger.log(new LogEvent(LogEvent.Severity.ERROR, "Cannot refactor file " + i, null)); //$NON-NLS-1$
+            logger.log(newEvent(null, LogEvent.Category.FAULTY_RULE));
+            logger.log(newEvent("FaultyCleanUp", LogEvent.Category.OTHER)); //$NON-NLS-1$
+        }
+        logger.close();
+
+        assertEquals(75, delegate.events.size());
+        assertEquals("Cannot refactor file 24", delegate.events.get(72).getMessage()); //$NON-NLS-1$
+        assertTrue(delegate.warnings.isEmpty());
+    }
+
+    @Test
+    public void noSummaryWhenAllEventsAreLogged() throws Exception {
+        final RecordingLogger delegate= new RecordingLogger();
+        final AsyncLogger logger= new AsyncLogger(delegate, 100, 10);
+        logger.log(newEvent("FaultyCleanUp", LogEvent.Category.FAULTY_RULE)); //$NON-NLS-1$
+        logger.close();
+        logger.close();
+
+        assertEquals(1, delegate.events.size());
+        assertEquals("/p/src/A.java:3:5: Visitor FaultyCleanUp is faulty: message", //$NON-NLS-1$
+                delegate.events.get(0).getFormattedMessage());
+        assertTrue(delegate.warnings.isEmpty());
+    }
+
+    private static LogEvent newEvent(String rule, LogEvent.Category category) {
+        return new LogEvent(LogEvent.Severity.ERROR, category, rule, "/p/src/A.java", 3, 5, "message", null); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+/**
+ * {@link ASTSemanticHasher} prefilters {@link ASTNodes#match(ASTNode, ASTNode)},
+ * so two subtrees accepted by the {@link ASTSemanticMatcher} must have the
+ * same hash code. Each method of the sample holds two statements which the
+ * matcher accepts.
+ */
+public class ASTSemanticHasherTest {
+    // @formatter:off
+    private static final String SAMPLE= "public class Sample {\n" //$NON-NLS-1$
+            + "    private static final int ONE= 1;\n" //$NON-NLS-1$
+            + "    private int x;\n" //$NON-NLS-1$
+            + "    void brackets(int a, int b) { x = (a + b); x = a + b; }\n" //$NON-NLS-1$
+            + "    void singleStatementBlock(boolean c) { if (c) { x = 1; } if (c) x = 1; }\n" //$NON-NLS-1$
+            + "    void mirroredOperator(int a, int b) { if (a < b) x = 1; if (b > a) x = 1; }\n" //$NON-NLS-1$
+            + "    void negatedOperator(int a, int b) { if (!(a == b)) x = 1; if (a != b) x = 1; }\n" //$NON-NLS-1$
+            + "    void negatedRelation(int a, int b) { if (a > b) x = 1; if (!(a <= b)) x = 1; }\n" //$NON-NLS-1$
+            + "    void deMorgan(boolean c, boolean d) { if (!(c && d)) x = 1; if (!c || !d) x = 1; }\n" //$NON-NLS-1$
+            + "    void commutativePlus(int a, int b) { x = a + b; x = b + a; }\n" //$NON-NLS-1$
+            + "    void commutativeTimes(int a, int b) { x = a * b; x = b * a; }\n" //$NON-NLS-1$
+            + "    void commutativeAnd(boolean c, boolean d) { if (c && d) x = 1; if (d && c) x = 1; }\n" //$NON-NLS-1$
+            + "    void swappedBranches(boolean c) { if (c) x = 1; else x = 2; if (!c) x = 2; else x = 1; }\n" //$NON-NLS-1$
+            + "    int swappedConditional(boolean c) { x = c ? 1 : 2; x = !c ? 2 : 1; return x; }\n" //$NON-NLS-1$
+            + "    void postfixPrefix(int i) { i++; ++i; }\n" //$NON-NLS-1$
+            + "    void postfixAssignment(int i) { i++; i = i + 1; }\n" //$NON-NLS-1$
+            + "    void prefixAssignmentLeftOne(int i) { ++i; i = 1 + i; }\n" //$NON-NLS-1$
+            + "    void decrementAssignment(int i) { --i; i = i - 1; }\n" //$NON-NLS-1$
+            + "    void incrementByConstant(int i) { i++; i = i + ONE; }\n" //$NON-NLS-1$
+            + "    void incrementByLongLiteral(long i) { i++; i = i + 1L; }\n" //$NON-NLS-1$
+            + "    void compoundPlus(int i, int j) { i += j; i = i + j; }\n" //$NON-NLS-1$
+            + "    void compoundTimes(int i, int j) { i *= j; i = i * j; }\n" //$NON-NLS-1$
+            + "    void compoundShift(int i, int j) { i <<= j; i = i << j; }\n" //$NON-NLS-1$
+            + "}\n"; //$NON-NLS-1$
+    // @formatter:on
+
+    @Test
+    public void equivalentStatementsHaveTheSameHash() throws Exception {
+        final CompilationUnit astRoot= parse();
+        final TypeDeclaration type= (TypeDeclaration) astRoot.types().get(0);
+        int nbMethods= 0;
+        for (MethodDeclaration method : type.getMethods()) {
+            final List<Statement> statements= ASTNodes.asList(method.getBody());
+            final Statement statement1= statements.get(0);
+            final Statement statement2= statements.get(1);
+            final String name= method.getName().getIdentifier();
+
+            assertTrue(name + ": the matcher should accept the statements", //$NON-NLS-1$
+                    new ASTSemanticMatcher().safeSubtreeMatch(statement1, statement2));
+            assertEquals(name, ASTSemanticHasher.hash(statement1), ASTSemanticHasher.hash(statement2));
+            nbMethods++;
+        }
+        assertEquals(20, nbMethods);
+    }
+
+    @Test
+    public void equivalentStatementListsHaveTheSameHash() throws Exception {
+        final CompilationUnit astRoot= parse();
+        final TypeDeclaration type= (TypeDeclaration) astRoot.types().get(0);
+        final List<Statement> firstStatements= new ArrayList<>();
+        final List<Statement> secondStatements= new ArrayList<>();
+        for (MethodDeclaration method : type.getMethods()) {
+            final List<Statement> statements= ASTNodes.asList(method.getBody());
+            firstStatements.add(statements.get(0));
+            secondStatements.add(statements.get(1));
+        }
+
+        assertTrue(ASTSemanticHasher.mayMatch(firstStatements, secondStatements));
+        assertEquals(ASTSemanticHasher.hashAll(firstStatements), ASTSemanticHasher.hashAll(secondStatements));
+    }
+
+    @Test
+    public void syntheticCopiesHaveTheSameHash() throws Exception {
+        final CompilationUnit astRoot= parse();
+        final TypeDeclaration type= (TypeDeclaration) astRoot.types().get(0);
+        for (MethodDeclaration method : type.getMethods()) {
+            for (Statement statement : ASTNodes.asList(method.getBody())) {
+                // The copies have no bindings
+                final ASTNode copy= ASTNode.copySubtree(astRoot.getAST(), statement);
+                assertEquals(method.getName().getIdentifier(), ASTSemanticHasher.hash(statement),
+                        ASTSemanticHasher.hash(copy));
+            }
+        }
+    }
+
+    private static CompilationUnit parse() {
+        final ASTParser parser= ASTParser.newParser(AST.JLS8);
+        final Map<String, String> options= JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
+        parser.setCompilerOptions(options);
+        parser.setSource(SAMPLE.toCharArray());
+        parser.setUnitName("Sample.java"); //$NON-NLS-1$
+        parser.setEnvironment(null, null, null, true);
+        parser.setResolveBindings(true);
+        return (CompilationUnit) parser.createAST(null);
+    }
+}
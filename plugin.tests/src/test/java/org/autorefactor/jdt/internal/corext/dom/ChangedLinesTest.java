@@ -0,0 +1,135 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.junit.Test;
+
+public class ChangedLinesTest {
+    private static final File REPOSITORY= new File("/repository"); //$NON-NLS-1$
+
+    @Test
+    public void parseDiff() {
+        Map<File, LineRanges> changedLines= ChangedLines.parseDiff(REPOSITORY, Arrays.asList(
+                // @formatter:off
+                "diff --git a/src/A.java b/src/A.java", //$NON-NLS-1$
+                "--- a/src/A.java", //$NON-NLS-1$
+                "+++ b/src/A.java", //$NON-NLS-1$
+                "@@ -3 +3 @@ public class A {", //$NON-NLS-1$
+                "-    int i;", //$NON-NLS-1$
+                "+    long i;", //$NON-NLS-1$
+                "@@ -20,2 +20,0 @@ public class A {", //$NON-NLS-1$
+                "@@ -30,0 +29,4 @@ public class A {", //$NON-NLS-1$
+                "diff --git a/src/Deleted.java b/src/Deleted.java", //$NON-NLS-1$
+                "--- a/src/Deleted.java", //$NON-NLS-1$
+                "+++ /dev/null", //$NON-NLS-1$
+                "@@ -1,5 +0,0 @@", //$NON-NLS-1$
+                "diff --git a/src/B.java b/src/B.java", //$NON-NLS-1$
+                "--- a/src/B.java", //$NON-NLS-1$
+                "+++ b/src/B.java", //$NON-NLS-1$
+                "@@ -0,0 +1,10 @@")); //$NON-NLS-1$
+                // @formatter:on
+
+        assertEquals(2, changedLines.size());
+        assertEquals("[3-3, 20-21, 29-32]", changedLines.get(new File(REPOSITORY, "src/A.java")).toString()); //$NON-NLS-1$ $NON-NLS-2$
+        assertEquals("[1-10]", changedLines.get(new File(REPOSITORY, "src/B.java")).toString()); //$NON-NLS-1$ $NON-NLS-2$
+        assertNull(changedLines.get(new File(REPOSITORY, "src/Deleted.java"))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void parseDiffOfPathWithSpace() {
+        Map<File, LineRanges> changedLines= ChangedLines.parseDiff(REPOSITORY, Arrays.asList(
+                // @formatter:off
+                "diff --git a/src/My Sample.java b/src/My Sample.java", //$NON-NLS-1$
+                "--- a/src/My Sample.java\t", //$NON-NLS-1$
+                "+++ b/src/My Sample.java\t", //$NON-NLS-1$
+                "@@ -3 +3 @@ public class A {")); //$NON-NLS-1$
+                // @formatter:on
+
+        assertEquals("[3-3]", changedLines.get(new File(REPOSITORY, "src/My Sample.java")).toString()); //$NON-NLS-1$ $NON-NLS-2$
+    }
+
+    @Test
+    public void intersects() {
+        LineRanges lineRanges= LineRanges.of(new int[] { 10, 12 }, new int[] { 1, 3 }, new int[] { 4, 5 });
+        assertEquals("[1-5, 10-12]", lineRanges.toString()); //$NON-NLS-1$
+        assertTrue(lineRanges.intersects(5, 7));
+        assertFalse(lineRanges.intersects(6, 9));
+        assertTrue(lineRanges.intersects(8, 10));
+        assertTrue(lineRanges.intersects(11, 11));
+        assertFalse(lineRanges.intersects(13, 20));
+        assertTrue(LineRanges.ALL_LINES.intersects(1000, 2000));
+    }
+
+    @Test
+    public void mapToModifiedSource() {
+        final String source= "a\nb\nc\nd\ne"; //$NON-NLS-1$
+        final LineRanges lineRanges= LineRanges.of(new int[] { 1, 1 }, new int[] { 4, 5 });
+
+        // "b" replaced by "x" and "y": the new lines changed too
+        assertEquals("[1-3, 5-6]", lineRanges.mapTo(source, "a\nx\ny\nc\nd\ne").toString()); //$NON-NLS-1$ //$NON-NLS-2$
+        // "b" removed: the lines around it changed
+        assertEquals("[1-2, 4-4]", LineRanges.of(new int[] { 5, 5 }).mapTo(source, "a\nc\nd\ne").toString()); //$NON-NLS-1$ //$NON-NLS-2$
+        // Only the line delimiters differ
+        assertSame(lineRanges, lineRanges.mapTo(source, "a\r\nb\r\nc\r\nd\r\ne")); //$NON-NLS-1$
+        assertSame(LineRanges.ALL_LINES, LineRanges.ALL_LINES.mapTo(source, "z")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void trackLinesWhileEditing() throws Exception {
+        final IDocument document= new Document("l1\nl2\nl3\nl4\nl5\n"); //$NON-NLS-1$
+        final String[] positionCategories= document.getPositionCategories();
+        final LineRangesTracker tracker= new LineRangesTracker(document,
+                LineRanges.of(new int[] { 2, 2 }, new int[] { 4, 4 }));
+        try {
+            document.replace(0, 0, "x\ny\n"); //$NON-NLS-1$
+            assertEquals("[4-4, 6-6]", tracker.getLineRanges().toString()); //$NON-NLS-1$
+
+            // "l2" is replaced by two lines, which still belong to the changed lines
+            document.replace(document.get().indexOf("l2"), 2, "a\nb"); //$NON-NLS-1$ //$NON-NLS-2$
+            assertEquals("[4-5, 7-7]", tracker.getLineRanges().toString()); //$NON-NLS-1$
+
+            // "l3" is removed
+            document.replace(document.get().indexOf("l3"), 3, ""); //$NON-NLS-1$ //$NON-NLS-2$
+            assertEquals("[4-6]", tracker.getLineRanges().toString()); //$NON-NLS-1$
+        } finally {
+            tracker.dispose();
+        }
+        assertArrayEquals(positionCategories, document.getPositionCategories());
+    }
+}
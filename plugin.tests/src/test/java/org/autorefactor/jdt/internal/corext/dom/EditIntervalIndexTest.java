@@ -0,0 +1,152 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.junit.Test;
+
+public class EditIntervalIndexTest {
+    @Test
+    public void adjacentEdits() {
+        final EditIntervalIndex index= new EditIntervalIndex();
+        index.add(10, 5);
+
+        // Ranges are closed: touching ranges overlap
+        assertTrue(index.overlaps(15, 3));
+        assertTrue(index.overlaps(7, 3));
+        assertFalse(index.overlaps(16, 3));
+        assertFalse(index.overlaps(6, 3));
+
+        // Touching ranges are coalesced
+        index.add(15, 5);
+        assertEquals("{10=20}", index.toString()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void adjacentEditsHalfOpen() {
+        final EditIntervalIndex index= new EditIntervalIndex();
+        index.add(10, 5);
+
+        // Half-open ranges: touching ranges do not overlap
+        assertFalse(index.overlapsHalfOpen(15, 3));
+        assertFalse(index.overlapsHalfOpen(7, 3));
+        assertTrue(index.overlapsHalfOpen(14, 3));
+        assertTrue(index.overlapsHalfOpen(8, 3));
+
+        // Empty ranges only overlap the ranges strictly containing them
+        assertFalse(index.overlapsHalfOpen(new InsertEdit(10, "a"))); //$NON-NLS-1$
+        assertFalse(index.overlapsHalfOpen(new InsertEdit(15, "a"))); //$NON-NLS-1$
+        assertTrue(index.overlapsHalfOpen(new InsertEdit(12, "a"))); //$NON-NLS-1$
+        index.add(new InsertEdit(20, "a")); //$NON-NLS-1$
+        assertFalse(index.overlapsHalfOpen(new InsertEdit(20, "b"))); //$NON-NLS-1$
+        assertTrue(index.overlapsHalfOpen(19, 2));
+    }
+
+    @Test
+    public void zeroLengthInsertsAtTheSameOffset() {
+        final EditIntervalIndex index= new EditIntervalIndex();
+        assertTrue(index.isEmpty());
+        index.add(new InsertEdit(10, "a")); //$NON-NLS-1$
+
+        assertFalse(index.isEmpty());
+        assertTrue(index.overlaps(new InsertEdit(10, "b"))); //$NON-NLS-1$
+        assertFalse(index.overlaps(new InsertEdit(11, "b"))); //$NON-NLS-1$
+        assertFalse(index.overlaps(new InsertEdit(9, "b"))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void containment() {
+        final EditIntervalIndex index= new EditIntervalIndex();
+        index.add(10, 20);
+
+        // Contained range
+        assertTrue(index.overlaps(15, 2));
+        // Containing range
+        assertTrue(index.overlaps(0, 50));
+        assertFalse(index.overlapsAny(Arrays.<TextEdit>asList(new DeleteEdit(0, 5), new DeleteEdit(40, 5))));
+        assertTrue(index.overlapsAny(Arrays.<TextEdit>asList(new DeleteEdit(0, 5), new DeleteEdit(12, 5))));
+
+        // A containing range swallows all the contained intervals
+        index.add(40, 5);
+        index.add(50, 0);
+        index.add(5, 60);
+        assertEquals("{5=65}", index.toString()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void addAllEditTree() {
+        final MultiTextEdit edits= new MultiTextEdit();
+        edits.addChild(new DeleteEdit(0, 5));
+        edits.addChild(new DeleteEdit(20, 5));
+
+        final EditIntervalIndex index= new EditIntervalIndex();
+        index.addAll(edits);
+        assertEquals("{0=5, 20=25}", index.toString()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void sourceRewriterDropsItsOwnOverlappingEdits() {
+        final SourceRewriter sourceRewriter= new SourceRewriter();
+        sourceRewriter.remove(new SourceLocation(0, 10));
+        sourceRewriter.remove(new SourceLocation(5, 10));
+        sourceRewriter.replace(new SourceLocation(8, 0), "a"); //$NON-NLS-1$
+        sourceRewriter.replace(new SourceLocation(20, 2), "b"); //$NON-NLS-1$
+
+        final MultiTextEdit edits= new MultiTextEdit();
+        final EditIntervalIndex index= new EditIntervalIndex();
+        sourceRewriter.addEdits(new Document("0123456789012345678901234"), edits, index); //$NON-NLS-1$
+
+        // Without the index, the overlapping edits make addChild() throw a MalformedTreeException
+        assertEquals(2, edits.getChildrenSize());
+        assertEquals("{0=10, 20=22}", index.toString()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void sourceRewriterKeepsAdjacentEdits() {
+        final SourceRewriter sourceRewriter= new SourceRewriter();
+        sourceRewriter.remove(new SourceLocation(0, 5));
+        sourceRewriter.remove(new SourceLocation(5, 5));
+        sourceRewriter.replace(new SourceLocation(10, 0), "a"); //$NON-NLS-1$
+        sourceRewriter.replace(new SourceLocation(10, 2), "b"); //$NON-NLS-1$
+
+        final MultiTextEdit edits= new MultiTextEdit();
+        final EditIntervalIndex index= new EditIntervalIndex();
+        sourceRewriter.addEdits(new Document("0123456789012345678901234"), edits, index); //$NON-NLS-1$
+
+        assertEquals(4, edits.getChildrenSize());
+        assertEquals("{0=12}", index.toString()); //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.autorefactor.test.TestHelper.TEST_ENVIRONMENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.autorefactor.jdt.internal.ui.fix.JavaCoreHelper;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.Comment;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.junit.Test;
+
+public class RefactoringsTest {
+    private static final String SOURCE= "package org.autorefactor.refactorings;\n" //$NON-NLS-1$
+            + "\n" //$NON-NLS-1$
+            + "public class ChangedLines {\n" //$NON-NLS-1$
+            + "\n" //$NON-NLS-1$
+            + "    // Unchanged comment\n" //$NON-NLS-1$
+            + "    int i;\n" //$NON-NLS-1$
+            + "\n" //$NON-NLS-1$
+            + "    int j;\n" //$NON-NLS-1$
+            + "}\n"; //$NON-NLS-1$
+
+    @Test
+    public void sourceEditsOutsideChangedLinesAreDropped() throws Exception {
+        final ICompilationUnit cu= JavaCoreHelper.getIsolatedPackageFragment("org.autorefactor.refactorings") //$NON-NLS-1$
+                .createCompilationUnit("ChangedLines.java", SOURCE, true, null); //$NON-NLS-1$
+        try {
+            final CompilationUnit astRoot= parse(cu);
+            // Only the blank line before "int j;" has been changed
+            final Refactorings refactorings= new Refactorings(astRoot, TEST_ENVIRONMENT.getEventLoop(),
+                    SubMonitor.convert(new NullProgressMonitor()), LineRanges.of(new int[] { 7, 7 }));
+
+            // Like RemoveEmptyLinesCleanUp and CommentsCleanUp do for the whole file
+            refactorings.remove(blankLine(4));
+            refactorings.remove((Comment) astRoot.getCommentList().get(0));
+            assertFalse(refactorings.hasRefactorings());
+
+            refactorings.remove(blankLine(7));
+            assertTrue(refactorings.hasRefactorings());
+
+            final IDocument document= new Document(SOURCE);
+            refactorings.applyTo(document, true);
+            assertEquals(SOURCE.replace("    int i;\n\n", "    int i;\n"), document.get()); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            cu.delete(true, null);
+        }
+    }
+
+    private static SourceLocation blankLine(final int lineNumber) {
+        int start= 0;
+        for (int line= 1; line < lineNumber; line++) {
+            start= SOURCE.indexOf('\n', start) + 1;
+        }
+        return SourceLocation.fromPositions(start, start + 1);
+    }
+
+    private static CompilationUnit parse(final ICompilationUnit cu) {
+        final ASTParser parser= ASTParser.newParser(AST.JLS8);
+        parser.setSource(cu);
+        parser.setResolveBindings(true);
+        return (CompilationUnit) parser.createAST(null);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class RuleHealthTest {
+    @Test
+    public void tripsAfterMaxFailures() {
+        final RuleHealth ruleHealth= new RuleHealth(3);
+        assertFalse(ruleHealth.recordFailure(String.class));
+        assertFalse(ruleHealth.recordFailure(String.class));
+        assertFalse(ruleHealth.isTripped(String.class));
+        assertTrue(ruleHealth.recordFailure(String.class));
+        assertTrue(ruleHealth.isTripped(String.class));
+        // Only the failure which trips the rule reports it
+        assertFalse(ruleHealth.recordFailure(String.class));
+
+        assertFalse(ruleHealth.recordFailure(Integer.class));
+        assertFalse(ruleHealth.isTripped(Integer.class));
+        assertFalse(ruleHealth.isTripped(Long.class));
+        assertEquals(Arrays.asList("String (4 failures)"), ruleHealth.getTrippedRules()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void noTrippedRules() {
+        assertEquals(Collections.emptyList(), new RuleHealth(3).getTrippedRules());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunJournalTest {
+    private static final String FINGERPRINT= "fingerprint"; //$NON-NLS-1$
+
+    @Rule
+    public TemporaryFolder folder= new TemporaryFolder();
+
+    @Test
+    public void resumeSkipsCompletedAndUnchangedFiles() throws Exception {
+        final File file= new File(folder.getRoot(), "run-journal.txt"); //$NON-NLS-1$
+        final RunJournal journal= new RunJournal(file, FINGERPRINT, false);
+        journal.recordCompleted("/p/src/A.java", "class A {}"); //$NON-NLS-1$ //$NON-NLS-2$
+        journal.recordCompleted("/p/src/B.java", "class B {}"); //$NON-NLS-1$ //$NON-NLS-2$
+        // Simulates a crash while writing the next compilation unit
+        journal.close();
+        try (OutputStream out= new FileOutputStream(file, true)) {
+            out.write("/p/src/C.java".getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+        }
+
+        final RunJournal resumed= new RunJournal(file, FINGERPRINT, true);
+        assertTrue(resumed.isCompleted("/p/src/A.java", "class A {}")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertFalse("Modified since", resumed.isCompleted("/p/src/B.java", "class B { int i; }")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        assertFalse("In flight", resumed.isCompleted("/p/src/C.java", "class C {}")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        resumed.close();
+    }
+
+    @Test
+    public void otherRulesStartNewJournal() throws Exception {
+        final File file= new File(folder.getRoot(), "run-journal.txt"); //$NON-NLS-1$
+        final RunJournal journal= new RunJournal(file, FINGERPRINT, false);
+        journal.recordCompleted("/p/src/A.java", "class A {}"); //$NON-NLS-1$ //$NON-NLS-2$
+        journal.close();
+
+        final RunJournal otherRules= new RunJournal(file, "otherFingerprint", true); //$NON-NLS-1$
+        assertFalse(otherRules.isCompleted("/p/src/A.java", "class A {}")); //$NON-NLS-1$ //$NON-NLS-2$
+        otherRules.close();
+
+        final RunJournal notResumed= new RunJournal(file, FINGERPRINT, true);
+        assertFalse("The journal was restarted", notResumed.isCompleted("/p/src/A.java", "class A {}")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        notResumed.close();
+    }
+
+    @Test
+    public void hash() {
+        assertEquals(RunJournal.hash("class A {}"), RunJournal.hash("class A {}")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertFalse(RunJournal.hash("class A {}").equals(RunJournal.hash("class B {}"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(64, RunJournal.hash("").length()); //$NON-NLS-1$
+    }
+}
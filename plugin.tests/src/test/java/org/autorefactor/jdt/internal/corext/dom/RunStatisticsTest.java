@@ -0,0 +1,82 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class RunStatisticsTest {
+    @Test
+    public void iterationHistogram() {
+        final RunStatistics statistics= new RunStatistics();
+        statistics.recordFileRefactored("A.java", 0, 1000000L); //$NON-NLS-1$
+        statistics.recordFileRefactored("B.java", 2, 1000000L); //$NON-NLS-1$
+        statistics.recordFileRefactored("C.java", 2, 1000000L); //$NON-NLS-1$
+        statistics.recordFileRefactored("D.java", 15, 1000000L); //$NON-NLS-1$
+        assertArrayEquals(new long[] { 1, 0, 2, 0, 0, 0, 0, 0, 0, 0, 1 }, statistics.getIterationHistogram());
+        assertEquals(15, statistics.getMaxIterations());
+    }
+
+    @Test
+    public void slowestFiles() {
+        final RunStatistics statistics= new RunStatistics();
+        for (int i= 1; i <= 20; i++) {
+            statistics.recordFileRefactored("F" + i + ".java", 1, i * 1000000L); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        assertEquals(10, statistics.getSlowestFiles().size());
+        assertEquals("F20.java (20 ms)", statistics.getSlowestFiles().get(0)); //$NON-NLS-1$
+        assertEquals("F11.java (11 ms)", statistics.getSlowestFiles().get(9)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void slowestRules() {
+        final RunStatistics statistics= new RunStatistics();
+        statistics.recordIteration(Arrays.asList("a", Integer.valueOf(1)), 3000000L); //$NON-NLS-1$
+        statistics.recordIteration(Collections.singleton(Integer.valueOf(2)), 2000000L);
+        assertEquals(Arrays.asList("Integer (5 ms)", "String (3 ms)"), statistics.getSlowestRules()); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void progress() {
+        final RunStatistics statistics= new RunStatistics();
+        statistics.recordUnitsQueued(4);
+        assertEquals(-1, statistics.getEstimatedSecondsLeft());
+        assertTrue(statistics.getProgress().startsWith("0/4 files, ")); //$NON-NLS-1$
+        assertTrue(statistics.getProgress().endsWith(" files/s")); //$NON-NLS-1$
+
+        statistics.start();
+        statistics.recordUnitDone();
+        assertEquals(1, statistics.getUnitsDone());
+        assertTrue(statistics.getUnitsPerSecond() > 0);
+        assertTrue(statistics.getEstimatedSecondsLeft() >= 0);
+    }
+}
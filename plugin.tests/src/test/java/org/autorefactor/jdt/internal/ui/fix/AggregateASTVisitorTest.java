@@ -0,0 +1,80 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.ui.fix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.junit.Test;
+
+public class AggregateASTVisitorTest {
+    private final RemoveSemiColonCleanUp removeSemiColon= new RemoveSemiColonCleanUp();
+    private final ArrayListRatherThanLinkedListCleanUp linkedListCleanUp= new ArrayListRatherThanLinkedListCleanUp();
+    private final ArrayListRatherThanVectorCleanUp vectorCleanUp= new ArrayListRatherThanVectorCleanUp();
+    /** Declares neither produced nor consumed node types. */
+    private final IsEmptyRatherThanSizeCleanUp isEmptyRatherThanSize= new IsEmptyRatherThanSizeCleanUp();
+
+    private final AggregateASTVisitor allVisitors= new AggregateASTVisitor(Arrays.<RefactoringRule>asList(
+            removeSemiColon, linkedListCleanUp, vectorCleanUp, isEmptyRatherThanSize));
+
+    @Test
+    public void removedTokensEnableNoOtherVisitor() {
+        final AggregateASTVisitor restricted= allVisitors
+                .getVisitorsEnabledBy(Collections.<ASTVisitor>singleton(removeSemiColon));
+
+        assertEquals(Arrays.<ASTVisitor>asList(removeSemiColon), restricted.getVisitors());
+    }
+
+    @Test
+    public void substitutedTypesOnlyEnableTheirConsumers() {
+        final AggregateASTVisitor restricted= allVisitors
+                .getVisitorsEnabledBy(Collections.<ASTVisitor>singleton(linkedListCleanUp));
+
+        // The semicolons are not affected by the substituted types
+        assertEquals(Arrays.<ASTVisitor>asList(linkedListCleanUp, vectorCleanUp,
+                isEmptyRatherThanSize), restricted.getVisitors());
+    }
+
+    @Test
+    public void undeclaredProducerEnablesAllVisitors() {
+        final AggregateASTVisitor restricted= allVisitors
+                .getVisitorsEnabledBy(Collections.<ASTVisitor>singleton(isEmptyRatherThanSize));
+
+        assertSame(allVisitors, restricted);
+    }
+
+    @Test
+    public void noContributorEnablesNoVisitor() {
+        final AggregateASTVisitor restricted= allVisitors.getVisitorsEnabledBy(Collections.<ASTVisitor>emptySet());
+
+        assertEquals(Collections.emptyList(), restricted.getVisitors());
+    }
+}
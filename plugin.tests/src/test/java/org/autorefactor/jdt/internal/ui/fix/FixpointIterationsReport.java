@@ -0,0 +1,280 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.ui.fix;
+
+import static org.autorefactor.test.TestHelper.TEST_ENVIRONMENT;
+import static org.autorefactor.test.TestHelper.newJavaProjectOptions;
+import static org.autorefactor.test.TestHelper.readAll;
+import static org.autorefactor.test.TestHelper.samples;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.autorefactor.jdt.internal.corext.dom.ApplyRefactoringsJob;
+import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRun;
+import org.autorefactor.jdt.internal.corext.dom.Release;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.TextEdit;
+import org.junit.Test;
+
+/**
+ * Runs every input sample through all the cleanup rules, not only its own
+ * rule, and reports for each sample:
+ * <ul>
+ * <li>the number of iterations the fixpoint loop of
+ * {@link ApplyRefactoringsJob} needed;</li>
+ * <li>the parse time and the time of the fixpoint loop;</li>
+ * <li>the number of edits applied;</li>
+ * <li>the rules which took the longest to visit the sample.</li>
+ * </ul>
+ * The samples are sorted by decreasing number of iterations. The samples
+ * needing more than <code>report.maxIterations</code> iterations (5 by
+ * default) are flagged, and so are the samples on which a rule failed: they
+ * point at rules undoing each other or at slow rules. The report also lists
+ * the total visit time of each rule over all the samples.
+ * <p>
+ * The report is written to <code>report.file</code>,
+ * <code>target/fixpoint-report.txt</code> by default. This is not a unit test
+ * and it is not run by default. Run it on demand with
+ * {@code mvn test -Dtest=FixpointIterationsReport}.
+ */
+public class FixpointIterationsReport {
+    private static final String SAMPLES_BASE_DIR= "../samples/src/test/java/org/autorefactor/jdt/internal/ui/fix/"; //$NON-NLS-1$
+    private static final String PACKAGE_NAME= "org.autorefactor.jdt.internal.ui.fix.samples_in"; //$NON-NLS-1$
+    private static final int NB_SLOWEST_RULES= 3;
+
+    /** What happened to one sample. */
+    private static final class SampleReport {
+        private final String sampleName;
+        private int nbIterations;
+        private long parseNanos;
+        private long fixpointNanos;
+        private int nbEdits;
+        private final List<Map.Entry<String, Long>> slowestRules= new ArrayList<>();
+        private String failure;
+
+        private SampleReport(String sampleName) {
+            this.sampleName= sampleName;
+        }
+    }
+
+    private final int maxIterations= Integer.getInteger("report.maxIterations", 5); //$NON-NLS-1$
+    /** Total visit time of each rule over all the samples. */
+    private final Map<String, Long> ruleNanos= new HashMap<>();
+
+    @Test
+    public void reportFixpointIterations() throws Exception {
+        final List<String> testNames= new ArrayList<>();
+        for (Object[] sample : samples(SAMPLES_BASE_DIR, Collections.<Class<?>>emptyList(),
+                Collections.<Class<?>>emptyList())) {
+            testNames.add(((String) sample[0]).replace("Sample.java", "")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        final List<SampleReport> reports= new ArrayList<>(testNames.size());
+        for (String testName : testNames) {
+            reports.add(report(testName));
+        }
+        Collections.sort(reports, new Comparator<SampleReport>() {
+            /**
+             * Compare objects.
+             *
+             * @param o1 First item
+             * @param o2 Second item
+             *
+             * @return -1, 0 or 1
+             */
+            public int compare(SampleReport o1, SampleReport o2) {
+                if (o1.nbIterations != o2.nbIterations) {
+                    return o1.nbIterations > o2.nbIterations ? -1 : 1;
+                }
+                return Long.compare(o2.fixpointNanos, o1.fixpointNanos);
+            }
+        });
+
+        final List<String> flaggedSamples= new ArrayList<>();
+        for (SampleReport report : reports) {
+            if (report.failure != null || report.nbIterations > maxIterations) {
+                flaggedSamples.add(report.sampleName);
+            }
+        }
+        writeReport(reports);
+        assertTrue("Samples needing more than " + maxIterations + " iterations or failing: " + flaggedSamples, //$NON-NLS-1$ //$NON-NLS-2$
+                flaggedSamples.isEmpty());
+    }
+
+    private SampleReport report(String testName) throws Exception {
+        final String sampleName= testName + "Sample.java"; //$NON-NLS-1$
+        final SampleReport report= new SampleReport(sampleName);
+        final String source= readAll(new File(SAMPLES_BASE_DIR, "samples_in/" + sampleName)); //$NON-NLS-1$
+        final ICompilationUnit cu= JavaCoreHelper.getIsolatedPackageFragment(PACKAGE_NAME)
+                .createCompilationUnit(sampleName, source, true, null);
+        try {
+            report(report, cu, source);
+        } finally {
+            // The next samples must not see this one
+            cu.delete(true, null);
+        }
+        return report;
+    }
+
+    private void report(SampleReport report, ICompilationUnit cu, String source) throws Exception {
+        cu.getBuffer().setContents(source);
+        cu.save(null, true);
+        final JavaProjectOptions options= newJavaProjectOptions(Release.javaSE("1.8.0"), 4); //$NON-NLS-1$
+
+        long start= System.nanoTime();
+        final CompilationUnit astRoot= parse(cu, options);
+        report.parseNanos= System.nanoTime() - start;
+
+        // Each rule on its own, over the AST of the unchanged sample
+        final Map<String, Long> sampleRuleNanos= new HashMap<>();
+        for (RefactoringRule rule : AllCleanUpRules.getAllCleanUpRules()) {
+            final String ruleName= rule.getClass().getSimpleName();
+            final AggregateASTVisitor visitor= new AggregateASTVisitor(Collections.singletonList(rule));
+            visitor.setRefactoringContext(new RefactoringContext(cu, astRoot, options,
+                    SubMonitor.convert(new NullProgressMonitor()), TEST_ENVIRONMENT, new RefactoringRun()));
+            start= System.nanoTime();
+            try {
+                visitor.getRefactorings(astRoot);
+            } catch (RuntimeException e) {
+                report.failure= ruleName + " failed: " + e; //$NON-NLS-1$
+            }
+            final long nanos= System.nanoTime() - start;
+            sampleRuleNanos.put(ruleName, nanos);
+            final Long totalNanos= ruleNanos.get(ruleName);
+            ruleNanos.put(ruleName, totalNanos != null ? totalNanos + nanos : nanos);
+        }
+        report.slowestRules.addAll(sortByDecreasingValue(sampleRuleNanos));
+        report.slowestRules.subList(Math.min(NB_SLOWEST_RULES, report.slowestRules.size()),
+                report.slowestRules.size()).clear();
+
+        // Then all the rules until the fixpoint
+        start= System.nanoTime();
+        try {
+            final List<TextEdit> textEdits= new ApplyRefactoringsJob(null, null, TEST_ENVIRONMENT).applyRefactoring(
+                    new Document(source), cu, new AggregateASTVisitor(AllCleanUpRules.getAllCleanUpRules()), options,
+                    SubMonitor.convert(new NullProgressMonitor()), true);
+            report.nbIterations= textEdits.size();
+            for (TextEdit textEdit : textEdits) {
+                report.nbEdits+= countEdits(textEdit);
+            }
+        } catch (RuntimeException e) {
+            report.failure= "Fixpoint failed: " + e; //$NON-NLS-1$
+        }
+        report.fixpointNanos= System.nanoTime() - start;
+    }
+
+    private static CompilationUnit parse(ICompilationUnit cu, JavaProjectOptions options) {
+        final ASTParser parser= ASTParser.newParser(AST.JLS8);
+        parser.setSource(cu);
+        parser.setResolveBindings(true);
+        parser.setCompilerOptions(options.getCompilerOptions());
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    /** Counts the leaf edits, the other ones only group them. */
+    private static int countEdits(TextEdit textEdit) {
+        if (!textEdit.hasChildren()) {
+            return 1;
+        }
+        int count= 0;
+        for (TextEdit child : textEdit.getChildren()) {
+            count+= countEdits(child);
+        }
+        return count;
+    }
+
+    private static List<Map.Entry<String, Long>> sortByDecreasingValue(Map<String, Long> map) {
+        final List<Map.Entry<String, Long>> entries= new ArrayList<>(map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            /**
+             * Compare objects.
+             *
+             * @param o1 First item
+             * @param o2 Second item
+             *
+             * @return -1, 0 or 1
+             */
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        return entries;
+    }
+
+    private void writeReport(Collection<SampleReport> reports) throws Exception {
+        final File reportFile= new File(System.getProperty("report.file", "target/fixpoint-report.txt")); //$NON-NLS-1$ //$NON-NLS-2$
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        final PrintWriter out= new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8")); //$NON-NLS-1$
+        try {
+            out.println("Fixpoint iterations with all the rules on " + reports.size() //$NON-NLS-1$
+                    + " samples, flagged with !! when more than " + maxIterations + " iterations or failing"); //$NON-NLS-1$ //$NON-NLS-2$
+            out.println();
+            out.println(String.format("   %10s %9s %12s %6s  %s", //$NON-NLS-1$
+                    "iterations", "parse ms", "fixpoint ms", "edits", "sample and slowest rules")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+            for (SampleReport report : reports) {
+                final boolean flagged= report.failure != null || report.nbIterations > maxIterations;
+                final StringBuilder sb= new StringBuilder(String.format("%2s %10d %9.1f %12.1f %6d  %s", //$NON-NLS-1$
+                        flagged ? "!!" : "", report.nbIterations, report.parseNanos / 1e6, //$NON-NLS-1$ //$NON-NLS-2$
+                        report.fixpointNanos / 1e6, report.nbEdits, report.sampleName));
+                for (Map.Entry<String, Long> rule : report.slowestRules) {
+                    sb.append(String.format(", %s %.1f ms", rule.getKey(), rule.getValue() / 1e6)); //$NON-NLS-1$
+                }
+                if (report.failure != null) {
+                    sb.append(", ").append(report.failure); //$NON-NLS-1$
+                }
+                out.println(sb);
+            }
+
+            out.println();
+            out.println("Total visit time of each rule over all the samples"); //$NON-NLS-1$
+            out.println();
+            for (Map.Entry<String, Long> rule : sortByDecreasingValue(ruleNanos)) {
+                out.println(String.format("%9.1f ms  %s", rule.getValue() / 1e6, rule.getKey())); //$NON-NLS-1$
+            }
+        } finally {
+            out.close();
+        }
+        System.out.println(getClass().getSimpleName() + ": report written to " + reportFile.getAbsolutePath()); //$NON-NLS-1$
+    }
+}
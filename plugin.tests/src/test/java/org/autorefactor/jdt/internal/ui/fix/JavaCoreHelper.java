@@ -53,27 +53,73 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+/**
+ * Shared Java project fixture of the tests. The project and its class path are
+ * only built once, on first use.
+ * <p>
+ * The tests running concurrently create their compilation units in a Java
+ * project of their worker thread, so that they never see the types of the
+ * tests running on the other threads.
+ */
 public final class JavaCoreHelper {
     private static final Path[] EMPTY_PATHS= {};
 
+    private static IPackageFragmentRoot sharedRoot;
+    /** Runtime and samples dependencies, only read once from the samples pom. */
+    private static List<IClasspathEntry> libraryEntries;
+    private static int nbIsolatedProjects;
+    private static final ThreadLocal<IPackageFragmentRoot> isolatedRoot= new ThreadLocal<>();
+
     public static IPackageFragment getPackageFragment(String packageName) throws Exception {
-        final IJavaProject javaProject= createJavaProject("projectName", "bin"); //$NON-NLS-1$ $NON-NLS-2$
-        final IPackageFragmentRoot root= addSourceContainer(javaProject, "/testRoot"); //$NON-NLS-1$
-        addToClasspath(javaProject, getClasspathEntries(root));
+        return getSharedRoot().createPackageFragment(packageName, true, null);
+    }
+
+    /**
+     * Returns the package fragment in the Java project dedicated to the current
+     * thread.
+     * <p>
+     * The tests of a thread run one after the other, so they should delete
+     * their compilation units once done, for the next tests not to see them.
+     *
+     * @param packageName the package name
+     * @return the package fragment
+     * @throws Exception if the package fragment cannot be created
+     */
+    public static IPackageFragment getIsolatedPackageFragment(String packageName) throws Exception {
+        IPackageFragmentRoot root= isolatedRoot.get();
+        if (root == null) {
+            root= createIsolatedRoot();
+            isolatedRoot.set(root);
+        }
         return root.createPackageFragment(packageName, true, null);
     }
 
-    private static List<IClasspathEntry> getClasspathEntries(final IPackageFragmentRoot root) throws Exception {
-        final List<IClasspathEntry> entries= new ArrayList<>();
-        final IClasspathEntry srcEntry= JavaCore.newSourceEntry(root.getPath(), EMPTY_PATHS, EMPTY_PATHS, null);
-        entries.add(srcEntry);
+    private static synchronized IPackageFragmentRoot createIsolatedRoot() throws Exception {
+        nbIsolatedProjects++;
+        final IJavaProject javaProject= createJavaProject("isolatedProject" + nbIsolatedProjects, "bin"); //$NON-NLS-1$ $NON-NLS-2$
+        return addSourceContainer(javaProject, "/testRoot"); //$NON-NLS-1$
+    }
 
-        // Should not execute this code for Java 9
-        final IClasspathEntry rtJarEntry= JavaCore.newLibraryEntry(getPathToRtJar(), null, null);
-        entries.add(rtJarEntry);
+    private static synchronized IPackageFragmentRoot getSharedRoot() throws Exception {
+        if (sharedRoot == null) {
+            final IJavaProject javaProject= createJavaProject("projectName", "bin"); //$NON-NLS-1$ $NON-NLS-2$
+            sharedRoot= addSourceContainer(javaProject, "/testRoot"); //$NON-NLS-1$
+        }
+        return sharedRoot;
+    }
+
+    private static synchronized List<IClasspathEntry> getLibraryEntries() throws Exception {
+        if (libraryEntries == null) {
+            final List<IClasspathEntry> entries= new ArrayList<>();
 
-        extractClasspathEntries(entries, "../samples/pom.xml"); //$NON-NLS-1$
-        return entries;
+            // Should not execute this code for Java 9
+            final IClasspathEntry rtJarEntry= JavaCore.newLibraryEntry(getPathToRtJar(), null, null);
+            entries.add(rtJarEntry);
+
+            extractClasspathEntries(entries, "../samples/pom.xml"); //$NON-NLS-1$
+            libraryEntries= entries;
+        }
+        return libraryEntries;
     }
 
     private static void extractClasspathEntries(List<IClasspathEntry> entries, String classpathFile) throws Exception {
@@ -199,8 +245,10 @@ public final class JavaCoreHelper {
         createFolder(folder);
 
         IPackageFragmentRoot root= javaProject.getPackageFragmentRoot(folder);
-        IClasspathEntry cpe= JavaCore.newSourceEntry(root.getPath(), EMPTY_PATHS, EMPTY_PATHS, null);
-        addToClasspath(javaProject, Arrays.asList(cpe));
+        final List<IClasspathEntry> entries= new ArrayList<>();
+        entries.add(JavaCore.newSourceEntry(root.getPath(), EMPTY_PATHS, EMPTY_PATHS, null));
+        entries.addAll(getLibraryEntries());
+        addToClasspath(javaProject, entries);
         return root;
     }
 
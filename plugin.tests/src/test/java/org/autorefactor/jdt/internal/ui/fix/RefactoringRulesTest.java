@@ -44,6 +44,7 @@ import java.util.concurrent.Callable;
 import org.autorefactor.jdt.internal.corext.dom.ApplyRefactoringsJob;
 import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
 import org.autorefactor.jdt.internal.corext.dom.Release;
+import org.autorefactor.test.ParallelParameterized;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -53,14 +54,16 @@ import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
 /**
  * Tests each refactoring rule in isolation. Each cleanup rule is run in a
  * loop until it cannot apply any more changes to the sample file.
+ * <p>
+ * The samples run concurrently, each one in the Java project of its worker
+ * thread.
  */
-@RunWith(value= Parameterized.class)
+@RunWith(value= ParallelParameterized.class)
 public class RefactoringRulesTest {
     private static final String SAMPLES_BASE_DIR= "../samples/src/test/java/org/autorefactor/jdt/internal/ui/fix/"; //$NON-NLS-1$
     private static final String PACKAGE_NAME= "org.autorefactor.jdt.internal.ui.fix.samples_in"; //$NON-NLS-1$
@@ -80,7 +83,7 @@ public class RefactoringRulesTest {
     }
 
     @Parameters(name= "{0}Refactoring")
-    public static Collection<Object[]> data() {
+    public static Collection<Object[]> data() throws Exception {
         Collection<Object[]> samples= samples(SAMPLES_BASE_DIR, WHITELIST, BLACKLIST);
         for (Object[] sample : samples) {
             sample[0]= ((String) sample[0]).replace("Sample.java", ""); //$NON-NLS-1$ $NON-NLS-2$
@@ -134,16 +137,21 @@ public class RefactoringRulesTest {
 
     private IDocument when(final String sampleName, final RefactoringRule refactoring, final String sampleInSource)
             throws Exception, JavaModelException {
-        final IPackageFragment packageFragment= JavaCoreHelper.getPackageFragment(PACKAGE_NAME);
+        final IPackageFragment packageFragment= JavaCoreHelper.getIsolatedPackageFragment(PACKAGE_NAME);
         final ICompilationUnit cu= packageFragment.createCompilationUnit(sampleName, sampleInSource, true, null);
-        cu.getBuffer().setContents(sampleInSource);
-        cu.save(null, true);
-
-        final IDocument doc= new Document(sampleInSource);
-        new ApplyRefactoringsJob(null, null, TEST_ENVIRONMENT).applyRefactoring(doc, cu,
-                new AggregateASTVisitor(Arrays.asList(refactoring)), newJavaProjectOptions(Release.javaSE("1.8.0"), 4), //$NON-NLS-1$
-                SubMonitor.convert(new NullProgressMonitor()), true);
-        return doc;
+        try {
+            cu.getBuffer().setContents(sampleInSource);
+            cu.save(null, true);
+
+            final IDocument doc= new Document(sampleInSource);
+            new ApplyRefactoringsJob(null, null, TEST_ENVIRONMENT).applyRefactoring(doc, cu,
+                    new AggregateASTVisitor(Arrays.asList(refactoring)), newJavaProjectOptions(Release.javaSE("1.8.0"), 4), //$NON-NLS-1$
+                    SubMonitor.convert(new NullProgressMonitor()), true);
+            return doc;
+        } finally {
+            // The next samples of this thread must not see this one
+            cu.delete(true, null);
+        }
     }
 
     private void then(final String sampleOutSource, final IDocument doc) {
@@ -0,0 +1,72 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runners.Parameterized;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * {@link Parameterized} runner running the tests of each parameter set
+ * concurrently, on as many threads as available processors. The number of
+ * threads can be changed with the <code>tests.threads</code> system property.
+ * <p>
+ * The tests must not share mutable state: for example each test creates its
+ * compilation units in the Java project of its thread, and deletes them once
+ * done.
+ */
+public class ParallelParameterized extends Parameterized {
+    /**
+     * Builds an instance of this class.
+     *
+     * @param klass the test class
+     * @throws Throwable if the parameters cannot be computed
+     */
+    public ParallelParameterized(Class<?> klass) throws Throwable {
+        super(klass);
+        setScheduler(new RunnerScheduler() {
+            private final ExecutorService executor= Executors.newFixedThreadPool(
+                    Integer.getInteger("tests.threads", Runtime.getRuntime().availableProcessors())); //$NON-NLS-1$
+
+            public void schedule(Runnable childStatement) {
+                executor.submit(childStatement);
+            }
+
+            public void finished() {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                }
+            }
+        });
+    }
+}
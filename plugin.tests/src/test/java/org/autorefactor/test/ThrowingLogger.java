@@ -25,6 +25,7 @@
  */
 package org.autorefactor.test;
 
+import org.autorefactor.environment.LogEvent;
 import org.autorefactor.environment.Logger;
 import org.autorefactor.util.UnhandledException;
 
@@ -59,4 +60,23 @@ class ThrowingLogger implements Logger {
     public void warn(String message) {
         throw new RuntimeException(message);
     }
+
+    /**
+     * Ignore an informational message.
+     *
+     * @param message the message
+     */
+    public void info(String message) {
+    }
+
+    /**
+     * Log an event, throwing unless it is an informational message.
+     *
+     * @param event the event
+     */
+    public void log(LogEvent event) {
+        if (event.getSeverity() != LogEvent.Severity.INFO) {
+            throw new UnhandledException(null, event.getFormattedMessage(), event.getException());
+        }
+    }
 }
@@ -29,6 +29,7 @@ import java.util.Vector;
 
 import org.autorefactor.environment.Environment;
 import org.autorefactor.environment.JobManager;
+import org.autorefactor.environment.LogEvent;
 import org.autorefactor.environment.Logger;
 import org.autorefactor.preferences.PreferenceConstants;
 import org.autorefactor.ui.DisplayEventLoop;
@@ -107,6 +108,37 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
         public void error(String message, Exception e) {
             log(IStatus.ERROR, message, e);
         }
+
+        /**
+         * Log an informational message.
+         *
+         * @param message the message
+         */
+        public void info(String message) {
+            getDefault().getLog().log(new Status(IStatus.INFO, PLUGIN_ID, message));
+        }
+
+        /**
+         * Log an event.
+         *
+         * @param event the event
+         */
+        public void log(LogEvent event) {
+            switch (event.getSeverity()) {
+            case ERROR:
+                log(IStatus.ERROR, event.getFormattedMessage(), event.getException());
+                break;
+
+            case WARNING:
+                log(IStatus.WARNING, event.getFormattedMessage(), event.getException());
+                break;
+
+            default:
+                getDefault().getLog().log(
+                        new Status(IStatus.INFO, PLUGIN_ID, event.getFormattedMessage(), event.getException()));
+                break;
+            }
+        }
     }
 
     /**
@@ -25,7 +25,11 @@
  */
 package org.autorefactor.ui.preferences;
 
+import static org.autorefactor.preferences.PreferenceConstants.ADAPTIVE_RULE_ORDER_ON;
+import static org.autorefactor.preferences.PreferenceConstants.CHANGED_LINES_BASE_REF;
 import static org.autorefactor.preferences.PreferenceConstants.DEBUG_MODE_ON;
+import static org.autorefactor.preferences.PreferenceConstants.MAX_IDLE_RUNS;
+import static org.autorefactor.preferences.PreferenceConstants.TRANSACTIONAL_MODE_ON;
 
 import org.autorefactor.jdt.internal.ui.fix.AbstractCleanUpRule;
 import org.autorefactor.preferences.PreferenceConstants;
@@ -58,6 +62,42 @@ public class EclipsePreferences implements Preferences {
         return getBoolean(DEBUG_MODE_ON);
     }
 
+    /**
+     * True if the adaptive rule order is on.
+     *
+     * @return True if the adaptive rule order is on.
+     */
+    public boolean adaptiveRuleOrderOn() {
+        return getBoolean(ADAPTIVE_RULE_ORDER_ON);
+    }
+
+    /**
+     * Get the number of runs without firing before a rule is skipped.
+     *
+     * @return the number of runs without firing before a rule is skipped.
+     */
+    public int getMaxIdleRuns() {
+        return preferenceStore.getInt(MAX_IDLE_RUNS.getName());
+    }
+
+    /**
+     * True if the changed files are written at the end of the run.
+     *
+     * @return True if the changed files are written at the end of the run.
+     */
+    public boolean transactionalModeOn() {
+        return getBoolean(TRANSACTIONAL_MODE_ON);
+    }
+
+    /**
+     * Get the git reference the changed lines are computed against.
+     *
+     * @return the git reference the changed lines are computed against.
+     */
+    public String getChangedLinesBaseRef() {
+        return preferenceStore.getString(CHANGED_LINES_BASE_REF.getName());
+    }
+
     /**
      * True if it is enabled.
      *
@@ -26,7 +26,11 @@
  */
 package org.autorefactor.ui.preferences;
 
+import static org.autorefactor.preferences.PreferenceConstants.ADAPTIVE_RULE_ORDER_ON;
+import static org.autorefactor.preferences.PreferenceConstants.CHANGED_LINES_BASE_REF;
 import static org.autorefactor.preferences.PreferenceConstants.DEBUG_MODE_ON;
+import static org.autorefactor.preferences.PreferenceConstants.MAX_IDLE_RUNS;
+import static org.autorefactor.preferences.PreferenceConstants.TRANSACTIONAL_MODE_ON;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -38,7 +42,9 @@ import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
 import org.autorefactor.jdt.internal.ui.fix.AllCleanUpRules;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.PreferencePage;
+import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
@@ -164,9 +170,21 @@ public class WorkspacePreferencePage extends PreferencePage implements IWorkbenc
      * @param allRefactoringRules allCleanupRules
      */
     protected void initFields(final List<RefactoringRule> allRefactoringRules) {
-        fields= new ArrayList<FieldEditor>(1 + allRefactoringRules.size());
+        fields= new ArrayList<FieldEditor>(5 + allRefactoringRules.size());
 
         fields.add(new BooleanFieldEditor(DEBUG_MODE_ON.getName(), DEBUG_MODE_ON.getDescription(), fieldEditorParent));
+        fields.add(new BooleanFieldEditor(ADAPTIVE_RULE_ORDER_ON.getName(), ADAPTIVE_RULE_ORDER_ON.getDescription(),
+                fieldEditorParent));
+        final IntegerFieldEditor maxIdleRuns= new IntegerFieldEditor(MAX_IDLE_RUNS.getName(),
+                MAX_IDLE_RUNS.getDescription(), fieldEditorParent);
+        maxIdleRuns.setValidRange(0, Integer.MAX_VALUE);
+        fields.add(maxIdleRuns);
+        fields.add(new BooleanFieldEditor(TRANSACTIONAL_MODE_ON.getName(), TRANSACTIONAL_MODE_ON.getDescription(),
+                fieldEditorParent));
+        final StringFieldEditor changedLinesBaseRef= new StringFieldEditor(CHANGED_LINES_BASE_REF.getName(),
+                CHANGED_LINES_BASE_REF.getDescription(), fieldEditorParent);
+        changedLinesBaseRef.setEmptyStringAllowed(false);
+        fields.add(changedLinesBaseRef);
     }
 
     private void invalidateToggleRules(final Composite ruleGroup) {
@@ -25,8 +25,8 @@
  */
 package org.autorefactor.cfg;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.Objects;
 
 import org.autorefactor.util.IllegalArgumentException;
@@ -55,8 +55,8 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
      */
     private final Boolean isEntryBlock;
     private final LineAndColumn lineAndColumn;
-    private final Collection<CFGEdge> incomingEdges= new LinkedList<>();
-    private final Collection<Object> outgoingEdgesAndVariableAccesses= new LinkedList<>();
+    private final Collection<CFGEdge> incomingEdges= new ArrayList<>();
+    private final Collection<Object> outgoingEdgesAndVariableAccesses= new ArrayList<>();
 
     private CFGBasicBlock(ASTNode node, String fileName, String codeExcerpt, boolean isDecision, Boolean isEntryBlock,
             LineAndColumn lineAndColumn) {
@@ -153,6 +153,15 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
         return Boolean.FALSE.equals(this.isEntryBlock);
     }
 
+    /**
+     * Returns the incoming edges of this basic block.
+     *
+     * @return the incoming edges of this basic block
+     */
+    public Collection<CFGEdge> getIncomingEdges() {
+        return incomingEdges;
+    }
+
     /**
      * Returns a collection of the outgoing edges and variable accesses of this
      * basic block.
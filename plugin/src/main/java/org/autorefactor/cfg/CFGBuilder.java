@@ -439,7 +439,7 @@ public class CFGBuilder {
     private ITypeBinding newException(Expression node, String fullyQualifiedName) {
         ITypeBinding typeBinding= typeBindingsCache.get(fullyQualifiedName);
         if (typeBinding == null) {
-            typeBinding= new TypeNameDecider(node).resolveTypeBinding(fullyQualifiedName);
+            typeBinding= TypeNameDecider.of(node).resolveTypeBinding(fullyQualifiedName);
             typeBindingsCache.put(typeBinding.getQualifiedName(), typeBinding);
         }
         return typeBinding;
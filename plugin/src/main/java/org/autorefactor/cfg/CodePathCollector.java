@@ -27,15 +27,25 @@ package org.autorefactor.cfg;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.autorefactor.util.IllegalStateException;
 
-/** Collects code paths into the CFG. */
+/**
+ * Collects code paths into the CFG.
+ * <p>
+ * The number of paths grows exponentially with the number of branches, prefer
+ * the linear time queries of {@link DominatorTree} and {@link MethodDataFlow}
+ * to answer questions about all the paths.
+ */
 public class CodePathCollector {
     private final List<List<CFGBasicBlock>> results= new ArrayList<>();
-    private final LinkedList<CFGBasicBlock> stack= new LinkedList<>();
+    private final List<CFGBasicBlock> stack= new ArrayList<>();
+    private final Set<CFGBasicBlock> blocksInStack= Collections
+            .newSetFromMap(new IdentityHashMap<CFGBasicBlock, Boolean>());
 
     /**
      * Returns the collected code paths.
@@ -55,12 +65,12 @@ public class CodePathCollector {
             results.add(new ArrayList<CFGBasicBlock>(stack));
             return;
         }
-        if (stack.contains(block)) {
+        if (!blocksInStack.add(block)) {
             // Cycle detected, let's stop it here
             return;
         }
 
-        stack.addFirst(block);
+        stack.add(block);
         try {
             boolean foundAtLeastOneEdge= false;
             for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
@@ -74,7 +84,8 @@ public class CodePathCollector {
                 throw new IllegalStateException(block.getNode(), "Path should have ended with an exit block: " + stack); //$NON-NLS-1$
             }
         } finally {
-            stack.removeLast();
+            stack.remove(stack.size() - 1);
+            blocksInStack.remove(block);
         }
     }
 }
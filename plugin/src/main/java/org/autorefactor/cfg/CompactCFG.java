@@ -0,0 +1,423 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+
+/**
+ * Compact, int indexed form of a method CFG.
+ * <p>
+ * The basic blocks reachable from the entry block are numbered densely in
+ * reverse post order, so the entry block has index 0 and a block index is
+ * always lower than the indices of the blocks it dominates. Edges are stored in
+ * compressed sparse row arrays and variable accesses in primitive arrays, apart
+ * from the {@link CFGBasicBlock} objects graph which mixes both.
+ * <p>
+ * Only the accesses to local variables and parameters are recorded: the fields
+ * can be read by the called methods and after the method returns, which the
+ * method CFG does not show.
+ */
+public final class CompactCFG {
+    private final CFGBasicBlock[] blocks;
+    private final Map<CFGBasicBlock, Integer> blockIndices= new IdentityHashMap<>();
+    private final Map<ASTNode, Integer> nodeIndices= new IdentityHashMap<>();
+    private final int exitBlock;
+
+    private final int[] successorOffsets;
+    private final int[] successors;
+    private final int[] predecessorOffsets;
+    private final int[] predecessors;
+
+    private final Map<Object, Integer> variableIndices= new HashMap<>();
+    private final int[] accessOffsets;
+    private final int[] accessVariables;
+    private final int[] accessTypes;
+    private final VariableAccess[] accesses;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param entryBlock the entry block of the method CFG, as returned by
+     *                   {@link CFGBuilder#buildCFG(org.eclipse.jdt.core.dom.MethodDeclaration)}
+     */
+    public CompactCFG(CFGBasicBlock entryBlock) {
+        this.blocks= reversePostOrder(entryBlock);
+        final int nbBlocks= blocks.length;
+        int exit= -1;
+        for (int i= 0; i < nbBlocks; i++) {
+            blockIndices.put(blocks[i], i);
+            if (blocks[i].isExitBlock()) {
+                exit= i;
+            }
+        }
+        this.exitBlock= exit;
+
+        this.successorOffsets= new int[nbBlocks + 1];
+        this.predecessorOffsets= new int[nbBlocks + 1];
+        this.accessOffsets= new int[nbBlocks + 1];
+        final List<CFGBasicBlock> successorBlocks= new ArrayList<>();
+        final List<VariableAccess> accessList= new ArrayList<>();
+        final List<Integer> accessVariableList= new ArrayList<>();
+        int nbPredecessors= 0;
+
+        for (int i= 0; i < nbBlocks; i++) {
+            final CFGBasicBlock block= blocks[i];
+            if (block.getNode() != null && !nodeIndices.containsKey(block.getNode())) {
+                nodeIndices.put(block.getNode(), i);
+            }
+
+            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+                if (obj instanceof CFGEdge) {
+                    successorBlocks.add(((CFGEdge) obj).getTargetBlock());
+                } else {
+                    final VariableAccess access= (VariableAccess) obj;
+                    final Object variableKey= getVariableKey(access);
+                    if (variableKey != null) {
+                        accessList.add(access);
+                        accessVariableList.add(getOrAddVariable(variableKey));
+                        nodeIndices.put(access.getAstNode(), i);
+                    }
+                }
+            }
+            successorOffsets[i + 1]= successorBlocks.size();
+            accessOffsets[i + 1]= accessList.size();
+
+            for (CFGEdge edge : block.getIncomingEdges()) {
+                if (blockIndices.containsKey(edge.getSourceBlock())) {
+                    // Ignore unreachable blocks
+                    nbPredecessors++;
+                }
+            }
+            predecessorOffsets[i + 1]= nbPredecessors;
+        }
+
+        this.successors= new int[successorBlocks.size()];
+        for (int i= 0; i < successors.length; i++) {
+            successors[i]= blockIndices.get(successorBlocks.get(i));
+        }
+
+        this.predecessors= new int[nbPredecessors];
+        int predecessor= 0;
+        for (CFGBasicBlock block : blocks) {
+            for (CFGEdge edge : block.getIncomingEdges()) {
+                final Integer index= blockIndices.get(edge.getSourceBlock());
+                if (index != null) {
+                    predecessors[predecessor++]= index;
+                }
+            }
+        }
+
+        this.accesses= accessList.toArray(new VariableAccess[accessList.size()]);
+        this.accessVariables= new int[accesses.length];
+        this.accessTypes= new int[accesses.length];
+        for (int i= 0; i < accesses.length; i++) {
+            accessVariables[i]= accessVariableList.get(i);
+            accessTypes[i]= accesses[i].getAccessType();
+        }
+    }
+
+    private static CFGBasicBlock[] reversePostOrder(CFGBasicBlock entryBlock) {
+        final Map<CFGBasicBlock, Boolean> visited= new IdentityHashMap<>();
+        final List<CFGBasicBlock> postOrder= new ArrayList<>();
+        final List<CFGBasicBlock> stack= new ArrayList<>();
+        final List<List<CFGBasicBlock>> stackSuccessors= new ArrayList<>();
+        final List<Integer> nextSuccessors= new ArrayList<>();
+        visited.put(entryBlock, Boolean.TRUE);
+        stack.add(entryBlock);
+        stackSuccessors.add(successorBlocks(entryBlock));
+        nextSuccessors.add(0);
+
+        while (!stack.isEmpty()) {
+            final int top= stack.size() - 1;
+            final List<CFGBasicBlock> blockSuccessors= stackSuccessors.get(top);
+            final int nextSuccessor= nextSuccessors.get(top);
+
+            if (nextSuccessor < blockSuccessors.size()) {
+                nextSuccessors.set(top, nextSuccessor + 1);
+                final CFGBasicBlock successor= blockSuccessors.get(nextSuccessor);
+                if (visited.put(successor, Boolean.TRUE) == null) {
+                    stack.add(successor);
+                    stackSuccessors.add(successorBlocks(successor));
+                    nextSuccessors.add(0);
+                }
+            } else {
+                postOrder.add(stack.remove(top));
+                stackSuccessors.remove(top);
+                nextSuccessors.remove(top);
+            }
+        }
+
+        final CFGBasicBlock[] results= new CFGBasicBlock[postOrder.size()];
+        for (int i= 0; i < results.length; i++) {
+            results[i]= postOrder.get(results.length - 1 - i);
+        }
+        return results;
+    }
+
+    private static List<CFGBasicBlock> successorBlocks(CFGBasicBlock block) {
+        final List<CFGBasicBlock> results= new ArrayList<>();
+        for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+            if (obj instanceof CFGEdge) {
+                results.add(((CFGEdge) obj).getTargetBlock());
+            }
+        }
+        return results;
+    }
+
+    private int getOrAddVariable(Object variableKey) {
+        Integer variable= variableIndices.get(variableKey);
+        if (variable == null) {
+            variable= variableIndices.size();
+            variableIndices.put(variableKey, variable);
+        }
+        return variable;
+    }
+
+    private static Object getVariableKey(VariableAccess access) {
+        final IBinding binding;
+        if (access.getName() != null) {
+            binding= access.getName().resolveBinding();
+        } else if (access.getAstNode() instanceof FieldAccess) {
+            binding= ((FieldAccess) access.getAstNode()).resolveFieldBinding();
+        } else {
+            return null;
+        }
+
+        if (binding instanceof IVariableBinding) {
+            if (((IVariableBinding) binding).isField()) {
+                return null;
+            }
+            return ((IVariableBinding) binding).getVariableDeclaration();
+        } else if (binding == null && access.getName() != null) {
+            // Bindings are not resolved, fall back to the variable name
+            return access.getName().getFullyQualifiedName();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of basic blocks reachable from the entry block.
+     *
+     * @return the number of basic blocks reachable from the entry block
+     */
+    public int getNbBlocks() {
+        return blocks.length;
+    }
+
+    /**
+     * Returns the basic block with the provided index.
+     *
+     * @param block the basic block index
+     * @return the basic block with the provided index
+     */
+    public CFGBasicBlock getBlock(int block) {
+        return blocks[block];
+    }
+
+    /**
+     * Returns the index of the provided basic block.
+     *
+     * @param block the basic block
+     * @return the index of the provided basic block, or -1 if it is not reachable
+     *         from the entry block
+     */
+    public int getBlockIndex(CFGBasicBlock block) {
+        final Integer index= blockIndices.get(block);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the index of the basic block which was created for the provided
+     * node or which records a variable access for the provided node.
+     *
+     * @param node the node
+     * @return the basic block index, or -1 if no reachable basic block is
+     *         associated to the provided node
+     */
+    public int getBlockIndex(ASTNode node) {
+        final Integer index= nodeIndices.get(node);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the index of the entry block.
+     *
+     * @return the index of the entry block
+     */
+    public int getEntryBlock() {
+        return 0;
+    }
+
+    /**
+     * Returns the index of the exit block.
+     *
+     * @return the index of the exit block, or -1 if it is not reachable from the
+     *         entry block
+     */
+    public int getExitBlock() {
+        return exitBlock;
+    }
+
+    /**
+     * Returns the number of successors of the provided block.
+     *
+     * @param block the basic block index
+     * @return the number of successors of the provided block
+     */
+    public int getNbSuccessors(int block) {
+        return successorOffsets[block + 1] - successorOffsets[block];
+    }
+
+    /**
+     * Returns a successor of the provided block.
+     *
+     * @param block the basic block index
+     * @param i     the index of the successor, between 0 and
+     *              {@link #getNbSuccessors(int)} excluded
+     * @return the successor block index
+     */
+    public int getSuccessor(int block, int i) {
+        return successors[successorOffsets[block] + i];
+    }
+
+    /**
+     * Returns the number of reachable predecessors of the provided block.
+     *
+     * @param block the basic block index
+     * @return the number of reachable predecessors of the provided block
+     */
+    public int getNbPredecessors(int block) {
+        return predecessorOffsets[block + 1] - predecessorOffsets[block];
+    }
+
+    /**
+     * Returns a reachable predecessor of the provided block.
+     *
+     * @param block the basic block index
+     * @param i     the index of the predecessor, between 0 and
+     *              {@link #getNbPredecessors(int)} excluded
+     * @return the predecessor block index
+     */
+    public int getPredecessor(int block, int i) {
+        return predecessors[predecessorOffsets[block] + i];
+    }
+
+    /**
+     * Returns the number of distinct variables accessed in the CFG.
+     *
+     * @return the number of distinct variables accessed in the CFG
+     */
+    public int getNbVariables() {
+        return variableIndices.size();
+    }
+
+    /**
+     * Returns the index of the provided variable.
+     *
+     * @param variable the variable
+     * @return the index of the provided variable, or -1 if it is not accessed in
+     *         the CFG
+     */
+    public int getVariableIndex(IVariableBinding variable) {
+        final Integer index= variableIndices.get(variable.getVariableDeclaration());
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the total number of variable accesses in the CFG.
+     *
+     * @return the total number of variable accesses in the CFG
+     */
+    public int getNbAccesses() {
+        return accesses.length;
+    }
+
+    /**
+     * Returns the index of the first variable access of the provided block.
+     * Variable accesses of a block are numbered contiguously up to the first
+     * variable access of the next block.
+     *
+     * @param block the basic block index, or {@link #getNbBlocks()}
+     * @return the index of the first variable access of the provided block
+     */
+    public int getFirstAccess(int block) {
+        return accessOffsets[block];
+    }
+
+    /**
+     * Returns the variable index of the provided variable access.
+     *
+     * @param access the variable access index
+     * @return the variable index of the provided variable access
+     */
+    public int getAccessVariable(int access) {
+        return accessVariables[access];
+    }
+
+    /**
+     * Returns whether the provided variable access is any of the provided access
+     * types.
+     *
+     * @param access      the variable access index
+     * @param accessTypes the access types, combined with a bitwise or
+     * @return true if the provided variable access is any of the provided access
+     *         types, false otherwise
+     */
+    public boolean isAccessType(int access, int accessTypes) {
+        return (this.accessTypes[access] & accessTypes) != 0;
+    }
+
+    /**
+     * Returns the provided variable access.
+     *
+     * @param access the variable access index
+     * @return the variable access
+     */
+    public VariableAccess getAccess(int access) {
+        return accesses[access];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb= new StringBuilder();
+        for (int i= 0; i < blocks.length; i++) {
+            sb.append(i).append(" -> ") //$NON-NLS-1$
+                    .append(Arrays.toString(Arrays.copyOfRange(successors, successorOffsets[i], successorOffsets[i + 1])))
+                    .append("\n"); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+}
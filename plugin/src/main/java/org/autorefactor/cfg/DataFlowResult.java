@@ -0,0 +1,86 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+/**
+ * The solution of a bit vector data flow problem: one bit set per basic block
+ * on entry and one on exit of the basic block.
+ */
+public final class DataFlowResult {
+    private final BitSet[] entryValues;
+    private final BitSet[] exitValues;
+
+    DataFlowResult(BitSet[] entryValues, BitSet[] exitValues) {
+        this.entryValues= entryValues;
+        this.exitValues= exitValues;
+    }
+
+    /**
+     * Returns whether the provided bit is set on entry of the provided block.
+     *
+     * @param blockIndex the block index
+     * @param bitIndex   the bit index
+     * @return true if the provided bit is set on entry of the provided block,
+     *         false otherwise
+     */
+    public boolean isSetOnEntry(int blockIndex, int bitIndex) {
+        return entryValues[blockIndex].get(bitIndex);
+    }
+
+    /**
+     * Returns whether the provided bit is set on exit of the provided block.
+     *
+     * @param blockIndex the block index
+     * @param bitIndex   the bit index
+     * @return true if the provided bit is set on exit of the provided block, false
+     *         otherwise
+     */
+    public boolean isSetOnExit(int blockIndex, int bitIndex) {
+        return exitValues[blockIndex].get(bitIndex);
+    }
+
+    /**
+     * Returns a copy of the bits set on entry of the provided block.
+     *
+     * @param blockIndex the block index
+     * @return a copy of the bits set on entry of the provided block
+     */
+    public BitSet getEntryValue(int blockIndex) {
+        return (BitSet) entryValues[blockIndex].clone();
+    }
+
+    /**
+     * Returns a copy of the bits set on exit of the provided block.
+     *
+     * @param blockIndex the block index
+     * @return a copy of the bits set on exit of the provided block
+     */
+    public BitSet getExitValue(int blockIndex) {
+        return (BitSet) exitValues[blockIndex].clone();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+/**
+ * Worklist solver for gen/kill bit vector data flow problems over the basic
+ * blocks of a method.
+ * <p>
+ * Blocks are identified by their dense index. The transfer function of a block
+ * is {@code gen | (value & ~kill)}. For a forward problem it maps the value on
+ * entry of the block to the value on exit, for a backward problem it maps the
+ * value on exit to the value on entry.
+ */
+final class DataFlowSolver {
+    private final CompactCFG cfg;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param cfg the CFG, whose blocks are numbered in reverse post order
+     */
+    DataFlowSolver(CompactCFG cfg) {
+        this.cfg= cfg;
+    }
+
+    /**
+     * Solves a bit vector data flow problem.
+     *
+     * @param forward       true for a forward problem, false for a backward
+     *                      problem
+     * @param may           true if the meet operator is the union, false if it is
+     *                      the intersection
+     * @param gen           the bits generated by each block
+     * @param kill          the bits killed by each block
+     * @param boundaryValue the value flowing in the blocks without predecessors
+     *                      (forward) or without successors (backward)
+     * @param nbBits        the number of bits of the problem
+     * @return the solution of the data flow problem
+     */
+    DataFlowResult solve(boolean forward, boolean may, BitSet[] gen, BitSet[] kill, BitSet boundaryValue,
+            int nbBits) {
+        final int nbBlocks= cfg.getNbBlocks();
+        final BitSet[] meetValues= new BitSet[nbBlocks];
+        final BitSet[] transferValues= new BitSet[nbBlocks];
+
+        final BitSet top= new BitSet(nbBits);
+        if (!may) {
+            top.set(0, nbBits);
+        }
+        for (int block= 0; block < nbBlocks; block++) {
+            transferValues[block]= (BitSet) top.clone();
+        }
+
+        // The worklist is a circular queue initialized in an order visiting
+        // predecessors first, to minimize the number of iterations
+        final int[] worklist= new int[nbBlocks];
+        final boolean[] inWorklist= new boolean[nbBlocks];
+        for (int i= 0; i < nbBlocks; i++) {
+            worklist[i]= forward ? i : nbBlocks - 1 - i;
+            inWorklist[worklist[i]]= true;
+        }
+        int head= 0;
+        int size= nbBlocks;
+
+        while (size > 0) {
+            final int block= worklist[head];
+            head= (head + 1) % nbBlocks;
+            size--;
+            inWorklist[block]= false;
+
+            final BitSet meetValue= meet(block, forward, transferValues, may, boundaryValue);
+            meetValues[block]= meetValue;
+
+            final BitSet transferValue= (BitSet) meetValue.clone();
+            transferValue.andNot(kill[block]);
+            transferValue.or(gen[block]);
+
+            if (!transferValue.equals(transferValues[block])) {
+                transferValues[block]= transferValue;
+                final int nbNext= forward ? cfg.getNbSuccessors(block) : cfg.getNbPredecessors(block);
+                for (int i= 0; i < nbNext; i++) {
+                    final int next= forward ? cfg.getSuccessor(block, i) : cfg.getPredecessor(block, i);
+                    if (!inWorklist[next]) {
+                        inWorklist[next]= true;
+                        worklist[(head + size) % nbBlocks]= next;
+                        size++;
+                    }
+                }
+            }
+        }
+
+        if (forward) {
+            return new DataFlowResult(meetValues, transferValues);
+        }
+        return new DataFlowResult(transferValues, meetValues);
+    }
+
+    private BitSet meet(int block, boolean forward, BitSet[] transferValues, boolean may, BitSet boundaryValue) {
+        final int nbPrevious= forward ? cfg.getNbPredecessors(block) : cfg.getNbSuccessors(block);
+        if (nbPrevious == 0) {
+            return (BitSet) boundaryValue.clone();
+        }
+        final BitSet result= (BitSet) transferValues[previous(block, forward, 0)].clone();
+        for (int i= 1; i < nbPrevious; i++) {
+            if (may) {
+                result.or(transferValues[previous(block, forward, i)]);
+            } else {
+                result.and(transferValues[previous(block, forward, i)]);
+            }
+        }
+        return result;
+    }
+
+    private int previous(int block, boolean forward, int i) {
+        return forward ? cfg.getPredecessor(block, i) : cfg.getSuccessor(block, i);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+/**
+ * Dominator or post-dominator tree of a {@link CompactCFG}, computed with the
+ * iterative algorithm of Cooper, Harvey and Kennedy.
+ * <p>
+ * Once built, dominance queries are answered in constant time by comparing the
+ * depth first numbering intervals of the tree nodes, rather than enumerating the
+ * CFG paths.
+ *
+ * @see <a href="https://www.cs.rice.edu/~keith/EMBED/dom.pdf">A Simple, Fast
+ *      Dominance Algorithm</a>
+ */
+public final class DominatorTree {
+    private final int root;
+    /** The immediate dominator of each block, -1 when the block is not in the tree. */
+    private final int[] immediateDominators;
+    private final int[] preOrder;
+    private final int[] postOrder;
+
+    private DominatorTree(int root, int[] immediateDominators) {
+        this.root= root;
+        this.immediateDominators= immediateDominators;
+        final int nbBlocks= immediateDominators.length;
+        this.preOrder= new int[nbBlocks];
+        this.postOrder= new int[nbBlocks];
+        Arrays.fill(preOrder, -1);
+        Arrays.fill(postOrder, -1);
+        if (root != -1) {
+            numberTree();
+        }
+    }
+
+    /**
+     * Builds the dominator tree of the provided CFG, rooted at the entry block.
+     *
+     * @param cfg the CFG
+     * @return the dominator tree
+     */
+    public static DominatorTree dominators(CompactCFG cfg) {
+        return new DominatorTree(cfg.getEntryBlock(), computeImmediateDominators(cfg, cfg.getEntryBlock(), true));
+    }
+
+    /**
+     * Builds the post-dominator tree of the provided CFG, rooted at the exit
+     * block. Blocks which cannot reach the exit block are not in the tree.
+     *
+     * @param cfg the CFG
+     * @return the post-dominator tree
+     */
+    public static DominatorTree postDominators(CompactCFG cfg) {
+        final int nbBlocks= cfg.getNbBlocks();
+        if (cfg.getExitBlock() == -1) {
+            final int[] immediateDominators= new int[nbBlocks];
+            Arrays.fill(immediateDominators, -1);
+            return new DominatorTree(-1, immediateDominators);
+        }
+        return new DominatorTree(cfg.getExitBlock(), computeImmediateDominators(cfg, cfg.getExitBlock(), false));
+    }
+
+    private static int[] computeImmediateDominators(CompactCFG cfg, int root, boolean forward) {
+        final int nbBlocks= cfg.getNbBlocks();
+        final int[] order= reversePostOrder(cfg, root, forward);
+        final int[] orderNumbers= new int[nbBlocks];
+        Arrays.fill(orderNumbers, -1);
+        for (int i= 0; i < order.length; i++) {
+            orderNumbers[order[i]]= i;
+        }
+
+        final int[] immediateDominators= new int[nbBlocks];
+        Arrays.fill(immediateDominators, -1);
+        immediateDominators[root]= root;
+
+        boolean changed= true;
+        while (changed) {
+            changed= false;
+            for (int i= 1; i < order.length; i++) {
+                final int block= order[i];
+                int newImmediateDominator= -1;
+
+                final int nbPredecessors= forward ? cfg.getNbPredecessors(block) : cfg.getNbSuccessors(block);
+                for (int j= 0; j < nbPredecessors; j++) {
+                    final int predecessor= forward ? cfg.getPredecessor(block, j) : cfg.getSuccessor(block, j);
+                    if (immediateDominators[predecessor] != -1) {
+                        newImmediateDominator= newImmediateDominator == -1 ? predecessor
+                                : intersect(immediateDominators, orderNumbers, predecessor, newImmediateDominator);
+                    }
+                }
+
+                if (immediateDominators[block] != newImmediateDominator) {
+                    immediateDominators[block]= newImmediateDominator;
+                    changed= true;
+                }
+            }
+        }
+        return immediateDominators;
+    }
+
+    private static int intersect(int[] immediateDominators, int[] orderNumbers, int block1, int block2) {
+        int finger1= block1;
+        int finger2= block2;
+        while (finger1 != finger2) {
+            while (orderNumbers[finger1] > orderNumbers[finger2]) {
+                finger1= immediateDominators[finger1];
+            }
+            while (orderNumbers[finger2] > orderNumbers[finger1]) {
+                finger2= immediateDominators[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    /** Returns the blocks reachable from the root in reverse post order, following the flow direction. */
+    private static int[] reversePostOrder(CompactCFG cfg, int root, boolean forward) {
+        final int nbBlocks= cfg.getNbBlocks();
+        if (forward) {
+            // The compact CFG blocks are already numbered in reverse post order
+            final int[] results= new int[nbBlocks];
+            for (int i= 0; i < nbBlocks; i++) {
+                results[i]= i;
+            }
+            return results;
+        }
+
+        final boolean[] visited= new boolean[nbBlocks];
+        final int[] stack= new int[nbBlocks];
+        final int[] nextEdges= new int[nbBlocks];
+        final int[] postOrder= new int[nbBlocks];
+        int nbVisited= 0;
+        int depth= 0;
+        visited[root]= true;
+        stack[depth++]= root;
+
+        while (depth > 0) {
+            final int block= stack[depth - 1];
+            if (nextEdges[depth - 1] < cfg.getNbPredecessors(block)) {
+                final int predecessor= cfg.getPredecessor(block, nextEdges[depth - 1]++);
+                if (!visited[predecessor]) {
+                    visited[predecessor]= true;
+                    nextEdges[depth]= 0;
+                    stack[depth++]= predecessor;
+                }
+            } else {
+                postOrder[nbVisited++]= block;
+                depth--;
+            }
+        }
+
+        final int[] results= new int[nbVisited];
+        for (int i= 0; i < nbVisited; i++) {
+            results[i]= postOrder[nbVisited - 1 - i];
+        }
+        return results;
+    }
+
+    /** Numbers the tree nodes in depth first order to answer dominance queries in constant time. */
+    private void numberTree() {
+        final int nbBlocks= immediateDominators.length;
+        final int[] childOffsets= new int[nbBlocks + 1];
+        for (int block= 0; block < nbBlocks; block++) {
+            if (block != root && immediateDominators[block] != -1) {
+                childOffsets[immediateDominators[block] + 1]++;
+            }
+        }
+        for (int block= 0; block < nbBlocks; block++) {
+            childOffsets[block + 1]+= childOffsets[block];
+        }
+        final int[] children= new int[childOffsets[nbBlocks]];
+        final int[] nbChildren= new int[nbBlocks];
+        for (int block= 0; block < nbBlocks; block++) {
+            if (block != root && immediateDominators[block] != -1) {
+                final int parent= immediateDominators[block];
+                children[childOffsets[parent] + nbChildren[parent]++]= block;
+            }
+        }
+
+        final int[] stack= new int[nbBlocks];
+        final int[] nextChildren= new int[nbBlocks];
+        int counter= 0;
+        int depth= 0;
+        stack[depth++]= root;
+        preOrder[root]= counter++;
+
+        while (depth > 0) {
+            final int block= stack[depth - 1];
+            if (nextChildren[depth - 1] < nbChildren[block]) {
+                final int child= children[childOffsets[block] + nextChildren[depth - 1]++];
+                preOrder[child]= counter++;
+                nextChildren[depth]= 0;
+                stack[depth++]= child;
+            } else {
+                postOrder[block]= counter++;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Returns the root of this tree, i.e. the entry block for a dominator tree and
+     * the exit block for a post-dominator tree.
+     *
+     * @return the root block index, or -1 if the tree is empty
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns whether the provided block belongs to this tree.
+     *
+     * @param block the block index
+     * @return true if the provided block belongs to this tree, false otherwise
+     */
+    public boolean contains(int block) {
+        return immediateDominators[block] != -1;
+    }
+
+    /**
+     * Returns the immediate dominator of the provided block.
+     *
+     * @param block the block index
+     * @return the immediate dominator block index, or -1 for the root and for the
+     *         blocks which are not in this tree
+     */
+    public int getImmediateDominator(int block) {
+        return block == root ? -1 : immediateDominators[block];
+    }
+
+    /**
+     * Returns whether the first block dominates the second block, i.e. whether all
+     * the paths from the root to the second block go through the first block. A
+     * block dominates itself.
+     *
+     * @param dominator the potential dominator block index
+     * @param block     the block index
+     * @return true if the first block dominates the second block, false otherwise
+     */
+    public boolean dominates(int dominator, int block) {
+        return contains(dominator) && contains(block) && preOrder[dominator] <= preOrder[block]
+                && postOrder[block] <= postOrder[dominator];
+    }
+
+    /**
+     * Returns whether the first block strictly dominates the second block.
+     *
+     * @param dominator the potential dominator block index
+     * @param block     the block index
+     * @return true if the first block strictly dominates the second block, false
+     *         otherwise
+     */
+    public boolean strictlyDominates(int dominator, int block) {
+        return dominator != block && dominates(dominator, block);
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.autorefactor.util.IllegalArgumentException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+
+/**
+ * Data flow analyses of a method CFG: liveness, reaching definitions, definite
+ * assignment, dominators and post-dominators.
+ * <p>
+ * The analyses are computed on the {@link CompactCFG} form of the method CFG,
+ * lazily, the first time they are queried.
+ * <p>
+ * Inside a basic block, variable accesses are not always recorded in evaluation
+ * order (e.g. an assignment records the write before the reads of its right
+ * hand side), so the liveness analysis conservatively considers that any read
+ * in a block happens before any write.
+ * <p>
+ * Only the local variables and parameters are analyzed. The fields are always
+ * considered live, because the called methods and the callers of the method
+ * can read them.
+ */
+public class MethodDataFlow {
+    private final CompactCFG cfg;
+    /** The variable access index of each definition, i.e. declarations with an initializer and writes. */
+    private final int[] definitions;
+    /** The indices of the definitions of each variable. */
+    private final BitSet[] definitionsByVariable;
+    private final DataFlowSolver solver;
+
+    private DataFlowResult liveness;
+    private DataFlowResult reachingDefinitions;
+    private DataFlowResult definiteAssignment;
+    private DominatorTree dominatorTree;
+    private DominatorTree postDominatorTree;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param entryBlock the entry block of the method CFG, as returned by
+     *                   {@link CFGBuilder#buildCFG(org.eclipse.jdt.core.dom.MethodDeclaration)}
+     */
+    public MethodDataFlow(CFGBasicBlock entryBlock) {
+        this.cfg= new CompactCFG(entryBlock);
+        this.solver= new DataFlowSolver(cfg);
+        this.definitionsByVariable= new BitSet[cfg.getNbVariables()];
+        for (int variable= 0; variable < definitionsByVariable.length; variable++) {
+            definitionsByVariable[variable]= new BitSet();
+        }
+
+        final List<Integer> definitionList= new ArrayList<>();
+        for (int access= 0; access < cfg.getNbAccesses(); access++) {
+            if (cfg.isAccessType(access, VariableAccess.DECL_INIT | VariableAccess.WRITE)) {
+                definitionsByVariable[cfg.getAccessVariable(access)].set(definitionList.size());
+                definitionList.add(access);
+            }
+        }
+        this.definitions= new int[definitionList.size()];
+        for (int i= 0; i < definitions.length; i++) {
+            definitions[i]= definitionList.get(i);
+        }
+    }
+
+    /**
+     * Returns the compact form of the method CFG.
+     *
+     * @return the compact form of the method CFG
+     */
+    public CompactCFG getCompactCFG() {
+        return cfg;
+    }
+
+    /**
+     * Returns the entry block of the method CFG.
+     *
+     * @return the entry block of the method CFG
+     */
+    public CFGBasicBlock getEntryBlock() {
+        return cfg.getBlock(cfg.getEntryBlock());
+    }
+
+    /**
+     * Returns the basic blocks reachable from the entry block.
+     *
+     * @return the basic blocks reachable from the entry block
+     */
+    public List<CFGBasicBlock> getBasicBlocks() {
+        final List<CFGBasicBlock> results= new ArrayList<>(cfg.getNbBlocks());
+        for (int block= 0; block < cfg.getNbBlocks(); block++) {
+            results.add(cfg.getBlock(block));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the basic block which was created for the provided node or which
+     * records a variable access for the provided node.
+     *
+     * @param node the node
+     * @return the basic block, or null if no basic block is associated to the
+     *         provided node
+     */
+    public CFGBasicBlock getBasicBlock(ASTNode node) {
+        final int block= cfg.getBlockIndex(node);
+        return block != -1 ? cfg.getBlock(block) : null;
+    }
+
+    /**
+     * Returns whether the provided variable may be read before being written on
+     * a path starting at the entry of the provided block.
+     *
+     * @param block    the basic block
+     * @param variable the variable
+     * @return true if the variable is live on entry of the block, false otherwise
+     */
+    public boolean isLiveOnEntry(CFGBasicBlock block, IVariableBinding variable) {
+        if (variable.isField()) {
+            return true;
+        }
+        final int variableIndex= cfg.getVariableIndex(variable);
+        return variableIndex != -1 && getLiveness().isSetOnEntry(getBlockIndex(block), variableIndex);
+    }
+
+    /**
+     * Returns whether the provided variable may be read before being written on
+     * a path starting at the exit of the provided block.
+     *
+     * @param block    the basic block
+     * @param variable the variable
+     * @return true if the variable is live on exit of the block, false otherwise
+     */
+    public boolean isLiveOnExit(CFGBasicBlock block, IVariableBinding variable) {
+        if (variable.isField()) {
+            return true;
+        }
+        final int variableIndex= cfg.getVariableIndex(variable);
+        return variableIndex != -1 && getLiveness().isSetOnExit(getBlockIndex(block), variableIndex);
+    }
+
+    /**
+     * Returns the definitions (declarations with an initializer or writes) which
+     * may reach the entry of the provided block.
+     *
+     * @param block the basic block
+     * @return the definitions which may reach the entry of the provided block
+     */
+    public Set<VariableAccess> getReachingDefinitions(CFGBasicBlock block) {
+        final BitSet reaching= getReachingDefinitions().getEntryValue(getBlockIndex(block));
+        final Set<VariableAccess> results= new LinkedHashSet<>();
+        for (int i= reaching.nextSetBit(0); i >= 0; i= reaching.nextSetBit(i + 1)) {
+            results.add(cfg.getAccess(definitions[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Returns whether the provided variable is assigned on all the paths reaching
+     * the entry of the provided block.
+     *
+     * @param block    the basic block
+     * @param variable the variable
+     * @return true if the variable is definitely assigned on entry of the block,
+     *         false otherwise
+     */
+    public boolean isDefinitelyAssigned(CFGBasicBlock block, IVariableBinding variable) {
+        final int variableIndex= cfg.getVariableIndex(variable);
+        return variableIndex != -1 && getDefiniteAssignment().isSetOnEntry(getBlockIndex(block), variableIndex);
+    }
+
+    /**
+     * Returns whether all the paths from the entry block to the second block go
+     * through the first block.
+     *
+     * @param dominator the potential dominator basic block
+     * @param block     the basic block
+     * @return true if the first block dominates the second block, false otherwise
+     */
+    public boolean dominates(CFGBasicBlock dominator, CFGBasicBlock block) {
+        return getDominatorTree().dominates(getBlockIndex(dominator), getBlockIndex(block));
+    }
+
+    /**
+     * Returns whether all the paths from the second block to the exit block go
+     * through the first block.
+     *
+     * @param postDominator the potential post-dominator basic block
+     * @param block         the basic block
+     * @return true if the first block post-dominates the second block, false
+     *         otherwise
+     */
+    public boolean postDominates(CFGBasicBlock postDominator, CFGBasicBlock block) {
+        return getPostDominatorTree().dominates(getBlockIndex(postDominator), getBlockIndex(block));
+    }
+
+    /**
+     * Returns whether the provided block is on all the paths from the entry block
+     * to the exit block.
+     *
+     * @param block the basic block
+     * @return true if the provided block is on all the paths from the entry block
+     *         to the exit block, false otherwise
+     */
+    public boolean isOnAllPaths(CFGBasicBlock block) {
+        return getPostDominatorTree().dominates(getBlockIndex(block), cfg.getEntryBlock());
+    }
+
+    private int getBlockIndex(CFGBasicBlock block) {
+        final int index= cfg.getBlockIndex(block);
+        if (index == -1) {
+            throw new IllegalArgumentException(block.getNode(),
+                    "The basic block is not reachable from the entry block: " + block); //$NON-NLS-1$
+        }
+        return index;
+    }
+
+    /**
+     * Returns the dominator tree, rooted at the entry block.
+     *
+     * @return the dominator tree
+     */
+    public DominatorTree getDominatorTree() {
+        if (dominatorTree == null) {
+            dominatorTree= DominatorTree.dominators(cfg);
+        }
+        return dominatorTree;
+    }
+
+    /**
+     * Returns the post-dominator tree, rooted at the exit block.
+     *
+     * @return the post-dominator tree
+     */
+    public DominatorTree getPostDominatorTree() {
+        if (postDominatorTree == null) {
+            postDominatorTree= DominatorTree.postDominators(cfg);
+        }
+        return postDominatorTree;
+    }
+
+    /**
+     * Returns the liveness analysis solution, where bits are variable indices.
+     *
+     * @return the liveness analysis solution
+     */
+    public DataFlowResult getLiveness() {
+        if (liveness == null) {
+            final int nbBlocks= cfg.getNbBlocks();
+            final BitSet[] use= new BitSet[nbBlocks];
+            final BitSet[] def= new BitSet[nbBlocks];
+
+            for (int block= 0; block < nbBlocks; block++) {
+                use[block]= new BitSet();
+                def[block]= new BitSet();
+                for (int access= cfg.getFirstAccess(block); access < cfg.getFirstAccess(block + 1); access++) {
+                    if (cfg.isAccessType(access, VariableAccess.READ)) {
+                        use[block].set(cfg.getAccessVariable(access));
+                    } else {
+                        def[block].set(cfg.getAccessVariable(access));
+                    }
+                }
+                def[block].andNot(use[block]);
+            }
+            liveness= solver.solve(false, true, use, def, new BitSet(), cfg.getNbVariables());
+        }
+        return liveness;
+    }
+
+    /**
+     * Returns the reaching definitions analysis solution, where bits are
+     * definition indices.
+     *
+     * @return the reaching definitions analysis solution
+     */
+    public DataFlowResult getReachingDefinitions() {
+        if (reachingDefinitions == null) {
+            final int nbBlocks= cfg.getNbBlocks();
+            final BitSet[] gen= new BitSet[nbBlocks];
+            final BitSet[] kill= new BitSet[nbBlocks];
+            int definition= 0;
+
+            for (int block= 0; block < nbBlocks; block++) {
+                gen[block]= new BitSet();
+                kill[block]= new BitSet();
+                for (int access= cfg.getFirstAccess(block); access < cfg.getFirstAccess(block + 1); access++) {
+                    if (cfg.isAccessType(access,
+                            VariableAccess.DECL_INIT | VariableAccess.DECL_UNINIT | VariableAccess.WRITE)) {
+                        final BitSet variableDefinitions= definitionsByVariable[cfg.getAccessVariable(access)];
+                        gen[block].andNot(variableDefinitions);
+                        kill[block].or(variableDefinitions);
+                    }
+                    if (cfg.isAccessType(access, VariableAccess.DECL_INIT | VariableAccess.WRITE)) {
+                        gen[block].set(definition);
+                        definition++;
+                    }
+                }
+            }
+            reachingDefinitions= solver.solve(true, true, gen, kill, new BitSet(), definitions.length);
+        }
+        return reachingDefinitions;
+    }
+
+    /**
+     * Returns the definite assignment analysis solution, where bits are variable
+     * indices.
+     *
+     * @return the definite assignment analysis solution
+     */
+    public DataFlowResult getDefiniteAssignment() {
+        if (definiteAssignment == null) {
+            final int nbBlocks= cfg.getNbBlocks();
+            final BitSet[] gen= new BitSet[nbBlocks];
+            final BitSet[] kill= new BitSet[nbBlocks];
+
+            for (int block= 0; block < nbBlocks; block++) {
+                gen[block]= new BitSet();
+                kill[block]= new BitSet();
+                for (int access= cfg.getFirstAccess(block); access < cfg.getFirstAccess(block + 1); access++) {
+                    final int variable= cfg.getAccessVariable(access);
+                    if (cfg.isAccessType(access, VariableAccess.DECL_INIT | VariableAccess.WRITE)) {
+                        gen[block].set(variable);
+                        kill[block].clear(variable);
+                    } else if (cfg.isAccessType(access, VariableAccess.DECL_UNINIT)) {
+                        gen[block].clear(variable);
+                        kill[block].set(variable);
+                    }
+                }
+            }
+            definiteAssignment= solver.solve(true, false, gen, kill, new BitSet(), cfg.getNbVariables());
+        }
+        return definiteAssignment;
+    }
+}
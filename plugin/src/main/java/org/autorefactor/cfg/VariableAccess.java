@@ -70,6 +70,53 @@ public class VariableAccess {
         this(astNode, astNode instanceof Name ? (Name) astNode : null, null, accessType);
     }
 
+    /**
+     * Returns the AST node of the variable.
+     *
+     * @return the AST node of the variable
+     */
+    public ASTNode getAstNode() {
+        return astNode;
+    }
+
+    /**
+     * Returns the name of the variable.
+     *
+     * @return the name of the variable, may be null
+     */
+    public Name getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of the variable.
+     *
+     * @return the type of the variable, may be null
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the access type to the variable.
+     *
+     * @return the access type to the variable
+     */
+    public int getAccessType() {
+        return accessType;
+    }
+
+    /**
+     * Returns whether this variable access has any of the provided access types.
+     *
+     * @param accessTypes the access types to look for, ORed together
+     * @return true if this variable access has any of the provided access types,
+     *         false otherwise
+     */
+    public boolean isAccessType(int accessTypes) {
+        return (accessType & accessTypes) != 0;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb= new StringBuilder("VAR_ACCESS["); //$NON-NLS-1$
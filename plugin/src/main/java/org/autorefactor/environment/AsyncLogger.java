@@ -0,0 +1,222 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Logger which hands the events over to another logger from a background
+ * thread, so that the threads logging never wait for the Eclipse log.
+ * <p>
+ * The events are queued in a bounded queue: when it is full, the events are
+ * dropped instead of blocking the threads logging. Only the first events of
+ * each rule and category are logged, the following ones are only counted.
+ * The events which are not about a rule, like the errors on a file, are not
+ * limited: each one is about another problem.
+ * {@link #close()} logs a summary of the events which were not logged.
+ * <p>
+ * It is safe to log from several threads.
+ */
+public class AsyncLogger implements Logger {
+    /** Tells the background thread to stop. */
+    private static final LogEvent END= new LogEvent(LogEvent.Severity.INFO, "", null); //$NON-NLS-1$
+
+    private final Logger delegate;
+    private final int maxEventsPerKey;
+    private final BlockingQueue<LogEvent> queue;
+    private final ConcurrentMap<String, AtomicInteger> nbEventsPerKey= new ConcurrentHashMap<>();
+    private final AtomicInteger nbDroppedEvents= new AtomicInteger();
+    private final Thread thread;
+    private boolean closed;
+
+    /**
+     * Builds an instance of this class and starts its background thread.
+     *
+     * @param delegate        the logger to hand the events over to
+     * @param queueCapacity   the maximum number of events waiting to be logged
+     * @param maxEventsPerKey the maximum number of events logged for each rule
+     *                        and category of rule events
+     */
+    public AsyncLogger(Logger delegate, int queueCapacity, int maxEventsPerKey) {
+        this.delegate= delegate;
+        this.maxEventsPerKey= maxEventsPerKey;
+        this.queue= new ArrayBlockingQueue<>(queueCapacity);
+        this.thread= new Thread("AutoRefactor logger") { //$NON-NLS-1$
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void drain() {
+        try {
+            for (LogEvent event= queue.take(); event != END; event= queue.take()) {
+                try {
+                    delegate.log(event);
+                } catch (RuntimeException e) {
+                    // The logger must survive a failing event, the workers do not wait for it
+                    nbDroppedEvents.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Logs an error message.
+     *
+     * @param message the message
+     */
+    public void error(String message) {
+        log(new LogEvent(LogEvent.Severity.ERROR, message, null));
+    }
+
+    /**
+     * Logs an error message with an exception.
+     *
+     * @param message the message
+     * @param e       the exception
+     */
+    public void error(String message, Exception e) {
+        log(new LogEvent(LogEvent.Severity.ERROR, message, e));
+    }
+
+    /**
+     * Logs a warning message.
+     *
+     * @param message the message
+     */
+    public void warn(String message) {
+        log(new LogEvent(LogEvent.Severity.WARNING, message, null));
+    }
+
+    /**
+     * Logs an informational message.
+     *
+     * @param message the message
+     */
+    public void info(String message) {
+        log(new LogEvent(LogEvent.Severity.INFO, message, null));
+    }
+
+    /**
+     * Queues the event, unless too many events of its rule and category were
+     * already logged or the queue is full.
+     *
+     * @param event the event
+     */
+    public void log(LogEvent event) {
+        if (isRateLimited(event) && getCounter(getKey(event)).incrementAndGet() > maxEventsPerKey) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            nbDroppedEvents.incrementAndGet();
+        }
+    }
+
+    private static boolean isRateLimited(LogEvent event) {
+        return event.getRule() != null && event.getCategory() != LogEvent.Category.OTHER;
+    }
+
+    private static String getKey(LogEvent event) {
+        return event.getRule() + " " + event.getCategory(); //$NON-NLS-1$
+    }
+
+    private AtomicInteger getCounter(String key) {
+        AtomicInteger counter= nbEventsPerKey.get(key);
+        if (counter == null) {
+            counter= new AtomicInteger();
+            final AtomicInteger existing= nbEventsPerKey.putIfAbsent(key, counter);
+            if (existing != null) {
+                counter= existing;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Logs the queued events, stops the background thread, then logs a summary
+     * of the events which were not logged.
+     *
+     * @throws InterruptedException if interrupted while waiting for the queued
+     *                              events to be logged
+     */
+    public synchronized void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed= true;
+        queue.put(END);
+        thread.join();
+
+        final String summary= getSummary();
+        if (summary != null) {
+            delegate.warn(summary);
+        }
+    }
+
+    /**
+     * Returns the summary of the events which were not logged.
+     *
+     * @return the summary of the events which were not logged, or null if all
+     *         the events were logged
+     */
+    private String getSummary() {
+        final List<String> lines= new ArrayList<>();
+        for (Map.Entry<String, AtomicInteger> entry : nbEventsPerKey.entrySet()) {
+            final int nbEvents= entry.getValue().get();
+            if (nbEvents > maxEventsPerKey) {
+                lines.add("\n  " + entry.getKey() + ": " + nbEvents + " events, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + (nbEvents - maxEventsPerKey) + " not logged"); //$NON-NLS-1$
+            }
+        }
+        final int nbDropped= nbDroppedEvents.get();
+        if (lines.isEmpty() && nbDropped == 0) {
+            return null;
+        }
+        Collections.sort(lines);
+        final StringBuilder sb= new StringBuilder("Some events were not logged during this run:"); //$NON-NLS-1$
+        for (String line : lines) {
+            sb.append(line);
+        }
+        if (nbDropped > 0) {
+            sb.append("\n  ").append(nbDropped).append(" events dropped because the queue was full or the log failed"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return sb.toString();
+    }
+}
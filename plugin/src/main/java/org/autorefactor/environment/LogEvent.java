@@ -0,0 +1,209 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.environment;
+
+/**
+ * An event to log, with the rule, the file and the source position it is
+ * about.
+ * <p>
+ * Building an event is cheap: the message is only formatted and the location
+ * only converted to text when the event is actually logged.
+ */
+public final class LogEvent {
+    /** The severity of an event. */
+    public enum Severity {
+        /** An error. */
+        ERROR,
+        /** A warning. */
+        WARNING,
+        /** An informational message. */
+        INFO
+    }
+
+    /** The category of an event, which rate limiting loggers count events by. */
+    public enum Category {
+        /** A rule threw an exception and is disabled for the rest of the run. */
+        FAULTY_RULE("is faulty"), //$NON-NLS-1$
+        /** A rule reported doing a refactoring but did not contribute any. */
+        BADLY_BEHAVED_RULE("is badly behaved"), //$NON-NLS-1$
+        /** Any other event. */
+        OTHER(null);
+
+        private final String description;
+
+        Category(String description) {
+            this.description= description;
+        }
+    }
+
+    private final Severity severity;
+    private final Category category;
+    private final String rule;
+    private final String file;
+    private final int line;
+    private final int column;
+    private final String message;
+    private final Exception exception;
+
+    /**
+     * Builds an event which is not about a rule nor a source position.
+     *
+     * @param severity  the severity
+     * @param message   the message
+     * @param exception the exception, or null
+     */
+    public LogEvent(Severity severity, String message, Exception exception) {
+        this(severity, Category.OTHER, null, null, -1, -1, message, exception);
+    }
+
+    /**
+     * Builds an event.
+     *
+     * @param severity  the severity
+     * @param category  the category
+     * @param rule      the class name of the rule, or null
+     * @param file      the path of the file, or null
+     * @param line      the line number in the file, or -1 if unknown
+     * @param column    the column number in the file, or -1 if unknown
+     * @param message   the message
+     * @param exception the exception, or null
+     */
+    public LogEvent(Severity severity, Category category, String rule, String file, int line, int column,
+            String message, Exception exception) {
+        this.severity= severity;
+        this.category= category;
+        this.rule= rule;
+        this.file= file;
+        this.line= line;
+        this.column= column;
+        this.message= message;
+        this.exception= exception;
+    }
+
+    /**
+     * Returns the severity.
+     *
+     * @return the severity
+     */
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * Returns the category.
+     *
+     * @return the category
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns the class name of the rule.
+     *
+     * @return the class name of the rule, or null if the event is not about a rule
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns the path of the file.
+     *
+     * @return the path of the file, or null if the event is not about a file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the line number in the file.
+     *
+     * @return the line number in the file, or -1 if unknown
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column number in the file.
+     *
+     * @return the column number in the file, or -1 if unknown
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the message, without the rule and the location.
+     *
+     * @return the message, without the rule and the location
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the exception.
+     *
+     * @return the exception, or null
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * Returns the message prefixed with the location and the rule.
+     *
+     * @return the message prefixed with the location and the rule
+     */
+    public String getFormattedMessage() {
+        final StringBuilder sb= new StringBuilder();
+        if (file != null) {
+            sb.append(file);
+            if (line >= 0) {
+                sb.append(':').append(line);
+                if (column >= 0) {
+                    sb.append(':').append(column);
+                }
+            }
+            sb.append(": "); //$NON-NLS-1$
+        }
+        if (rule != null) {
+            sb.append("Visitor ").append(rule); //$NON-NLS-1$
+            if (category.description != null) {
+                sb.append(' ').append(category.description);
+            }
+            sb.append(": "); //$NON-NLS-1$
+        }
+        return sb.append(message).toString();
+    }
+
+    @Override
+    public String toString() {
+        return severity + " " + getFormattedMessage(); //$NON-NLS-1$
+    }
+}
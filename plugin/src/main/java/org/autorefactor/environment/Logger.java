@@ -48,4 +48,18 @@ public interface Logger {
      * @param message the message to log
      */
     void warn(String message);
+
+    /**
+     * Logs an informational message into Eclipse workspace logs.
+     *
+     * @param message the message to log
+     */
+    void info(String message);
+
+    /**
+     * Logs an event into Eclipse workspace logs.
+     *
+     * @param event the event to log
+     */
+    void log(LogEvent event);
 }
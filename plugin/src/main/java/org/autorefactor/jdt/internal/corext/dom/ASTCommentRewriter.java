@@ -26,6 +26,7 @@
 package org.autorefactor.jdt.internal.corext.dom;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -34,7 +35,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,10 +50,8 @@ import org.eclipse.jdt.core.dom.LineComment;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.text.edits.DeleteEdit;
 import org.eclipse.text.edits.InsertEdit;
-import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
-import org.eclipse.text.edits.TextEditVisitor;
 
 /** This class rewrites AST comments. */
 public class ASTCommentRewriter {
@@ -136,63 +134,43 @@ public class ASTCommentRewriter {
     /**
      * Adds the edits contained in the current instance to the provided edits for
      * the provided document.
+     * <p>
+     * The edits of each comment which overlap with the edits already recorded in
+     * the provided index are dropped: code edits take priority and the comment
+     * will be retried in the next cleanup loop. The other comment edits are kept
+     * and recorded in the provided index as soon as they are accepted, so that
+     * the edits of two comments cannot overlap either.
      *
-     * @param document the provided document to edit
-     * @param edits    where to add edits
+     * @param document  the provided document to edit
+     * @param edits     where to add edits
+     * @param editIndex the index of the edits already added to the provided edits
      */
-    public void addEdits(IDocument document, TextEdit edits) {
+    public void addEdits(IDocument document, TextEdit edits, EditIntervalIndex editIndex) {
         final String source= document.get();
-        final List<TextEdit> commentEdits= new ArrayList<TextEdit>(nbEdits());
-        addRemovalEdits(commentEdits, source);
-        addReplacementEdits(commentEdits);
-        addBlockCommentToJavadocEdits(commentEdits);
-        addLineCommentsToJavadocEdits(commentEdits, source);
-        if (!commentEdits.isEmpty() && !anyOverlaps(edits, commentEdits)) {
-            edits.addChildren(commentEdits.toArray(new TextEdit[commentEdits.size()]));
-        }
-        // Else, code edits take priority. Give up applying current text edits.
-        // They will be retried in the next cleanup loop.
-    }
-
-    private int nbEdits() {
-        return removals.size() + replacements.size() + blockCommentToJavadoc.size() + lineCommentsToJavadoc.size();
-    }
-
-    private boolean anyOverlaps(TextEdit edits, List<TextEdit> commentEdits) {
-        for (TextEdit commentEdit : commentEdits) {
-            if (overlaps(edits, commentEdit)) {
-                return true;
+        final List<List<TextEdit>> editGroups= new ArrayList<>(nbEditGroups());
+        addRemovalEdits(editGroups, source);
+        addReplacementEdits(editGroups);
+        addBlockCommentToJavadocEdits(editGroups);
+        addLineCommentsToJavadocEdits(editGroups, source);
+
+        final List<TextEdit> acceptedEdits= new ArrayList<>();
+        for (List<TextEdit> editGroup : editGroups) {
+            // The edits of a comment must all be applied, or none of them
+            if (!editIndex.overlapsAny(editGroup)) {
+                acceptedEdits.addAll(editGroup);
+                editIndex.addAll(editGroup);
             }
         }
-        return false;
-    }
-
-    private boolean overlaps(TextEdit edits, TextEdit edit2) {
-        final SourceLocation range= toSourceLoc(edit2);
-        final AtomicBoolean overlaps= new AtomicBoolean();
-        edits.accept(new TextEditVisitor() {
-            @Override
-            public boolean visit(MultiTextEdit edit) {
-                // Move on there is nothing to check here
-                return true;
-            }
-
-            @Override
-            public boolean visitNode(TextEdit edit) {
-                if (!overlaps.get()) {
-                    overlaps.set(range.overlapsWith(toSourceLoc(edit)));
-                }
-                return !overlaps.get();
-            }
-        });
-        return overlaps.get();
+        if (!acceptedEdits.isEmpty()) {
+            edits.addChildren(acceptedEdits.toArray(new TextEdit[acceptedEdits.size()]));
+        }
     }
 
-    private SourceLocation toSourceLoc(TextEdit edit) {
-        return new SourceLocation(edit.getOffset(), edit.getLength());
+    private int nbEditGroups() {
+        return removals.size() + replacements.size() + blockCommentToJavadoc.size() + lineCommentsToJavadoc.size();
     }
 
-    private void addRemovalEdits(List<TextEdit> commentEdits, String source) {
+    private void addRemovalEdits(List<List<TextEdit>> editGroups, String source) {
         if (this.removals.isEmpty()) {
             return;
         }
@@ -205,11 +183,11 @@ public class ASTCommentRewriter {
             final int endToRemove= chompWhitespacesAfter(source, start + length);
             final int lengthToRemove= endToRemove - startToRemove;
 
-            commentEdits.add(new DeleteEdit(startToRemove, lengthToRemove));
+            editGroups.add(Collections.<TextEdit>singletonList(new DeleteEdit(startToRemove, lengthToRemove)));
         }
     }
 
-    private void addReplacementEdits(List<TextEdit> commentEdits) {
+    private void addReplacementEdits(List<List<TextEdit>> editGroups) {
         if (this.replacements.isEmpty()) {
             return;
         }
@@ -217,24 +195,25 @@ public class ASTCommentRewriter {
             final Comment node= pair.getFirst();
             final int start= node.getStartPosition();
             final int length= node.getLength();
-            commentEdits.add(new ReplaceEdit(start, length, pair.getSecond()));
+            editGroups.add(Collections.<TextEdit>singletonList(new ReplaceEdit(start, length, pair.getSecond())));
         }
     }
 
-    private void addBlockCommentToJavadocEdits(List<TextEdit> commentEdits) {
+    private void addBlockCommentToJavadocEdits(List<List<TextEdit>> editGroups) {
         for (BlockComment blockComment : this.blockCommentToJavadoc) {
             final int offset= blockComment.getStartPosition() + "/*".length(); //$NON-NLS-1$
-            commentEdits.add(new InsertEdit(offset, "*")); //$NON-NLS-1$
+            editGroups.add(Collections.<TextEdit>singletonList(new InsertEdit(offset, "*"))); //$NON-NLS-1$
         }
     }
 
-    private void addLineCommentsToJavadocEdits(List<TextEdit> commentEdits, String source) {
+    private void addLineCommentsToJavadocEdits(List<List<TextEdit>> editGroups, String source) {
         if (this.lineCommentsToJavadoc.isEmpty()) {
             return;
         }
         final TreeSet<Integer> lineStarts= getLineStarts(source);
         for (Entry<ASTNode, List<LineComment>> entry : this.lineCommentsToJavadoc.entrySet()) {
             final List<LineComment> lineComments= entry.getValue();
+            final List<TextEdit> commentEdits= new ArrayList<>();
             // TODO Collect all words from the line comments,
             // then get access to indent settings, line length and newline chars
             // then spread them across several lines if needed or folded on one line only
@@ -243,6 +222,7 @@ public class ASTCommentRewriter {
             } else {
                 addMultiLineCommentsToJavadocEdits(commentEdits, entry.getKey(), lineComments, source, lineStarts);
             }
+            editGroups.add(commentEdits);
         }
     }
 
@@ -124,6 +124,8 @@ import org.eclipse.jdt.core.dom.WhileStatement;
  * {@link ASTNode}s.
  */
 public final class ASTNodes {
+    private static final String EXPR_ACTIVITY= "exprActivity"; //$NON-NLS-1$
+
     /** Enum representing the possible side effect of an expression. */
     public enum ExprActivity {
         /** Does nothing. */
@@ -181,7 +183,16 @@ public final class ASTNodes {
         }
     }
 
+    /**
+     * Computes the {@link ExprActivity} of every node of a subtree in a single
+     * bottom-up pass and memoizes it as a node property, so that the later
+     * queries on the same node or on any of its visited descendants become a
+     * lookup.
+     */
     private static final class ExprActivityVisitor extends InterruptibleVisitor {
+        private ASTNode[] nodes= new ASTNode[16];
+        private ExprActivity[] levels= new ExprActivity[16];
+        private int depth;
         private ExprActivity activityLevel= ExprActivity.PASSIVE;
 
         public ExprActivity getActivityLevel() {
@@ -189,24 +200,66 @@ public final class ASTNodes {
         }
 
         @Override
-        public boolean visit(Assignment node) {
+        public boolean preVisit2(ASTNode node) {
+            if (depth == nodes.length) {
+                nodes= Arrays.copyOf(nodes, depth * 2);
+                levels= Arrays.copyOf(levels, depth * 2);
+            }
+            final ExprActivity cachedLevel= (ExprActivity) node.getProperty(EXPR_ACTIVITY);
+            nodes[depth]= node;
+            levels[depth]= cachedLevel != null ? cachedLevel : ExprActivity.PASSIVE;
+            depth++;
+            return cachedLevel == null;
+        }
+
+        @Override
+        public void postVisit(ASTNode node) {
+            depth--;
+            final ExprActivity level= levels[depth];
+            nodes[depth]= null;
+            node.setProperty(EXPR_ACTIVITY, level);
+            if (depth > 0) {
+                if (level.compareTo(levels[depth - 1]) > 0) {
+                    levels[depth - 1]= level;
+                }
+            } else {
+                activityLevel= level;
+            }
+        }
+
+        private void mayBeActive() {
+            if (levels[depth - 1] == ExprActivity.PASSIVE) {
+                levels[depth - 1]= ExprActivity.CAN_BE_ACTIVE;
+            }
+        }
+
+        private boolean active() {
+            // All the nodes being visited contain this active node
+            for (int i= 0; i < depth; i++) {
+                nodes[i].setProperty(EXPR_ACTIVITY, ExprActivity.ACTIVE);
+                nodes[i]= null;
+            }
+            depth= 0;
             activityLevel= ExprActivity.ACTIVE;
             return interruptVisit();
         }
 
+        @Override
+        public boolean visit(Assignment node) {
+            return active();
+        }
+
         @Override
         public boolean visit(PrefixExpression node) {
             if (hasOperator(node, PrefixExpression.Operator.INCREMENT, PrefixExpression.Operator.DECREMENT)) {
-                activityLevel= ExprActivity.ACTIVE;
-                return interruptVisit();
+                return active();
             }
             return true;
         }
 
         @Override
         public boolean visit(PostfixExpression node) {
-            activityLevel= ExprActivity.ACTIVE;
-            return interruptVisit();
+            return active();
         }
 
         @SuppressWarnings("unchecked")
@@ -216,7 +269,7 @@ public final class ASTNodes {
                     && (mayCallImplicitToString(node.getLeftOperand())
                             || mayCallImplicitToString(node.getRightOperand())
                             || mayCallImplicitToString(node.extendedOperands()))) {
-                activityLevel= ExprActivity.CAN_BE_ACTIVE;
+                mayBeActive();
             }
             return true;
         }
@@ -241,25 +294,25 @@ public final class ASTNodes {
 
         @Override
         public boolean visit(SuperMethodInvocation node) {
-            activityLevel= ExprActivity.CAN_BE_ACTIVE;
+            mayBeActive();
             return true;
         }
 
         @Override
         public boolean visit(MethodInvocation node) {
-            activityLevel= ExprActivity.CAN_BE_ACTIVE;
+            mayBeActive();
             return true;
         }
 
         @Override
         public boolean visit(ClassInstanceCreation node) {
-            activityLevel= ExprActivity.CAN_BE_ACTIVE;
+            mayBeActive();
             return true;
         }
 
         @Override
         public boolean visit(ThrowStatement node) {
-            activityLevel= ExprActivity.CAN_BE_ACTIVE;
+            mayBeActive();
             return true;
         }
     }
@@ -2159,7 +2212,7 @@ public final class ASTNodes {
      * @return true if the two provided codes structurally match, false otherwise
      */
     public static boolean match(final List<Statement> referenceStatements, final List<Statement> comparedStatements) {
-        if (referenceStatements.size() != comparedStatements.size()) {
+        if (!ASTSemanticHasher.mayMatch(referenceStatements, comparedStatements)) {
             return false;
         }
 
@@ -2181,6 +2234,9 @@ public final class ASTNodes {
      * @return true if the two provided nodes structurally match, false otherwise
      */
     public static boolean match(ASTNode node1, ASTNode node2) {
+        if (ASTSemanticHasher.hash(node1) != ASTSemanticHasher.hash(node2)) {
+            return false;
+        }
         return match(new ASTSemanticMatcher(), node1, node2);
     }
 
@@ -2482,9 +2538,27 @@ public final class ASTNodes {
      * @return True if the node changes nothing.
      */
     public static boolean isPassive(final ASTNode node) {
+        return ExprActivity.PASSIVE.equals(getExprActivity(node));
+    }
+
+    /**
+     * Returns the side effect level of the provided node.
+     * <p>
+     * The level of each visited node is memoized on the node itself, so nested
+     * subtrees are only walked once per parse.
+     *
+     * @param node The node to visit.
+     *
+     * @return the side effect level of the provided node.
+     */
+    public static ExprActivity getExprActivity(final ASTNode node) {
+        final ExprActivity cachedLevel= (ExprActivity) node.getProperty(EXPR_ACTIVITY);
+        if (cachedLevel != null) {
+            return cachedLevel;
+        }
         final ExprActivityVisitor visitor= new ExprActivityVisitor();
         visitor.visitNode(node);
-        return ExprActivity.PASSIVE.equals(visitor.getActivityLevel());
+        return visitor.getActivityLevel();
     }
 
     /**
@@ -0,0 +1,317 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.ChildListPropertyDescriptor;
+import org.eclipse.jdt.core.dom.ChildPropertyDescriptor;
+import org.eclipse.jdt.core.dom.Comment;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.SimplePropertyDescriptor;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+
+/**
+ * Computes a structural hash code of a subtree that is compatible with
+ * {@link ASTSemanticMatcher}: if the matcher says two subtrees match, then they
+ * have the same hash code.
+ * <p>
+ * Hence the hash code can be used to bucket candidates and to only run the full
+ * matcher on the collisions. To honour the matcher equivalences, the hash code
+ * ignores brackets, single statement blocks, boolean negations, operand order
+ * of commutative operators and then/else order. Compound assignments are
+ * hashed as their expanded assignment.
+ * <p>
+ * The hash code only depends on the syntax, so that a parsed node with
+ * resolved bindings and a synthetic copy of it have the same hash code. As the
+ * matcher resolves the constant value of the amount of an increment, which
+ * may be any expression evaluating to one, increments, decrements and the
+ * additions and subtractions to a variable are all hashed as the same kind of
+ * update of their target, whatever the amount.
+ * <p>
+ * The hash code of each visited node is memoized as a node property.
+ */
+public final class ASTSemanticHasher {
+    private static final String SEMANTIC_HASH= "semanticHash"; //$NON-NLS-1$
+
+    private static final int BOOLEAN_HASH= 0x5bd1e995;
+    private static final int INCREMENT_HASH= 0x1b873593;
+    private static final int NULL_HASH= 0x2f5a8c3b;
+
+    private static final int EQUALITY_HASH= 0x68e31da4;
+    private static final int RELATIONAL_HASH= 0x3c6ef372;
+    private static final int CONDITIONAL_HASH= 0x7f4a7c15;
+    private static final int BITWISE_HASH= 0x4cf5ad43;
+
+    private ASTSemanticHasher() {
+    }
+
+    /**
+     * Returns the semantic hash code of the provided node.
+     *
+     * @param node the node, can be null
+     * @return the semantic hash code of the provided node
+     */
+    public static int hash(final ASTNode node) {
+        if (node == null) {
+            return NULL_HASH;
+        }
+        final Integer cachedHash= (Integer) node.getProperty(SEMANTIC_HASH);
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+        final int result= computeHash(node);
+        node.setProperty(SEMANTIC_HASH, result);
+        return result;
+    }
+
+    /**
+     * Returns the semantic hash code of the provided statements, in order. The
+     * statements for which {@link #mayMatch(List, List)} returns true have the
+     * same hash code, so it can be used to bucket lists of statements.
+     *
+     * @param statements the statements
+     * @return the semantic hash code of the provided statements
+     */
+    public static int hashAll(final List<? extends ASTNode> statements) {
+        int result= statements.size();
+        for (ASTNode statement : statements) {
+            result= 31 * result + hash(statement);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all the provided statements have the same semantic hash code
+     * at the same index, i.e. whether they may match.
+     *
+     * @param referenceStatements the reference statements
+     * @param comparedStatements  the compared statements
+     * @return true if the provided statements may match, false if they cannot
+     */
+    public static boolean mayMatch(final List<? extends ASTNode> referenceStatements,
+            final List<? extends ASTNode> comparedStatements) {
+        if (referenceStatements.size() != comparedStatements.size()) {
+            return false;
+        }
+        for (int i= 0; i < referenceStatements.size(); i++) {
+            if (hash(referenceStatements.get(i)) != hash(comparedStatements.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int computeHash(final ASTNode node) {
+        if (node instanceof Comment) {
+            // The matcher does not look at the comments
+            return node.getNodeType();
+        }
+        switch (node.getNodeType()) {
+        case ASTNode.PARENTHESIZED_EXPRESSION:
+            return hash(((ParenthesizedExpression) node).getExpression());
+
+        case ASTNode.BOOLEAN_LITERAL:
+            // true is the opposite of false
+            return BOOLEAN_HASH;
+
+        case ASTNode.BLOCK:
+            final List<?> statements= ((Block) node).statements();
+            if (statements.size() == 1) {
+                return hash((ASTNode) statements.get(0));
+            }
+            return genericHash(node);
+
+        case ASTNode.PREFIX_EXPRESSION:
+            final PrefixExpression pe= (PrefixExpression) node;
+            if (ASTNodes.hasOperator(pe, PrefixExpression.Operator.NOT)) {
+                return hash(pe.getOperand());
+            } else if (ASTNodes.hasOperator(pe, PrefixExpression.Operator.INCREMENT)) {
+                return incrementHash(pe.getOperand(), InfixExpression.Operator.PLUS);
+            } else if (ASTNodes.hasOperator(pe, PrefixExpression.Operator.DECREMENT)) {
+                return incrementHash(pe.getOperand(), InfixExpression.Operator.MINUS);
+            }
+            return genericHash(node);
+
+        case ASTNode.POSTFIX_EXPRESSION:
+            final PostfixExpression pfe= (PostfixExpression) node;
+            if (ASTNodes.hasOperator(pfe, PostfixExpression.Operator.INCREMENT)) {
+                return incrementHash(pfe.getOperand(), InfixExpression.Operator.PLUS);
+            }
+            return incrementHash(pfe.getOperand(), InfixExpression.Operator.MINUS);
+
+        case ASTNode.ASSIGNMENT:
+            return assignmentHash((Assignment) node);
+
+        case ASTNode.INFIX_EXPRESSION:
+            return infixHash((InfixExpression) node);
+
+        case ASTNode.CONDITIONAL_EXPRESSION:
+            final ConditionalExpression ce= (ConditionalExpression) node;
+            return combine(combine(node.getNodeType(), hash(ce.getExpression())),
+                    mix(hash(ce.getThenExpression())) + mix(hash(ce.getElseExpression())));
+
+        case ASTNode.IF_STATEMENT:
+            final IfStatement is= (IfStatement) node;
+            return combine(combine(node.getNodeType(), hash(is.getExpression())),
+                    mix(hash(is.getThenStatement())) + mix(hash(is.getElseStatement())));
+
+        default:
+            return genericHash(node);
+        }
+    }
+
+    /** Hashes an update of the provided target without its amount, see the class comment. */
+    private static int incrementHash(final Expression target, final InfixExpression.Operator operator) {
+        return combine(combine(INCREMENT_HASH, hash(target)), operatorHash(operator));
+    }
+
+    private static int assignmentHash(final Assignment node) {
+        final int leftHash= hash(node.getLeftHandSide());
+        if (ASTNodes.hasOperator(node, Assignment.Operator.ASSIGN)) {
+            final Expression rightHandSide= unbracket(node.getRightHandSide());
+            if (rightHandSide instanceof InfixExpression && !((InfixExpression) rightHandSide).hasExtendedOperands()
+                    && ASTNodes.hasOperator((InfixExpression) rightHandSide, InfixExpression.Operator.PLUS,
+                            InfixExpression.Operator.MINUS)) {
+                return incrementHash(node.getLeftHandSide(), ((InfixExpression) rightHandSide).getOperator());
+            }
+            return combine(combine(node.getNodeType(), leftHash), hash(node.getRightHandSide()));
+        }
+        final InfixExpression.Operator operator= InfixExpression.Operator
+                .toOperator(node.getOperator().toString().substring(0, node.getOperator().toString().length() - 1));
+        if (InfixExpression.Operator.PLUS.equals(operator) || InfixExpression.Operator.MINUS.equals(operator)) {
+            return incrementHash(node.getLeftHandSide(), operator);
+        }
+        return expandedAssignmentHash(leftHash, operatorHash(operator), leftHash, hash(node.getRightHandSide()));
+    }
+
+    private static Expression unbracket(final Expression expression) {
+        Expression result= expression;
+        while (result instanceof ParenthesizedExpression) {
+            result= ((ParenthesizedExpression) result).getExpression();
+        }
+        return result;
+    }
+
+    private static int expandedAssignmentHash(final int leftHandSideHash, final int operatorHash,
+            final int leftOperandHash, final int rightOperandHash) {
+        final int rightHandSideHash;
+        if (isCommutative(operatorHash)) {
+            rightHandSideHash= combine(operatorHash, mix(leftOperandHash) + mix(rightOperandHash));
+        } else {
+            rightHandSideHash= combine(combine(operatorHash, leftOperandHash), rightOperandHash);
+        }
+        return combine(combine(ASTNode.ASSIGNMENT, leftHandSideHash), rightHandSideHash);
+    }
+
+    private static int infixHash(final InfixExpression node) {
+        final int operatorHash= operatorHash(node.getOperator());
+        final List<?> extendedOperands= node.extendedOperands();
+
+        if (isCommutative(operatorHash)) {
+            int operandsHash= mix(hash(node.getLeftOperand())) + mix(hash(node.getRightOperand()));
+            for (Object extendedOperand : extendedOperands) {
+                operandsHash+= mix(hash((ASTNode) extendedOperand));
+            }
+            return combine(operatorHash, operandsHash);
+        }
+
+        int result= combine(combine(operatorHash, hash(node.getLeftOperand())), hash(node.getRightOperand()));
+        for (Object extendedOperand : extendedOperands) {
+            result= combine(result, hash((ASTNode) extendedOperand));
+        }
+        return result;
+    }
+
+    /**
+     * Operators that the matcher mirrors or negates one into another share the
+     * same hash code.
+     */
+    private static int operatorHash(final InfixExpression.Operator operator) {
+        if (InfixExpression.Operator.EQUALS.equals(operator) || InfixExpression.Operator.NOT_EQUALS.equals(operator)
+                || InfixExpression.Operator.XOR.equals(operator)) {
+            return EQUALITY_HASH;
+        } else if (InfixExpression.Operator.LESS.equals(operator)
+                || InfixExpression.Operator.LESS_EQUALS.equals(operator)
+                || InfixExpression.Operator.GREATER.equals(operator)
+                || InfixExpression.Operator.GREATER_EQUALS.equals(operator)) {
+            return RELATIONAL_HASH;
+        } else if (InfixExpression.Operator.CONDITIONAL_AND.equals(operator)
+                || InfixExpression.Operator.CONDITIONAL_OR.equals(operator)) {
+            return CONDITIONAL_HASH;
+        } else if (InfixExpression.Operator.AND.equals(operator) || InfixExpression.Operator.OR.equals(operator)) {
+            return BITWISE_HASH;
+        }
+        return operator.toString().hashCode();
+    }
+
+    private static boolean isCommutative(final int operatorHash) {
+        return operatorHash == EQUALITY_HASH || operatorHash == RELATIONAL_HASH || operatorHash == CONDITIONAL_HASH
+                || operatorHash == BITWISE_HASH
+                || operatorHash == InfixExpression.Operator.PLUS.toString().hashCode()
+                || operatorHash == InfixExpression.Operator.TIMES.toString().hashCode();
+    }
+
+    private static int genericHash(final ASTNode node) {
+        int result= node.getNodeType();
+        for (Object property : node.structuralPropertiesForType()) {
+            final StructuralPropertyDescriptor descriptor= (StructuralPropertyDescriptor) property;
+            final Object value= node.getStructuralProperty(descriptor);
+
+            if (descriptor instanceof ChildPropertyDescriptor) {
+                result= combine(result, hash((ASTNode) value));
+            } else if (descriptor instanceof ChildListPropertyDescriptor) {
+                final List<?> children= (List<?>) value;
+                result= combine(result, children.size());
+                for (Object child : children) {
+                    result= combine(result, hash((ASTNode) child));
+                }
+            } else if (descriptor instanceof SimplePropertyDescriptor) {
+                result= combine(result, value != null ? value.toString().hashCode() : NULL_HASH);
+            }
+        }
+        return result;
+    }
+
+    private static int combine(final int hash, final int value) {
+        return 31 * hash + value;
+    }
+
+    /** Spreads the bits so that the sum of several hash codes is order independent but not trivial. */
+    private static int mix(final int hash) {
+        final int h= hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computes the rules of the first passes of the adaptive mode from the rule
+ * firing statistics of a project.
+ * <p>
+ * The rules are split into segments: a segment starts at each rule declaring
+ * an ordering constraint. Inside each segment, the rules which fired the most
+ * come first and the rules which did not fire for a number of runs are
+ * skipped. Rules never move from one segment to another, so the declared
+ * ordering constraints are kept.
+ */
+public final class AdaptiveRuleOrder {
+    private AdaptiveRuleOrder() {
+    }
+
+    /**
+     * Returns the rules to run in the first passes, in the order to run them.
+     *
+     * @param rules           the rules in their declared order
+     * @param statistics      the rule firing statistics of the project
+     * @param segmentStarts   the rules which must stay after all the rules
+     *                        declared before them
+     * @param maxIdleRuns     the number of runs without firing after which a rule
+     *                        is skipped, 0 to never skip any rule
+     * @return the rules to run in the first passes, in the order to run them
+     */
+    public static List<RefactoringRule> getFirstPassRules(List<RefactoringRule> rules,
+            final RuleFiringStatistics statistics, Collection<Class<?>> segmentStarts, long maxIdleRuns) {
+        final Comparator<RefactoringRule> mostFiredFirst= new Comparator<RefactoringRule>() {
+            /**
+             * Compare objects.
+             *
+             * @param o1 First item
+             * @param o2 Second item
+             *
+             * @return -1, 0 or 1
+             */
+            public int compare(RefactoringRule o1, RefactoringRule o2) {
+                return Long.compare(statistics.getFirings(o2), statistics.getFirings(o1));
+            }
+        };
+
+        final List<RefactoringRule> results= new ArrayList<>(rules.size());
+        List<RefactoringRule> segment= new ArrayList<>();
+        for (RefactoringRule rule : rules) {
+            if (segmentStarts.contains(rule.getClass())) {
+                addSegment(results, segment, mostFiredFirst);
+                segment= new ArrayList<>();
+            }
+            if (maxIdleRuns <= 0 || statistics.getIdleRuns(rule) < maxIdleRuns) {
+                segment.add(rule);
+            }
+        }
+        addSegment(results, segment, mostFiredFirst);
+        return results;
+    }
+
+    private static void addSegment(List<RefactoringRule> results, List<RefactoringRule> segment,
+            Comparator<RefactoringRule> mostFiredFirst) {
+        // Stable sort: rules which fired as often keep their declared order
+        Collections.sort(segment, mostFiredFirst);
+        results.addAll(segment);
+    }
+}
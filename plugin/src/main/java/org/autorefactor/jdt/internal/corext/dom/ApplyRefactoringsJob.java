@@ -27,14 +27,17 @@ package org.autorefactor.jdt.internal.corext.dom;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
 import org.autorefactor.environment.Environment;
 import org.autorefactor.jdt.internal.ui.fix.AggregateASTVisitor;
+import org.autorefactor.jdt.internal.ui.fix.AllCleanUpRules;
 import org.autorefactor.jdt.internal.ui.fix.RefactoringContext;
 import org.autorefactor.util.IllegalStateException;
 import org.autorefactor.util.UnhandledException;
@@ -42,6 +45,7 @@ import org.eclipse.core.filebuffers.FileBuffers;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -54,6 +58,7 @@ import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.text.edits.TextEdit;
 
@@ -64,12 +69,29 @@ import org.eclipse.text.edits.TextEdit;
  * provided by the partitioner ({@link PrepareApplyRefactoringsJob}).
  */
 public class ApplyRefactoringsJob extends Job {
+    /**
+     * In debug mode, one pass out of this number of passes restricted to the
+     * enabled cleanups runs all the cleanups instead to verify the declared
+     * interactions between cleanups.
+     */
+    private static final int ENABLED_VISITORS_CHECK_PERIOD= 10;
+
     private final Queue<RefactoringUnit> refactoringUnits;
     private final List<RefactoringRule> refactoringRulesToApply;
     private final Environment environment;
+    private final RefactoringRun run;
+    private int nbRestrictedPasses;
+    /** Reused for all the parses of this worker: a parser resets itself after creating an AST. */
+    private final ASTParser parser= ASTParser.newParser(AST.JLS8);
+    /**
+     * The only lines to refactor in the current compilation unit when its
+     * refactoring starts, or null to refactor all the lines.
+     */
+    private LineRanges changedLines;
 
     /**
-     * Builds an instance of this class.
+     * Builds an instance of this class, which does not share any state with other
+     * workers.
      *
      * @param refactoringUnits        the units to automatically refactor
      * @param refactoringRulesToApply the cleanups to apply
@@ -77,11 +99,26 @@ public class ApplyRefactoringsJob extends Job {
      */
     public ApplyRefactoringsJob(Queue<RefactoringUnit> refactoringUnits, List<RefactoringRule> refactoringRulesToApply,
             Environment environment) {
+        this(refactoringUnits, refactoringRulesToApply, environment, new RefactoringRun());
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param refactoringUnits        the units to automatically refactor
+     * @param refactoringRulesToApply the cleanups to apply
+     * @param environment             the environment
+     * @param run                     the state shared by all the workers of the
+     *                                run
+     */
+    public ApplyRefactoringsJob(Queue<RefactoringUnit> refactoringUnits, List<RefactoringRule> refactoringRulesToApply,
+            Environment environment, RefactoringRun run) {
         super("AutoRefactor"); //$NON-NLS-1$
         setPriority(Job.LONG);
         this.refactoringUnits= refactoringUnits;
         this.refactoringRulesToApply= refactoringRulesToApply;
         this.environment= environment;
+        this.run= run;
     }
 
     @Override
@@ -109,29 +146,93 @@ public class ApplyRefactoringsJob extends Job {
         }
 
         final SubMonitor loopMonitor= SubMonitor.convert(monitor, refactoringUnits.size());
+        // The rules of this worker are reused for all its compilation units
+        final AggregateASTVisitor refactoring= new AggregateASTVisitor(refactoringRulesToApply);
+        final Map<IProject, AggregateASTVisitor> firstPassRefactorings= new HashMap<>();
         try {
             RefactoringUnit toRefactor;
             while ((toRefactor= refactoringUnits.poll()) != null) {
                 final ICompilationUnit compilationUnit= toRefactor.getCompilationUnit();
                 final JavaProjectOptions options= toRefactor.getOptions();
+                changedLines= toRefactor.getChangedLines();
                 try {
-                    loopMonitor.subTask("Applying refactorings to " + getClassName(compilationUnit)); //$NON-NLS-1$
-                    final AggregateASTVisitor refactoring= new AggregateASTVisitor(refactoringRulesToApply);
-                    applyRefactoring(compilationUnit, refactoring, options, loopMonitor.newChild(1), true);
+                    loopMonitor.subTask("Applying refactorings to " + getClassName(compilationUnit) //$NON-NLS-1$
+                            + " (" + run.getStatistics().getProgress() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+                    final AggregateASTVisitor firstPassRefactoring= getFirstPassRefactoring(firstPassRefactorings,
+                            compilationUnit.getJavaProject().getProject(), refactoring);
+                    if (run.getTransaction() != null) {
+                        stageRefactoring(compilationUnit, firstPassRefactoring, refactoring, options,
+                                loopMonitor.newChild(1));
+                    } else if (applyRefactoring(compilationUnit, firstPassRefactoring, refactoring, options,
+                            loopMonitor.newChild(1), true) != null) {
+                        run.recordCompleted(compilationUnit);
+                    }
                 } catch (OperationCanceledException e) {
                     throw e;
                 } catch (Exception e) {
                     final String msg= "Exception when applying refactorings to file \"" + compilationUnit.getPath()
                             + "\": " + e.getMessage();
                     throw new UnhandledException(null, msg, e);
+                } finally {
+                    run.getStatistics().recordUnitDone();
                 }
             }
         } finally {
+            changedLines= null;
             loopMonitor.done();
         }
         return Status.OK_STATUS;
     }
 
+    /**
+     * Refactors a working copy of the provided compilation unit, so that the
+     * compilation unit and its file are left unchanged, and stages its new
+     * content in the transaction of the run.
+     */
+    private void stageRefactoring(ICompilationUnit compilationUnit, AggregateASTVisitor firstPassRefactoring,
+            AggregateASTVisitor refactoringToApply, JavaProjectOptions options, SubMonitor monitor) throws Exception {
+        final String originalSource= compilationUnit.getSource();
+        final ICompilationUnit workingCopy= compilationUnit.getWorkingCopy(null);
+        try {
+            final IDocument document= new Document(originalSource);
+            final List<TextEdit> textEdits= applyRefactoring(document, workingCopy, firstPassRefactoring,
+                    refactoringToApply, options, monitor, true);
+            if (textEdits.isEmpty()) {
+                run.recordCompleted(compilationUnit, originalSource);
+            } else {
+                run.getTransaction().stage(compilationUnit, originalSource, document.get());
+            }
+        } finally {
+            workingCopy.discardWorkingCopy();
+        }
+    }
+
+    /**
+     * Returns the rules of the first passes on the provided project: all the rules
+     * in their declared order, or the rules ordered by the firing statistics of
+     * the project in adaptive mode.
+     */
+    private AggregateASTVisitor getFirstPassRefactoring(Map<IProject, AggregateASTVisitor> firstPassRefactorings,
+            IProject project, AggregateASTVisitor refactoring) {
+        AggregateASTVisitor firstPassRefactoring= firstPassRefactorings.get(project);
+        if (firstPassRefactoring == null) {
+            final RuleFiringStatistics firingStatistics= run.getRuleFiringStatistics(project);
+            firingStatistics.recordRulesRun(refactoringRulesToApply);
+            if (run.isAdaptiveRuleOrder()) {
+                final int maxIdleRuns= environment.getPreferences() != null
+                        ? environment.getPreferences().getMaxIdleRuns()
+                        : 0;
+                firstPassRefactoring= new AggregateASTVisitor(
+                        AdaptiveRuleOrder.getFirstPassRules(refactoringRulesToApply, firingStatistics,
+                                AllCleanUpRules.getOrderingSegmentStarts(), maxIdleRuns));
+            } else {
+                firstPassRefactoring= refactoring;
+            }
+            firstPassRefactorings.put(project, firstPassRefactoring);
+        }
+        return firstPassRefactoring;
+    }
+
     private String getClassName(final ICompilationUnit compilationUnit) {
         final String elName= compilationUnit.getElementName();
         final String simpleName= elName.substring(0, elName.lastIndexOf('.'));
@@ -155,6 +256,12 @@ public class ApplyRefactoringsJob extends Job {
      */
     public List<TextEdit> applyRefactoring(ICompilationUnit compilationUnit, AggregateASTVisitor refactoringToApply,
             JavaProjectOptions options, SubMonitor monitor, boolean hasToSave) throws Exception {
+        return applyRefactoring(compilationUnit, refactoringToApply, refactoringToApply, options, monitor, hasToSave);
+    }
+
+    private List<TextEdit> applyRefactoring(ICompilationUnit compilationUnit,
+            AggregateASTVisitor firstPassRefactoring, AggregateASTVisitor refactoringToApply,
+            JavaProjectOptions options, SubMonitor monitor, boolean hasToSave) throws Exception {
         final ITextFileBufferManager bufferManager= FileBuffers.getTextFileBufferManager();
         final IPath path= compilationUnit.getPath();
         final LocationKind locationKind= LocationKind.NORMALIZE;
@@ -174,7 +281,8 @@ public class ApplyRefactoringsJob extends Job {
                 return null;
             }
             final IDocument document= textFileBuffer.getDocument();
-            textEdits= applyRefactoring(document, compilationUnit, refactoringToApply, options, monitor, hasToSave);
+            textEdits= applyRefactoring(document, compilationUnit, firstPassRefactoring, refactoringToApply, options,
+                    monitor, hasToSave);
         } finally {
             bufferManager.disconnect(path, locationKind, null);
         }
@@ -210,8 +318,46 @@ public class ApplyRefactoringsJob extends Job {
     public List<TextEdit> applyRefactoring(IDocument document, ICompilationUnit compilationUnit,
             AggregateASTVisitor refactoring, JavaProjectOptions options, SubMonitor monitor, boolean hasToSave)
             throws Exception {
-        // Creation of DOM/AST from a ICompilationUnit
-        final ASTParser parser= ASTParser.newParser(AST.JLS8);
+        return applyRefactoring(document, compilationUnit, refactoring, refactoring, options, monitor, hasToSave);
+    }
+
+    /**
+     * Applies the cleanups to the provided {@link ICompilationUnit}, tracking the
+     * lines to refactor while the edits are applied to the document.
+     */
+    private List<TextEdit> applyRefactoring(IDocument document, ICompilationUnit compilationUnit,
+            AggregateASTVisitor firstPassRefactoring, AggregateASTVisitor allRefactorings, JavaProjectOptions options,
+            SubMonitor monitor, boolean hasToSave) throws Exception {
+        if (changedLines == null) {
+            return applyRefactoring(document, compilationUnit, firstPassRefactoring, allRefactorings, options,
+                    monitor, hasToSave, null);
+        }
+        final LineRangesTracker changedLinesTracker= new LineRangesTracker(document, changedLines);
+        try {
+            return applyRefactoring(document, compilationUnit, firstPassRefactoring, allRefactorings, options,
+                    monitor, hasToSave, changedLinesTracker);
+        } finally {
+            changedLinesTracker.dispose();
+        }
+    }
+
+    /**
+     * Applies the cleanups to the provided {@link ICompilationUnit}, starting with
+     * the cleanups of the first passes. Once they find nothing more to do, a
+     * verification pass runs all the cleanups, which are then used until the end.
+     * <p>
+     * After a pass changed the code, the next pass only runs the cleanups which
+     * may have been enabled by the cleanups which contributed. When it finds
+     * nothing, all the cleanups of the current pass verify there is nothing left.
+     */
+    private List<TextEdit> applyRefactoring(IDocument document, ICompilationUnit compilationUnit,
+            AggregateASTVisitor firstPassRefactoring, AggregateASTVisitor allRefactorings, JavaProjectOptions options,
+            SubMonitor monitor, boolean hasToSave, LineRangesTracker changedLinesTracker) throws Exception {
+        final long startTime= System.nanoTime();
+        final RuleFiringStatistics firingStatistics= run
+                .getRuleFiringStatistics(compilationUnit.getJavaProject().getProject());
+        AggregateASTVisitor passRefactoring= firstPassRefactoring;
+        AggregateASTVisitor refactoring= passRefactoring;
 
         final int maxIterations= 100;
         int iterationCount= 0;
@@ -224,6 +370,7 @@ public class ApplyRefactoringsJob extends Job {
 
         CompilationUnit astRoot;
         do {
+            final long iterationStartTime= System.nanoTime();
             // I did not find any other way to directly modify the AST
             // while still keeping the resolved type bindings working.
             // Using astRoot.recordModifications() did not work:
@@ -232,6 +379,8 @@ public class ApplyRefactoringsJob extends Job {
             // the AST level and refresh the bindings
             resetParser(compilationUnit, parser, options);
             astRoot= (CompilationUnit) parser.createAST(null);
+            // The AST is parsed from the document, so the tracked lines are those of the AST
+            final LineRanges astChangedLines= changedLinesTracker != null ? changedLinesTracker.getLineRanges() : null;
 
             if (iterationCount > maxIterations) {
                 // Oops! Something went wrong.
@@ -243,11 +392,29 @@ public class ApplyRefactoringsJob extends Job {
                 break;
             }
 
-            final RefactoringContext ctx= new RefactoringContext(compilationUnit, astRoot, options, monitor,
-                    environment);
-            refactoring.setRefactoringContext(ctx);
-
-            final Refactorings refactorings= refactoring.getRefactorings(astRoot);
+            final AggregateASTVisitor restrictedRefactoring= refactoring;
+            if (refactoring != passRefactoring && isDebugModeOn()
+                    && ++nbRestrictedPasses % ENABLED_VISITORS_CHECK_PERIOD == 0) {
+                refactoring= passRefactoring;
+            }
+            Refactorings refactorings= getRefactorings(refactoring, compilationUnit, astRoot, options, monitor,
+                    astChangedLines);
+            if (!refactorings.hasRefactorings() && refactoring != passRefactoring) {
+                // The cleanups not enabled by the last changes may still apply
+                refactoring= passRefactoring;
+                refactorings= getRefactorings(refactoring, compilationUnit, astRoot, options, monitor,
+                        astChangedLines);
+            }
+            if (refactoring != restrictedRefactoring && isDebugModeOn()) {
+                checkEnabledVisitors(restrictedRefactoring, refactoring, lastLoopVisitors, compilationUnit);
+            }
+            if (!refactorings.hasRefactorings() && passRefactoring != allRefactorings) {
+                // The skipped cleanups may still apply: verify with all the cleanups
+                passRefactoring= allRefactorings;
+                refactoring= allRefactorings;
+                refactorings= getRefactorings(refactoring, compilationUnit, astRoot, options, monitor,
+                        astChangedLines);
+            }
             if (!refactorings.hasRefactorings()) {
                 // No new cleanups have been applied,
                 // We are done with applying the cleanups.
@@ -257,7 +424,12 @@ public class ApplyRefactoringsJob extends Job {
             // Apply the cleanups and save the compilation unit
             refactorings.applyTo(document, hasToSave);
             textEdits.add(refactorings.getEdits());
+            iterationCount++;
+            firingStatistics.recordFirings(refactoring.getVisitorsContributingRefactoring());
+            run.getStatistics().recordIteration(refactoring.getVisitorsContributingRefactoring(),
+                    System.nanoTime() - iterationStartTime);
             if (!hasToSave) {
+                reportFileRefactored(compilationUnit, iterationCount, System.nanoTime() - startTime);
                 return textEdits;
             }
             final boolean hadUnsavedChanges= compilationUnit.hasUnsavedChanges();
@@ -272,7 +444,6 @@ public class ApplyRefactoringsJob extends Job {
             if (!hadUnsavedChanges && hasToSave) {
                 compilationUnit.save(null, true);
             }
-            iterationCount++;
 
             final Set<ASTVisitor> thisLoopVisitors= refactoring.getVisitorsContributingRefactoring();
             if (thisLoopVisitors.equals(lastLoopVisitors)) {
@@ -281,11 +452,63 @@ public class ApplyRefactoringsJob extends Job {
                 lastLoopVisitors= new HashSet<>(thisLoopVisitors);
                 nbLoopsWithSameVisitors= 0;
             }
+            refactoring= passRefactoring.getVisitorsEnabledBy(thisLoopVisitors);
         } while (true);
 
+        reportFileRefactored(compilationUnit, iterationCount, System.nanoTime() - startTime);
         return textEdits;
     }
 
+    private Refactorings getRefactorings(AggregateASTVisitor refactoring, ICompilationUnit compilationUnit,
+            CompilationUnit astRoot, JavaProjectOptions options, SubMonitor monitor, LineRanges astChangedLines) {
+        final RefactoringContext ctx= new RefactoringContext(compilationUnit, astRoot, options, monitor, environment,
+                run, astChangedLines);
+        refactoring.setRefactoringContext(ctx);
+        return refactoring.getRefactorings(astRoot);
+    }
+
+    /**
+     * Reports the cleanups which contributed while they were not enabled by the
+     * cleanups which contributed in the previous pass. Besides wrong declarations
+     * of produced or consumed node types, this may come from nodes which could not
+     * be visited in the previous pass because another cleanup changed them.
+     */
+    private void checkEnabledVisitors(AggregateASTVisitor restrictedRefactoring, AggregateASTVisitor refactoring,
+            Set<ASTVisitor> lastContributingVisitors, ICompilationUnit compilationUnit) {
+        final Set<ASTVisitor> unexpectedVisitors= new HashSet<>(refactoring.getVisitorsContributingRefactoring());
+        unexpectedVisitors.removeAll(restrictedRefactoring.getVisitors());
+        if (!unexpectedVisitors.isEmpty()) {
+            environment.getLogger().warn("In file \"" + compilationUnit.getPath() + "\", the cleanups " //$NON-NLS-1$ //$NON-NLS-2$
+                    + getClassNames(unexpectedVisitors) + " contributed although the cleanups " //$NON-NLS-1$
+                    + getClassNames(lastContributingVisitors) + " which contributed before do not enable them." //$NON-NLS-1$
+                    + " Verify the node types they produce and consume."); //$NON-NLS-1$
+        }
+    }
+
+    private static String getClassNames(Set<ASTVisitor> visitors) {
+        final StringBuilder sb= new StringBuilder();
+        for (ASTVisitor visitor : visitors) {
+            if (sb.length() > 0) {
+                sb.append(", "); //$NON-NLS-1$
+            }
+            sb.append(visitor.getClass().getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    private boolean isDebugModeOn() {
+        return environment.getPreferences() != null && environment.getPreferences().debugModeOn();
+    }
+
+    private void reportFileRefactored(ICompilationUnit compilationUnit, int nbIterations, long nanos) {
+        run.getStatistics().recordFileRefactored(compilationUnit.getPath().toString(), nbIterations, nanos);
+        if (isDebugModeOn()) {
+            environment.getLogger().info("File \"" + compilationUnit.getPath() + "\" refactored in " + nbIterations //$NON-NLS-1$ //$NON-NLS-2$
+                    + " iterations and " + nanos / 1000000 + " ms with the " //$NON-NLS-1$ //$NON-NLS-2$
+                    + (run.isAdaptiveRuleOrder() ? "adaptive" : "declared") + " rule order"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+    }
+
     private static void resetParser(ICompilationUnit cu, ASTParser parser, JavaProjectOptions options) {
         parser.setSource(cu);
         parser.setResolveBindings(true);
@@ -0,0 +1,208 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The lines changed in the files of local git repositories compared to a base
+ * reference, as reported by <code>git diff</code>.
+ * <p>
+ * Untracked files are considered entirely changed. The line numbers are those
+ * of the files on disk before they are refactored.
+ */
+public final class ChangedLines {
+    /** Matches the new file lines of a hunk header, for example {@code @@ -10,2 +12,3 @@}. */
+    private static final Pattern HUNK_HEADER= Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@"); //$NON-NLS-1$
+    private static final String NEW_FILE_PREFIX= "+++ "; //$NON-NLS-1$
+    private static final String NEW_FILE_PATH_PREFIX= "+++ b/"; //$NON-NLS-1$
+
+    private final Map<File, LineRanges> changedLines;
+
+    private ChangedLines(Map<File, LineRanges> changedLines) {
+        this.changedLines= changedLines;
+    }
+
+    /**
+     * Computes the lines changed in the git repositories containing the provided
+     * directories compared to the provided base reference.
+     *
+     * @param directories the directories, for example the locations of the
+     *                    selected projects
+     * @param baseRef     the base reference, for example <code>HEAD</code> or
+     *                    <code>origin/master</code>
+     * @return the changed lines
+     * @throws IOException if git cannot be run or if it fails, for example if a
+     *                     directory is not in a git repository
+     */
+    public static ChangedLines fromGitDiff(final Collection<File> directories, final String baseRef)
+            throws IOException {
+        final Set<File> repositories= new LinkedHashSet<>();
+        for (File directory : directories) {
+            final List<String> output= git(directory, "rev-parse", "--show-toplevel"); //$NON-NLS-1$ //$NON-NLS-2$
+            repositories.add(new File(output.get(0)).getCanonicalFile());
+        }
+
+        final Map<File, LineRanges> changedLines= new HashMap<>();
+        for (File repository : repositories) {
+            // Force the prefixes parsed below, whatever the diff.noprefix or diff.mnemonicPrefix settings
+            changedLines.putAll(parseDiff(repository, git(repository, "diff", "--no-color", "--no-ext-diff", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    "--src-prefix=a/", "--dst-prefix=b/", "--unified=0", baseRef, "--"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            for (String untrackedFile : git(repository, "ls-files", "--others", "--exclude-standard")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                changedLines.put(new File(repository, untrackedFile), LineRanges.ALL_LINES);
+            }
+        }
+        return new ChangedLines(changedLines);
+    }
+
+    /**
+     * Parses the output of <code>git diff --unified=0</code>.
+     *
+     * @param repository the root directory of the git repository
+     * @param diffLines  the lines output by git
+     * @return the changed line ranges of each changed file
+     */
+    static Map<File, LineRanges> parseDiff(final File repository, final List<String> diffLines) {
+        final Map<File, LineRanges> results= new HashMap<>();
+        File file= null;
+        final List<int[]> ranges= new ArrayList<>();
+        for (String line : diffLines) {
+            if (line.startsWith(NEW_FILE_PREFIX)) {
+                addRanges(results, file, ranges);
+                // Deleted files are reported as /dev/null
+                file= line.startsWith(NEW_FILE_PATH_PREFIX) ? new File(repository, getNewFilePath(line)) : null;
+            } else if (file != null) {
+                final Matcher matcher= HUNK_HEADER.matcher(line);
+                if (matcher.find()) {
+                    final int start= Integer.parseInt(matcher.group(1));
+                    final int count= matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1;
+                    if (count > 0) {
+                        ranges.add(new int[] { start, start + count - 1 });
+                    } else {
+                        // Lines were only deleted after the start line: the code around them changed
+                        ranges.add(new int[] { Math.max(start, 1), start + 1 });
+                    }
+                }
+            }
+        }
+        addRanges(results, file, ranges);
+        return results;
+    }
+
+    private static String getNewFilePath(final String line) {
+        // Like GNU diff, git ends the path with a tab when it contains a space
+        final int end= line.endsWith("\t") ? line.length() - 1 : line.length(); //$NON-NLS-1$
+        return line.substring(NEW_FILE_PATH_PREFIX.length(), end);
+    }
+
+    private static void addRanges(final Map<File, LineRanges> results, final File file, final List<int[]> ranges) {
+        if (file != null && !ranges.isEmpty()) {
+            results.put(file, LineRanges.of(ranges.toArray(new int[ranges.size()][])));
+        }
+        ranges.clear();
+    }
+
+    private static List<String> git(final File directory, final String... args) throws IOException {
+        final List<String> command= new ArrayList<>();
+        command.addAll(Arrays.asList("git", "-c", "core.quotePath=false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        command.addAll(Arrays.asList(args));
+        final Process process= new ProcessBuilder(command).directory(directory).start();
+
+        // Warnings go to the error stream: keep them out of the parsed output,
+        // and drain them concurrently so that git never blocks on a full pipe
+        final List<String> errors= new ArrayList<>();
+        final Thread errorReader= new Thread("git error stream reader") { //$NON-NLS-1$
+            @Override
+            public void run() {
+                try {
+                    readLines(process.getErrorStream(), errors);
+                } catch (IOException e) {
+                    errors.add(e.toString());
+                }
+            }
+        };
+        errorReader.setDaemon(true);
+        errorReader.start();
+
+        final List<String> output= new ArrayList<>();
+        readLines(process.getInputStream(), output);
+
+        try {
+            final int exitValue= process.waitFor();
+            errorReader.join();
+            if (exitValue != 0 || output.isEmpty() && "rev-parse".equals(args[0])) { //$NON-NLS-1$
+                throw new IOException("Command " + command + " failed in directory " + directory + " with exit value " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        + exitValue + ": " + errors); //$NON-NLS-1$
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running " + command, e); //$NON-NLS-1$
+        }
+        return output;
+    }
+
+    private static void readLines(final InputStream inputStream, final List<String> lines) throws IOException {
+        try (BufferedReader reader= new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line= reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+    }
+
+    /**
+     * Returns the lines changed in the provided file.
+     *
+     * @param file the file
+     * @return the lines changed in the provided file, or null if the file did not
+     *         change
+     * @throws IOException if the canonical path of the file cannot be computed
+     */
+    public LineRanges getLineRanges(final File file) throws IOException {
+        return changedLines.get(file.getCanonicalFile());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + changedLines;
+    }
+}
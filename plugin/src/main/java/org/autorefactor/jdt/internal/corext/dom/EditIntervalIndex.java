@@ -0,0 +1,204 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.TextEditVisitor;
+
+/**
+ * Sorted index of the source ranges covered by the text edits produced in one
+ * refactoring iteration.
+ * <p>
+ * Overlapping ranges are coalesced, so the index only stores disjoint intervals
+ * sorted by start position and overlap queries run in O(log n). The
+ * {@link #overlaps(int, int)} queries consider the ranges closed, like
+ * {@link SourceLocation#overlapsWith(org.eclipse.jdt.core.ISourceRange)}: two
+ * ranges touching each other overlap. The {@link #overlapsHalfOpen(int, int)}
+ * queries consider them half-open, like the text edits do: two ranges touching
+ * each other do not overlap. As touching ranges are coalesced, an empty range
+ * at the boundary of two touching indexed ranges still overlaps them.
+ */
+public class EditIntervalIndex {
+    /** Start position to end position of each disjoint interval. */
+    private final TreeMap<Integer, Integer> intervals= new TreeMap<>();
+
+    /**
+     * Adds the source ranges of all the edits of the provided edit tree.
+     *
+     * @param edits the edit tree
+     */
+    public void addAll(TextEdit edits) {
+        edits.accept(new TextEditVisitor() {
+            @Override
+            public boolean visit(MultiTextEdit edit) {
+                // Move on there is nothing to index here
+                return true;
+            }
+
+            @Override
+            public boolean visitNode(TextEdit edit) {
+                add(edit);
+                // Children are inside this edit source range
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Adds the source ranges of the provided edits.
+     *
+     * @param edits the edits
+     */
+    public void addAll(Collection<? extends TextEdit> edits) {
+        for (TextEdit edit : edits) {
+            add(edit);
+        }
+    }
+
+    /**
+     * Adds the source range of the provided edit.
+     *
+     * @param edit the edit
+     */
+    public void add(TextEdit edit) {
+        add(edit.getOffset(), edit.getLength());
+    }
+
+    /**
+     * Adds the provided source range.
+     *
+     * @param offset the start position of the source range
+     * @param length the length of the source range
+     */
+    public void add(int offset, int length) {
+        int start= offset;
+        int end= offset + length;
+
+        final Entry<Integer, Integer> before= intervals.floorEntry(end);
+        if (before != null && before.getValue() >= start) {
+            // Coalesce with all the overlapping intervals
+            Entry<Integer, Integer> overlapping= before;
+            while (overlapping != null && overlapping.getValue() >= start) {
+                start= Math.min(start, overlapping.getKey());
+                end= Math.max(end, overlapping.getValue());
+                intervals.remove(overlapping.getKey());
+                overlapping= intervals.floorEntry(end);
+            }
+        }
+        intervals.put(start, end);
+    }
+
+    /**
+     * Returns whether the source range of the provided edit overlaps with any
+     * indexed source range.
+     *
+     * @param edit the edit
+     * @return true if the source range of the provided edit overlaps with any
+     *         indexed source range, false otherwise
+     */
+    public boolean overlaps(TextEdit edit) {
+        return overlaps(edit.getOffset(), edit.getLength());
+    }
+
+    /**
+     * Returns whether any of the provided edits overlaps with any indexed source
+     * range.
+     *
+     * @param edits the edits
+     * @return true if any of the provided edits overlaps with any indexed source
+     *         range, false otherwise
+     */
+    public boolean overlapsAny(Collection<? extends TextEdit> edits) {
+        for (TextEdit edit : edits) {
+            if (overlaps(edit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the provided source range overlaps with any indexed source
+     * range.
+     *
+     * @param offset the start position of the source range
+     * @param length the length of the source range
+     * @return true if the provided source range overlaps with any indexed source
+     *         range, false otherwise
+     */
+    public boolean overlaps(int offset, int length) {
+        // Intervals are disjoint, so the last one starting before the end of the
+        // provided range is the one which ends the furthest
+        final Entry<Integer, Integer> before= intervals.floorEntry(offset + length);
+        return before != null && before.getValue() >= offset;
+    }
+
+    /**
+     * Returns whether the source range of the provided edit overlaps with any
+     * indexed source range, the ranges only touching each other not overlapping.
+     *
+     * @param edit the edit
+     * @return true if the source range of the provided edit overlaps with any
+     *         indexed source range, false otherwise
+     */
+    public boolean overlapsHalfOpen(TextEdit edit) {
+        return overlapsHalfOpen(edit.getOffset(), edit.getLength());
+    }
+
+    /**
+     * Returns whether the provided source range overlaps with any indexed source
+     * range, the ranges only touching each other not overlapping. An empty range
+     * only overlaps the indexed source ranges strictly containing its position.
+     *
+     * @param offset the start position of the source range
+     * @param length the length of the source range
+     * @return true if the provided source range overlaps with any indexed source
+     *         range, false otherwise
+     */
+    public boolean overlapsHalfOpen(int offset, int length) {
+        final Entry<Integer, Integer> before= intervals.lowerEntry(offset + length);
+        return before != null && before.getValue() > offset;
+    }
+
+    /**
+     * Returns whether this index is empty.
+     *
+     * @return true if this index is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return intervals.toString();
+    }
+}
@@ -32,7 +32,8 @@ public interface JavaProjectOptions {
     /**
      * Returns the compiler options used to compile a java project.
      *
-     * @return the compiler options used to compile a java project
+     * @return the compiler options used to compile a java project, which must not
+     *         be modified since they are shared by all the parses of the project
      */
     Map<String, String> getCompilerOptions();
 
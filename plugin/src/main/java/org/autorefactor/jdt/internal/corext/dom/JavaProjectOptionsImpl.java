@@ -25,6 +25,7 @@
  */
 package org.autorefactor.jdt.internal.corext.dom;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,10 +33,18 @@ import org.autorefactor.util.UnhandledException;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
 
-/** Implementation of {@link JavaProjectOptions} for Eclipse JDT. */
+/**
+ * Implementation of {@link JavaProjectOptions} for Eclipse JDT.
+ * <p>
+ * An instance is built for each project at the start of a run and is shared by
+ * all the workers, so the compiler options are only resolved once per project
+ * and per run. Changes to the project options are seen by the next run.
+ */
 public class JavaProjectOptionsImpl implements JavaProjectOptions {
     private final Map<String, String> options;
-    private Release javaSERelease;
+    private volatile Release javaSERelease;
+    /** Lazily computed from the Java SE release, immutable and shared by all the workers. */
+    private volatile Map<String, String> compilerOptions;
 
     /** Builds a new instance of this class. */
     public JavaProjectOptionsImpl() {
@@ -67,13 +76,19 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
     /**
      * Get the compiler options.
      *
-     * @return the compiler options.
+     * @return the compiler options, which cannot be modified.
      */
     public Map<String, String> getCompilerOptions() {
-        final Map<String, String> options= JavaCore.getOptions();
-        final String v= javaSERelease.getMajorVersion() + "." + javaSERelease.getMinorVersion(); //$NON-NLS-1$
-        JavaCore.setComplianceOptions(v, options);
-        return options;
+        Map<String, String> result= compilerOptions;
+        if (result == null) {
+            // Concurrent workers may compute it twice, but they compute the same options
+            final Map<String, String> options= JavaCore.getOptions();
+            final String v= javaSERelease.getMajorVersion() + "." + javaSERelease.getMinorVersion(); //$NON-NLS-1$
+            JavaCore.setComplianceOptions(v, options);
+            result= Collections.unmodifiableMap(options);
+            compilerOptions= result;
+        }
+        return result;
     }
 
     /**
@@ -114,6 +129,7 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
      */
     public void setJavaSERelease(Release javaSERelease) {
         this.javaSERelease= javaSERelease;
+        this.compilerOptions= null;
     }
 
     /**
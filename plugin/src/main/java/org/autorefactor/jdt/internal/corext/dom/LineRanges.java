@@ -0,0 +1,213 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorted and disjoint ranges of lines of a file, for example the lines changed
+ * in a file.
+ */
+public class LineRanges {
+    /** Line ranges covering a whole file. */
+    public static final LineRanges ALL_LINES= new LineRanges(new int[] { 1, Integer.MAX_VALUE });
+
+    /** Start and end lines, inclusive, of each range, sorted by start line. */
+    private final int[] bounds;
+
+    private LineRanges(final int[] bounds) {
+        this.bounds= bounds;
+    }
+
+    /**
+     * Builds line ranges from the provided ranges, which can be unsorted and
+     * overlapping.
+     *
+     * @param ranges the start and end lines, inclusive, of each range
+     * @return the line ranges
+     */
+    public static LineRanges of(final int[]... ranges) {
+        final int[][] sortedRanges= ranges.clone();
+        Arrays.sort(sortedRanges, new Comparator<int[]>() {
+            /**
+             * Compare objects.
+             *
+             * @param o1 First item
+             * @param o2 Second item
+             *
+             * @return -1, 0 or 1
+             */
+            public int compare(final int[] o1, final int[] o2) {
+                return Integer.compare(o1[0], o2[0]);
+            }
+        });
+
+        final int[] bounds= new int[sortedRanges.length * 2];
+        int length= 0;
+        for (int[] range : sortedRanges) {
+            if (length > 0 && range[0] <= bounds[length - 1] + 1) {
+                // Overlapping or adjacent ranges are merged
+                bounds[length - 1]= Math.max(bounds[length - 1], range[1]);
+            } else {
+                bounds[length++]= range[0];
+                bounds[length++]= range[1];
+            }
+        }
+        return new LineRanges(Arrays.copyOf(bounds, length));
+    }
+
+    /**
+     * Returns the number of ranges.
+     *
+     * @return the number of ranges
+     */
+    public int size() {
+        return bounds.length / 2;
+    }
+
+    /**
+     * Returns the start line of the provided range.
+     *
+     * @param index the index of the range
+     * @return the start line, inclusive, of the provided range
+     */
+    public int getStartLine(final int index) {
+        return bounds[2 * index];
+    }
+
+    /**
+     * Returns the end line of the provided range.
+     *
+     * @param index the index of the range
+     * @return the end line, inclusive, of the provided range
+     */
+    public int getEndLine(final int index) {
+        return bounds[2 * index + 1];
+    }
+
+    /**
+     * Maps these line ranges of the provided source to the lines of the provided
+     * modified source, for example the unsaved content of an editor.
+     * <p>
+     * Only the leading and trailing lines common to both sources are matched: all
+     * the lines in between have been modified, so they are changed lines too.
+     *
+     * @param source         the source these line ranges belong to
+     * @param modifiedSource the modified source
+     * @return the line ranges of the modified source
+     */
+    public LineRanges mapTo(final String source, final String modifiedSource) {
+        if (this == ALL_LINES) {
+            return this;
+        }
+        final String[] lines= source.split("\\R", -1); //$NON-NLS-1$
+        final String[] modifiedLines= modifiedSource.split("\\R", -1); //$NON-NLS-1$
+        final int minLength= Math.min(lines.length, modifiedLines.length);
+        int nbLeadingLines= 0;
+        while (nbLeadingLines < minLength && lines[nbLeadingLines].equals(modifiedLines[nbLeadingLines])) {
+            nbLeadingLines++;
+        }
+        int nbTrailingLines= 0;
+        while (nbTrailingLines < minLength - nbLeadingLines && lines[lines.length - 1 - nbTrailingLines]
+                .equals(modifiedLines[modifiedLines.length - 1 - nbTrailingLines])) {
+            nbTrailingLines++;
+        }
+        if (nbLeadingLines == lines.length && lines.length == modifiedLines.length) {
+            return this;
+        }
+
+        final int firstModifiedLine= nbLeadingLines + 1;
+        final int lastModifiedLine= modifiedLines.length - nbTrailingLines;
+        final int firstTrailingLine= lines.length - nbTrailingLines + 1;
+        final int delta= modifiedLines.length - lines.length;
+
+        final List<int[]> ranges= new ArrayList<>();
+        if (firstModifiedLine <= lastModifiedLine) {
+            ranges.add(new int[] { firstModifiedLine, lastModifiedLine });
+        } else {
+            // Lines were only removed: the lines around them changed
+            ranges.add(new int[] { Math.max(nbLeadingLines, 1), firstModifiedLine });
+        }
+        for (int i= 0; i < bounds.length; i+= 2) {
+            final int startLine= mapLine(bounds[i], nbLeadingLines, firstTrailingLine, delta, firstModifiedLine);
+            final int endLine= mapLine(bounds[i + 1], nbLeadingLines, firstTrailingLine, delta, lastModifiedLine);
+            ranges.add(new int[] { startLine, Math.max(startLine, endLine) });
+        }
+        return of(ranges.toArray(new int[ranges.size()][]));
+    }
+
+    private static int mapLine(final int line, final int nbLeadingLines, final int firstTrailingLine, final int delta,
+            final int modifiedLine) {
+        if (line <= nbLeadingLines) {
+            return line;
+        }
+        if (line >= firstTrailingLine) {
+            return line + delta;
+        }
+        // The line has been modified
+        return modifiedLine;
+    }
+
+    /**
+     * Returns whether the provided lines intersect one of these line ranges.
+     *
+     * @param startLine the start line, inclusive
+     * @param endLine   the end line, inclusive
+     * @return true if the provided lines intersect one of these line ranges,
+     *         false otherwise
+     */
+    public boolean intersects(final int startLine, final int endLine) {
+        // Binary search of the last range starting at or before the end line
+        int low= 0;
+        int high= bounds.length / 2 - 1;
+        int candidate= -1;
+        while (low <= high) {
+            final int middle= (low + high) >>> 1;
+            if (bounds[2 * middle] <= endLine) {
+                candidate= middle;
+                low= middle + 1;
+            } else {
+                high= middle - 1;
+            }
+        }
+        return candidate != -1 && bounds[2 * candidate + 1] >= startLine;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb= new StringBuilder("["); //$NON-NLS-1$
+        for (int i= 0; i < bounds.length; i+= 2) {
+            if (i > 0) {
+                sb.append(", "); //$NON-NLS-1$
+            }
+            sb.append(bounds[i]).append('-').append(bounds[i + 1]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IPositionUpdater;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Tracks line ranges of a document while edits are applied to the document, so
+ * that they keep designating the same code after lines are added or removed.
+ * <p>
+ * Each range is tracked as a {@link Position} of the document. Unlike the
+ * default position updater, a range replaced or touched by an edit is extended
+ * to the replacing text instead of being deleted: the refactored code still
+ * belongs to the range.
+ */
+public class LineRangesTracker implements IPositionUpdater {
+    private final IDocument document;
+    private final String category;
+
+    /**
+     * Starts tracking the provided line ranges of the provided document.
+     *
+     * @param document   the document
+     * @param lineRanges the line ranges of the current content of the document
+     * @throws BadLocationException if the document cannot be read
+     */
+    public LineRangesTracker(final IDocument document, final LineRanges lineRanges) throws BadLocationException {
+        this.document= document;
+        this.category= getClass().getName() + '@' + System.identityHashCode(this);
+        document.addPositionCategory(category);
+        document.addPositionUpdater(this);
+
+        final int nbLines= document.getNumberOfLines();
+        for (int i= 0; i < lineRanges.size(); i++) {
+            final int startLine= lineRanges.getStartLine(i);
+            if (startLine > nbLines) {
+                break;
+            }
+            final int start= document.getLineOffset(startLine - 1);
+            final IRegion endLine= document.getLineInformation(Math.min(lineRanges.getEndLine(i), nbLines) - 1);
+            addPosition(new Position(start, endLine.getOffset() + endLine.getLength() - start));
+        }
+    }
+
+    private void addPosition(final Position position) throws BadLocationException {
+        try {
+            document.addPosition(category, position);
+        } catch (BadPositionCategoryException e) {
+            // The category has been added in the constructor
+            throw new UnhandledException(null, e);
+        }
+    }
+
+    /**
+     * Returns the tracked line ranges of the current content of the document.
+     *
+     * @return the tracked line ranges of the current content of the document
+     * @throws BadLocationException if the document cannot be read
+     */
+    public LineRanges getLineRanges() throws BadLocationException {
+        final Position[] positions= getPositions();
+        final int[][] ranges= new int[positions.length][];
+        for (int i= 0; i < positions.length; i++) {
+            final Position position= positions[i];
+            ranges[i]= new int[] { document.getLineOfOffset(position.getOffset()) + 1,
+                document.getLineOfOffset(position.getOffset() + position.getLength()) + 1 };
+        }
+        return LineRanges.of(ranges);
+    }
+
+    private Position[] getPositions() {
+        try {
+            return document.getPositions(category);
+        } catch (BadPositionCategoryException e) {
+            // The tracking has been stopped
+            return new Position[0];
+        }
+    }
+
+    /** Stops tracking the line ranges. */
+    public void dispose() {
+        document.removePositionUpdater(this);
+        try {
+            document.removePositionCategory(category);
+        } catch (BadPositionCategoryException e) {
+            // Already removed
+        }
+    }
+
+    @Override
+    public void update(final DocumentEvent event) {
+        final int eventStart= event.getOffset();
+        final int eventEnd= eventStart + event.getLength();
+        final int textLength= event.getText() != null ? event.getText().length() : 0;
+        final int delta= textLength - event.getLength();
+        for (Position position : getPositions()) {
+            final int start= position.getOffset();
+            final int end= start + position.getLength();
+            if (eventEnd < start) {
+                position.setOffset(start + delta);
+            } else if (eventStart <= end) {
+                // The edit touches the range: the replacing text belongs to the range
+                final int newStart= Math.min(start, eventStart);
+                final int newEnd= Math.max(end + delta, eventStart + textLength);
+                position.setOffset(newStart);
+                position.setLength(newEnd - newStart);
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
+
+/**
+ * Caches the top level types of the packages of the workspace, as needed to
+ * resolve on demand imports.
+ * <p>
+ * The cache is shared by all the workers of an AutoRefactor run. Entries are
+ * invalidated by the Java element deltas while the cache is installed, and the
+ * search engine is only queried on cache misses.
+ */
+public class PackageTypesCache implements IElementChangedListener {
+    /** The top level types of a package, and the compilation units declaring them. */
+    private static final class PackageTypes {
+        private final List<String> topLevelTypes= new ArrayList<>();
+        private final List<String> readOnlyTopLevelTypes= Collections.unmodifiableList(topLevelTypes);
+        /** Handle identifier of each compilation unit to the top level types it declares. */
+        private final Map<String, List<String>> compilationUnitTypes= new HashMap<>();
+    }
+
+    private final Map<String, PackageTypes> packageTypes= new ConcurrentHashMap<>();
+    /** Incremented on each invalidation, to avoid caching a search result that raced with an invalidation. */
+    private final AtomicLong generation= new AtomicLong();
+    private final RunStatistics statistics;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param statistics the statistics of the run where to record the cache hit rate
+     */
+    public PackageTypesCache(RunStatistics statistics) {
+        this.statistics= statistics;
+    }
+
+    /** Starts listening to the Java element deltas. */
+    public void install() {
+        JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+    }
+
+    /** Stops listening to the Java element deltas and clears the cache. */
+    public void dispose() {
+        JavaCore.removeElementChangedListener(this);
+        invalidateAll();
+    }
+
+    /**
+     * Returns the fully qualified names of the top level types declared in the
+     * provided package, anywhere in the workspace.
+     *
+     * @param packageName the package name
+     * @param node        the node for which the types are looked up, used for
+     *                    error reporting
+     * @param monitor     the progress monitor of the current job
+     * @return the fully qualified names of the top level types declared in the
+     *         provided package
+     */
+    public List<String> getTopLevelTypes(final String packageName, ASTNode node, IProgressMonitor monitor) {
+        final PackageTypes cachedTypes= packageTypes.get(packageName);
+        if (cachedTypes != null) {
+            statistics.recordPackageTypesCacheHit();
+            return cachedTypes.readOnlyTopLevelTypes;
+        }
+        statistics.recordPackageTypesCacheMiss();
+
+        final long searchGeneration= generation.get();
+        final PackageTypes results= searchTopLevelTypes(packageName, node, monitor);
+        if (searchGeneration == generation.get()) {
+            packageTypes.putIfAbsent(packageName, results);
+        }
+        return results.readOnlyTopLevelTypes;
+    }
+
+    private PackageTypes searchTopLevelTypes(final String packageName, ASTNode node, IProgressMonitor monitor) {
+        final PackageTypes results= new PackageTypes();
+        final TypeNameMatchRequestor importTypeCollector= new TypeNameMatchRequestor() {
+            @Override
+            public void acceptTypeNameMatch(TypeNameMatch typeNameMatch) {
+                final boolean isTopLevelType= typeNameMatch.getType().getDeclaringType() == null;
+                if (isTopLevelType) {
+                    if (!packageName.equals(typeNameMatch.getPackageName())) {
+                        // Sanity check failed
+                        throw new IllegalStateException("Expected package '" + typeNameMatch.getPackageName() //$NON-NLS-1$
+                                + "' to be equal to '" + packageName + "'"); //$NON-NLS-1$ $NON-NLS-2$
+                    }
+                    results.topLevelTypes.add(typeNameMatch.getFullyQualifiedName());
+                    final ICompilationUnit compilationUnit= typeNameMatch.getType().getCompilationUnit();
+                    if (compilationUnit != null) {
+                        getCompilationUnitTypes(results, compilationUnit.getHandleIdentifier())
+                                .add(typeNameMatch.getFullyQualifiedName());
+                    }
+                }
+            }
+        };
+
+        try {
+            final SearchEngine searchEngine= new SearchEngine();
+            searchEngine.searchAllTypeNames(packageName.toCharArray(), SearchPattern.R_EXACT_MATCH, // search in this package
+                    null, SearchPattern.R_EXACT_MATCH, // do not filter by type name
+                    IJavaSearchConstants.TYPE, // look for all java types (class, interfaces, enums, etc.)
+                    SearchEngine.createWorkspaceScope(), // search everywhere
+                    importTypeCollector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, // wait in case the indexer is indexing
+                    monitor);
+        } catch (JavaModelException e) {
+            throw new UnhandledException(node, e);
+        }
+        return results;
+    }
+
+    private static List<String> getCompilationUnitTypes(PackageTypes packageTypes, String handleIdentifier) {
+        List<String> types= packageTypes.compilationUnitTypes.get(handleIdentifier);
+        if (types == null) {
+            types= new ArrayList<>(1);
+            packageTypes.compilationUnitTypes.put(handleIdentifier, types);
+        }
+        return types;
+    }
+
+    @Override
+    public void elementChanged(ElementChangedEvent event) {
+        processDelta(event.getDelta());
+    }
+
+    private void processDelta(IJavaElementDelta delta) {
+        final IJavaElement element= delta.getElement();
+        final int flags= delta.getFlags();
+
+        switch (element.getElementType()) {
+        case IJavaElement.JAVA_MODEL:
+            processChildren(delta);
+            break;
+
+        case IJavaElement.JAVA_PROJECT:
+            if (delta.getKind() != IJavaElementDelta.CHANGED || (flags & (IJavaElementDelta.F_CLASSPATH_CHANGED
+                    | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED | IJavaElementDelta.F_OPENED
+                    | IJavaElementDelta.F_CLOSED)) != 0) {
+                invalidateAll();
+            } else {
+                processChildren(delta);
+            }
+            break;
+
+        case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+            if (delta.getKind() != IJavaElementDelta.CHANGED || (flags & (IJavaElementDelta.F_ADDED_TO_CLASSPATH
+                    | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED)) != 0) {
+                invalidateAll();
+            } else {
+                processChildren(delta);
+            }
+            break;
+
+        case IJavaElement.PACKAGE_FRAGMENT:
+            if (delta.getKind() != IJavaElementDelta.CHANGED) {
+                invalidate(element.getElementName());
+            } else {
+                processChildren(delta);
+            }
+            break;
+
+        case IJavaElement.COMPILATION_UNIT:
+        case IJavaElement.CLASS_FILE:
+            if (delta.getKind() != IJavaElementDelta.CHANGED || mayHaveChangedTopLevelTypes(delta)) {
+                invalidate(element.getParent().getElementName());
+            }
+            break;
+
+        default:
+            // Deeper elements are handled by their compilation unit
+            break;
+        }
+    }
+
+    private void processChildren(IJavaElementDelta delta) {
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            processDelta(child);
+        }
+    }
+
+    private boolean mayHaveChangedTopLevelTypes(IJavaElementDelta compilationUnitDelta) {
+        final int flags= compilationUnitDelta.getFlags();
+        if ((flags & IJavaElementDelta.F_FINE_GRAINED) == 0) {
+            // No details about what changed in the content, like when a file is saved
+            return (flags & IJavaElementDelta.F_CONTENT) != 0
+                    && hasChangedTopLevelTypes(compilationUnitDelta.getElement());
+        }
+        for (IJavaElementDelta child : compilationUnitDelta.getAffectedChildren()) {
+            if (child.getElement().getElementType() == IJavaElement.TYPE
+                    && child.getKind() != IJavaElementDelta.CHANGED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the top level types declared by the provided element with the
+     * cached ones, so that saving a file does not invalidate its package.
+     */
+    private boolean hasChangedTopLevelTypes(IJavaElement element) {
+        final PackageTypes cachedTypes= packageTypes.get(element.getParent().getElementName());
+        if (cachedTypes == null) {
+            // Nothing cached to invalidate
+            return false;
+        }
+        if (!(element instanceof ICompilationUnit)) {
+            return true;
+        }
+
+        final Set<String> types= new HashSet<>();
+        try {
+            for (IType type : ((ICompilationUnit) element).getTypes()) {
+                types.add(type.getFullyQualifiedName());
+            }
+        } catch (JavaModelException e) {
+            // Cannot tell, let the search find out
+            return true;
+        }
+        final List<String> cachedCompilationUnitTypes= cachedTypes.compilationUnitTypes
+                .get(element.getHandleIdentifier());
+        if (cachedCompilationUnitTypes == null) {
+            return !types.isEmpty();
+        }
+        return !types.equals(new HashSet<>(cachedCompilationUnitTypes));
+    }
+
+    private void invalidate(String packageName) {
+        generation.incrementAndGet();
+        packageTypes.remove(packageName);
+    }
+
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        packageTypes.clear();
+    }
+}
@@ -25,23 +25,45 @@
  */
 package org.autorefactor.jdt.internal.corext.dom;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.autorefactor.environment.AsyncLogger;
 import org.autorefactor.environment.Environment;
+import org.autorefactor.preferences.Preferences;
 import org.autorefactor.util.NotImplementedException;
 import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.core.runtime.jobs.JobGroup;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
@@ -55,10 +77,20 @@ import org.eclipse.jdt.core.JavaModelException;
  * {@link ApplyRefactoringsJob}.
  */
 public class PrepareApplyRefactoringsJob extends Job {
+    /** Number of packages under which a fork-join task collects their compilation units itself. */
+    private static final int PACKAGES_PER_TASK= 16;
+    /** Maximum number of events waiting to be written to the Eclipse log. */
+    private static final int LOG_QUEUE_CAPACITY= 1000;
+    /** Maximum number of events logged for each rule and category during a run. */
+    private static final int MAX_LOG_EVENTS_PER_KEY= 10;
+
     private final List<IJavaElement> javaElements;
     private final List<RefactoringRule> refactoringRulesToApply;
     private final Map<IJavaElement, JavaProjectOptions> javaProjects= new HashMap<>();
     private final Environment environment;
+    private final String changedLinesBaseRef;
+    private final boolean resume;
+    private ChangedLines changedLines;
 
     /**
      * Builds an instance of this class.
@@ -70,11 +102,50 @@ public class PrepareApplyRefactoringsJob extends Job {
      */
     public PrepareApplyRefactoringsJob(List<IJavaElement> javaElements, List<RefactoringRule> refactoringRulesToApply,
             Environment environment) {
+        this(javaElements, refactoringRulesToApply, environment, null);
+    }
+
+    /**
+     * Builds an instance of this class which only refactors the lines changed
+     * compared to a git reference.
+     *
+     * @param javaElements            the java elements selected for automatic
+     *                                cleanup
+     * @param refactoringRulesToApply the cleanups to apply
+     * @param environment             the environment
+     * @param changedLinesBaseRef     the git reference the changed lines are
+     *                                computed against, or null to refactor all
+     *                                the lines
+     */
+    public PrepareApplyRefactoringsJob(List<IJavaElement> javaElements, List<RefactoringRule> refactoringRulesToApply,
+            Environment environment, String changedLinesBaseRef) {
+        this(javaElements, refactoringRulesToApply, environment, changedLinesBaseRef, false);
+    }
+
+    /**
+     * Builds an instance of this class which can resume the previous run.
+     *
+     * @param javaElements            the java elements selected for automatic
+     *                                cleanup
+     * @param refactoringRulesToApply the cleanups to apply
+     * @param environment             the environment
+     * @param changedLinesBaseRef     the git reference the changed lines are
+     *                                computed against, or null to refactor all
+     *                                the lines
+     * @param resume                  true to skip the compilation units which the
+     *                                previous run with the same cleanups completed
+     *                                and which were not modified since
+     * @see RunJournal
+     */
+    public PrepareApplyRefactoringsJob(List<IJavaElement> javaElements, List<RefactoringRule> refactoringRulesToApply,
+            Environment environment, String changedLinesBaseRef, boolean resume) {
         super("Prepare AutoRefactor"); //$NON-NLS-1$
         setPriority(Job.SHORT);
         this.javaElements= javaElements;
         this.refactoringRulesToApply= refactoringRulesToApply;
         this.environment= environment;
+        this.changedLinesBaseRef= changedLinesBaseRef;
+        this.resume= resume;
     }
 
     @Override
@@ -97,20 +168,125 @@ public class PrepareApplyRefactoringsJob extends Job {
 
     private IStatus run0(IProgressMonitor monitor) throws Exception {
         if (!javaElements.isEmpty()) {
+            if (changedLinesBaseRef != null) {
+                changedLines= ChangedLines.fromGitDiff(getProjectLocations(javaElements), changedLinesBaseRef);
+            }
             final Queue<RefactoringUnit> toRefactor= collectRefactoringUnits(javaElements, monitor);
+            final Preferences preferences= environment.getPreferences();
+            final RefactoringRun refactoringRun= new RefactoringRun(
+                    preferences != null && preferences.adaptiveRuleOrderOn(),
+                    preferences != null && preferences.transactionalModeOn());
+            refactoringRun.enableJournal(RunJournal.fingerprint(refactoringRulesToApply, changedLinesBaseRef), resume);
+            if (resume) {
+                removeCompletedUnits(toRefactor, refactoringRun);
+            }
             final int nbCores= Runtime.getRuntime().availableProcessors();
             final int nbWorkers= computeNbWorkers(toRefactor.size(), nbCores);
             final JobGroup jobGroup= new JobGroup("Job name", nbWorkers, nbWorkers); //$NON-NLS-1$
-            for (int i= 0; i < nbWorkers; i++) {
-                final Job job= new ApplyRefactoringsJob(toRefactor, clone(refactoringRulesToApply), environment);
-                job.setJobGroup(jobGroup);
-                job.setUser(true);
-                job.schedule();
+            refactoringRun.getStatistics().recordUnitsQueued(toRefactor.size());
+            refactoringRun.start();
+            // In debug mode, the logger throws the errors from the worker which logs them
+            final AsyncLogger runLogger= preferences != null && preferences.debugModeOn() ? null
+                    : new AsyncLogger(environment.getLogger(), LOG_QUEUE_CAPACITY, MAX_LOG_EVENTS_PER_KEY);
+            final Environment runEnvironment= runLogger != null ? new Environment(environment.getEventLoop(),
+                    environment.getJobManager(), runLogger, preferences) : environment;
+            // Counts the scheduled workers, plus this job while it schedules them:
+            // the run finishes even if scheduling a worker fails
+            final AtomicInteger nbRunningWorkers= new AtomicInteger(1);
+            final AtomicBoolean cancelled= new AtomicBoolean();
+            final JobChangeAdapter workerListener= new JobChangeAdapter() {
+                @Override
+                public void done(IJobChangeEvent event) {
+                    if (event.getResult().getSeverity() == IStatus.CANCEL) {
+                        cancelled.set(true);
+                    }
+                    if (nbRunningWorkers.decrementAndGet() == 0) {
+                        finishRun(refactoringRun, runLogger, cancelled.get());
+                    }
+                }
+            };
+            try {
+                for (int i= 0; i < nbWorkers; i++) {
+                    final Job job= new ApplyRefactoringsJob(toRefactor, clone(refactoringRulesToApply),
+                            runEnvironment, refactoringRun);
+                    job.addJobChangeListener(workerListener);
+                    job.setJobGroup(jobGroup);
+                    job.setUser(true);
+                    nbRunningWorkers.incrementAndGet();
+                    job.schedule();
+                }
+            } finally {
+                if (nbRunningWorkers.decrementAndGet() == 0) {
+                    finishRun(refactoringRun, runLogger, cancelled.get());
+                }
             }
         }
         return Status.OK_STATUS;
     }
 
+    /** Logs the events of the run, then writes or discards its changes once all the workers are done. */
+    private void finishRun(RefactoringRun refactoringRun, AsyncLogger runLogger, boolean cancelled) {
+        closeLogger(runLogger);
+        if (refactoringRun.getTransaction() == null) {
+            refactoringRun.finish(environment.getLogger());
+        } else if (cancelled) {
+            environment.getLogger().info("The run has been cancelled: " //$NON-NLS-1$
+                    + refactoringRun.getTransaction().size() + " changed files discarded"); //$NON-NLS-1$
+            refactoringRun.getTransaction().discard();
+            refactoringRun.finish(environment.getLogger());
+        } else {
+            scheduleCommit(refactoringRun);
+        }
+    }
+
+    /** Removes the compilation units which the resumed run completed and which were not modified since. */
+    private void removeCompletedUnits(Queue<RefactoringUnit> toRefactor, RefactoringRun refactoringRun)
+            throws JavaModelException {
+        int nbCompletedUnits= 0;
+        for (Iterator<RefactoringUnit> iter= toRefactor.iterator(); iter.hasNext();) {
+            if (refactoringRun.isCompleted(iter.next().getCompilationUnit())) {
+                iter.remove();
+                nbCompletedUnits++;
+            }
+        }
+        environment.getLogger().info("Resuming the previous run: " + nbCompletedUnits //$NON-NLS-1$
+                + " compilation units already refactored, " + toRefactor.size() + " left"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /** Writes the changed files of a transactional run once all the workers are done. */
+    private void scheduleCommit(final RefactoringRun refactoringRun) {
+        final Job commitJob= new Job("AutoRefactor commit") { //$NON-NLS-1$
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    final List<String> conflicts= refactoringRun.getTransaction().commit(refactoringRun, monitor);
+                    for (String conflict : conflicts) {
+                        environment.getLogger().warn("Changes not written to " + conflict); //$NON-NLS-1$
+                    }
+                    return Status.OK_STATUS;
+                } catch (Exception e) {
+                    final String msg= "Error while writing the changed files"; //$NON-NLS-1$
+                    environment.getLogger().error(msg, e);
+                    return new Status(IStatus.ERROR, PluginConstant.PLUGIN_ID, msg, e);
+                } finally {
+                    refactoringRun.finish(environment.getLogger());
+                }
+            }
+        };
+        commitJob.setUser(true);
+        commitJob.schedule();
+    }
+
+    private void closeLogger(AsyncLogger runLogger) {
+        if (runLogger != null) {
+            try {
+                runLogger.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Clones all the cleanups to apply. In fairness, this method is only useful
      * for stateful cleanups.
@@ -134,55 +310,272 @@ public class PrepareApplyRefactoringsJob extends Job {
         }
     }
 
-    private Queue<RefactoringUnit> collectRefactoringUnits(List<IJavaElement> javaElements, IProgressMonitor monitor) {
+    /**
+     * Collects the compilation units to refactor. The package fragments of the
+     * selected roots are enumerated and made consistent in parallel.
+     *
+     * @param javaElements the selected Java elements
+     * @param monitor      the progress monitor
+     * @return the compilation units to refactor
+     */
+    public Queue<RefactoringUnit> collectRefactoringUnits(List<IJavaElement> javaElements, IProgressMonitor monitor) {
+        final ForkJoinPool pool= new ForkJoinPool(Runtime.getRuntime().availableProcessors());
         try {
+            final Collection<RootSelection> selections= groupByRoot(javaElements);
+            final SubMonitor subMonitor= SubMonitor.convert(monitor, selections.size());
+            final List<ForkJoinTask<List<RefactoringUnit>>> tasks= new ArrayList<>(selections.size());
+            for (RootSelection selection : selections) {
+                tasks.add(pool.submit(new CollectRootTask(selection, subMonitor)));
+            }
+
+            // Joined in the selection order to keep the work items order deterministic
             final Queue<RefactoringUnit> results= new ConcurrentLinkedQueue<>();
-            addAll(results, javaElements, monitor);
+            for (ForkJoinTask<List<RefactoringUnit>> task : tasks) {
+                results.addAll(task.join());
+                subMonitor.worked(1);
+            }
             return results;
+        } catch (OperationCanceledException e) {
+            throw e;
         } catch (Exception e) {
             throw new UnhandledException(null, e);
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    private void addAll(Queue<RefactoringUnit> results, List<IJavaElement> javaElements, IProgressMonitor monitor)
-            throws JavaModelException {
-        final SubMonitor subMonitor= SubMonitor.convert(monitor, javaElements.size());
+    private Collection<RootSelection> groupByRoot(List<IJavaElement> javaElements) throws JavaModelException {
+        final Map<IPackageFragmentRoot, RootSelection> results= new LinkedHashMap<>();
         for (IJavaElement javaElement : javaElements) {
-            final SubMonitor child= subMonitor.newChild(1);
-            final JavaProjectOptions options= getJavaProjectOptions(javaElement);
             if (javaElement instanceof ICompilationUnit) {
-                add(results, (ICompilationUnit) javaElement, options);
+                getRootSelection(results, javaElement).compilationUnits.add((ICompilationUnit) javaElement);
             } else if (javaElement instanceof IPackageFragment) {
-                final IPackageFragment pf= (IPackageFragment) javaElement;
-                addAll(results, getSubPackages(pf), child);
-                addAll(results, pf.getCompilationUnits(), options);
+                getRootSelection(results, javaElement).packages.add((IPackageFragment) javaElement);
             } else if (javaElement instanceof IPackageFragmentRoot) {
-                final IPackageFragmentRoot pfr= (IPackageFragmentRoot) javaElement;
-                addAll(results, Arrays.asList(pfr.getChildren()), child);
+                getRootSelection(results, javaElement).allPackages= true;
             } else if (javaElement instanceof IJavaProject) {
-                IJavaProject javaProject= (IJavaProject) javaElement;
-                for (IPackageFragment pf : javaProject.getPackageFragments()) {
-                    addAll(results, pf.getCompilationUnits(), options);
+                for (IPackageFragmentRoot root : ((IJavaProject) javaElement).getPackageFragmentRoots()) {
+                    if (root.getKind() == IPackageFragmentRoot.K_SOURCE) {
+                        getRootSelection(results, root).allPackages= true;
+                    }
                 }
             }
         }
+        return results.values();
     }
 
-    private void addAll(final Queue<RefactoringUnit> results, ICompilationUnit[] cus, JavaProjectOptions options)
-            throws JavaModelException {
-        for (ICompilationUnit cu : cus) {
-            add(results, cu, options);
+    private RootSelection getRootSelection(Map<IPackageFragmentRoot, RootSelection> selections,
+            IJavaElement javaElement) {
+        final IPackageFragmentRoot root= (IPackageFragmentRoot) javaElement
+                .getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+        RootSelection selection= selections.get(root);
+        if (selection == null) {
+            selection= new RootSelection(root, getJavaProjectOptions(root));
+            selections.put(root, selection);
         }
+        return selection;
     }
 
-    private void add(final Queue<RefactoringUnit> results, ICompilationUnit cu, JavaProjectOptions options)
-            throws JavaModelException {
+    /** The elements selected in a package fragment root. */
+    private static final class RootSelection {
+        private final IPackageFragmentRoot root;
+        private final JavaProjectOptions options;
+        /** Whether the whole root is selected. */
+        private boolean allPackages;
+        /** The packages selected with all their subpackages. */
+        private final Set<IPackageFragment> packages= new LinkedHashSet<>();
+        private final Set<ICompilationUnit> compilationUnits= new LinkedHashSet<>();
+
+        private RootSelection(IPackageFragmentRoot root, JavaProjectOptions options) {
+            this.root= root;
+            this.options= options;
+        }
+    }
+
+    /**
+     * Package fragments of a root sorted by name. The subpackages of a package are
+     * contiguous in this order, so they are found by binary search.
+     */
+    private static final class PackageIndex {
+        private final String[] names;
+        private final IPackageFragment[] packages;
+
+        private PackageIndex(IJavaElement[] children) {
+            final List<IPackageFragment> sortedPackages= new ArrayList<>(children.length);
+            for (IJavaElement child : children) {
+                if (child instanceof IPackageFragment) {
+                    sortedPackages.add((IPackageFragment) child);
+                }
+            }
+            Collections.sort(sortedPackages, new Comparator<IPackageFragment>() {
+                /**
+                 * Compare objects.
+                 *
+                 * @param o1 First item
+                 * @param o2 Second item
+                 *
+                 * @return -1, 0 or 1
+                 */
+                public int compare(final IPackageFragment o1, final IPackageFragment o2) {
+                    return o1.getElementName().compareTo(o2.getElementName());
+                }
+            });
+            this.packages= sortedPackages.toArray(new IPackageFragment[sortedPackages.size()]);
+            this.names= new String[packages.length];
+            for (int i= 0; i < packages.length; i++) {
+                names[i]= packages[i].getElementName();
+            }
+        }
+
+        /**
+         * Adds the provided package and all its subpackages to the provided results.
+         *
+         * @param motherPackage the mother package
+         * @param results       the results
+         */
+        private void addPackageTree(IPackageFragment motherPackage, Set<IPackageFragment> results) {
+            results.add(motherPackage);
+            final String packageName= motherPackage.getElementName();
+            if (packageName.isEmpty()) {
+                // The default package has no subpackages
+                return;
+            }
+
+            final String prefix= packageName + "."; //$NON-NLS-1$
+            final int index= Arrays.binarySearch(names, prefix);
+            for (int i= index >= 0 ? index : -index - 1; i < names.length && names[i].startsWith(prefix); i++) {
+                results.add(packages[i]);
+            }
+        }
+    }
+
+    /** Enumerates the packages selected in a root, then collects their compilation units. */
+    private final class CollectRootTask extends RecursiveTask<List<RefactoringUnit>> {
+        private static final long serialVersionUID= 1L;
+
+        private final RootSelection selection;
+        private final IProgressMonitor monitor;
+
+        private CollectRootTask(RootSelection selection, IProgressMonitor monitor) {
+            this.selection= selection;
+            this.monitor= monitor;
+        }
+
+        @Override
+        protected List<RefactoringUnit> compute() {
+            try {
+                final Set<IPackageFragment> packages= getPackages();
+                final List<RefactoringUnit> results= new CollectPackagesTask(new ArrayList<>(packages), 0,
+                        packages.size(), selection.options, monitor).compute();
+                for (ICompilationUnit cu : selection.compilationUnits) {
+                    if (!packages.contains(cu.getParent())) {
+                        addRefactoringUnit(results, cu, selection.options);
+                    }
+                }
+                return results;
+            } catch (CoreException | IOException e) {
+                throw new UnhandledException(null, e);
+            }
+        }
+
+        private Set<IPackageFragment> getPackages() throws JavaModelException {
+            final Set<IPackageFragment> results= new LinkedHashSet<>();
+            if (selection.allPackages) {
+                for (IJavaElement child : selection.root.getChildren()) {
+                    results.add((IPackageFragment) child);
+                }
+            } else if (!selection.packages.isEmpty()) {
+                final PackageIndex index= new PackageIndex(selection.root.getChildren());
+                for (IPackageFragment pf : selection.packages) {
+                    index.addPackageTree(pf, results);
+                }
+            }
+            return results;
+        }
+    }
+
+    /** Collects the compilation units of a range of packages, splitting the range across the pool. */
+    private final class CollectPackagesTask extends RecursiveTask<List<RefactoringUnit>> {
+        private static final long serialVersionUID= 1L;
+
+        private final List<IPackageFragment> packages;
+        private final int from;
+        private final int to;
+        private final JavaProjectOptions options;
+        private final IProgressMonitor monitor;
+
+        private CollectPackagesTask(List<IPackageFragment> packages, int from, int to, JavaProjectOptions options,
+                IProgressMonitor monitor) {
+            this.packages= packages;
+            this.from= from;
+            this.to= to;
+            this.options= options;
+            this.monitor= monitor;
+        }
+
+        @Override
+        protected List<RefactoringUnit> compute() {
+            if (monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            if (to - from > PACKAGES_PER_TASK) {
+                final int middle= (from + to) >>> 1;
+                final CollectPackagesTask second= new CollectPackagesTask(packages, middle, to, options, monitor);
+                second.fork();
+                final List<RefactoringUnit> results= new CollectPackagesTask(packages, from, middle, options, monitor)
+                        .compute();
+                results.addAll(second.join());
+                return results;
+            }
+
+            try {
+                final List<RefactoringUnit> results= new ArrayList<>();
+                for (int i= from; i < to; i++) {
+                    for (ICompilationUnit cu : packages.get(i).getCompilationUnits()) {
+                        addRefactoringUnit(results, cu, options);
+                    }
+                }
+                return results;
+            } catch (CoreException | IOException e) {
+                throw new UnhandledException(null, e);
+            }
+        }
+    }
+
+    private void addRefactoringUnit(final List<RefactoringUnit> results, ICompilationUnit cu,
+            JavaProjectOptions options) throws CoreException, IOException {
+        LineRanges lineRanges= null;
+        if (changedLines != null) {
+            final IPath location= cu.getResource().getLocation();
+            lineRanges= location != null ? changedLines.getLineRanges(location.toFile()) : null;
+            if (lineRanges == null) {
+                // Unchanged files are not even made consistent
+                return;
+            }
+            if (cu.hasUnsavedChanges()) {
+                // The changed lines are those of the file, not those of the editor buffer
+                final String fileSource= new String(Files.readAllBytes(location.toFile().toPath()),
+                        ((IFile) cu.getResource()).getCharset());
+                lineRanges= lineRanges.mapTo(fileSource, cu.getSource());
+            }
+        }
         if (!cu.isConsistent()) {
             cu.makeConsistent(null);
         }
         if (!cu.isReadOnly()) {
-            results.add(new RefactoringUnit(cu, options));
+            results.add(new RefactoringUnit(cu, options, lineRanges));
+        }
+    }
+
+    private Set<File> getProjectLocations(List<IJavaElement> javaElements) {
+        final Set<File> results= new LinkedHashSet<>();
+        for (IJavaElement javaElement : javaElements) {
+            final IPath location= getIJavaProject(javaElement).getProject().getLocation();
+            if (location != null) {
+                results.add(location.toFile());
+            }
         }
+        return results;
     }
 
     private JavaProjectOptions getJavaProjectOptions(IJavaElement javaElement) {
@@ -210,18 +603,4 @@ public class PrepareApplyRefactoringsJob extends Job {
         }
         throw new NotImplementedException(null, javaElement);
     }
-
-    private List<IJavaElement> getSubPackages(IPackageFragment motherPackage) throws JavaModelException {
-        List<IJavaElement> subPackages= new ArrayList<>();
-        String packageName= motherPackage.getElementName();
-        IJavaElement[] packages= ((IPackageFragmentRoot) motherPackage.getParent()).getChildren();
-
-        for (IJavaElement onePackage : packages) {
-            if (onePackage instanceof IPackageFragment && onePackage.getElementName().startsWith(packageName + ".")) { //$NON-NLS-1$
-                subPackages.add(onePackage);
-            }
-        }
-
-        return subPackages;
-    }
 }
@@ -0,0 +1,286 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.autorefactor.environment.Logger;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * State shared by all the {@link ApplyRefactoringsJob} workers of one
+ * AutoRefactor run.
+ */
+public class RefactoringRun {
+    /** Number of failures, across all the workers, after which a rule is skipped for the rest of the run. */
+    private static final int MAX_RULE_FAILURES= 5;
+
+    private final RunStatistics statistics= new RunStatistics();
+    private final RuleHealth ruleHealth= new RuleHealth(MAX_RULE_FAILURES);
+    private final PackageTypesCache packageTypesCache= new PackageTypesCache(statistics);
+    private final ConcurrentMap<IProject, RuleFiringStatistics> ruleFiringStatistics= new ConcurrentHashMap<>();
+    private final ConcurrentMap<IProject, RunJournal> journals= new ConcurrentHashMap<>();
+    private final AtomicReference<IOException> journalError= new AtomicReference<>();
+    private final boolean adaptiveRuleOrder;
+    /** The staged new contents of the transactional run, null if the files are written as they are refactored. */
+    private final RefactoringTransaction transaction;
+    /** The fingerprint of the rules of the journaled run, null if the run is not journaled. */
+    private String journalFingerprint;
+    private boolean resume;
+
+    /** Builds an instance of this class, running the rules in their declared order. */
+    public RefactoringRun() {
+        this(false, false);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param adaptiveRuleOrder whether the rules which fire the most run first and
+     *                          the idle rules are skipped until a final full pass
+     */
+    public RefactoringRun(boolean adaptiveRuleOrder) {
+        this(adaptiveRuleOrder, false);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param adaptiveRuleOrder whether the rules which fire the most run first and
+     *                          the idle rules are skipped until a final full pass
+     * @param transactional     whether the changed files are written at the end of
+     *                          the run rather than as they are refactored
+     */
+    public RefactoringRun(boolean adaptiveRuleOrder, boolean transactional) {
+        this.adaptiveRuleOrder= adaptiveRuleOrder;
+        this.transaction= transactional ? new RefactoringTransaction() : null;
+    }
+
+    /**
+     * Journals the compilation units completed by this run, so that a later run
+     * can resume it. Must be called before starting the workers.
+     *
+     * @param fingerprint the fingerprint of the rules of the run
+     * @param resume      true to skip the compilation units completed by the
+     *                    previous run with the same fingerprint and not modified
+     *                    since, false to start new journals
+     * @see RunJournal#fingerprint(java.util.List, String)
+     */
+    public void enableJournal(String fingerprint, boolean resume) {
+        this.journalFingerprint= fingerprint;
+        this.resume= resume;
+    }
+
+    /** Starts the run. */
+    public void start() {
+        statistics.start();
+        packageTypesCache.install();
+    }
+
+    /**
+     * Finishes the run, releases the shared caches, persists the rule firing
+     * statistics and logs the run statistics.
+     *
+     * @param logger the logger where to report the run statistics
+     */
+    public void finish(Logger logger) {
+        packageTypesCache.dispose();
+        for (RuleFiringStatistics projectStatistics : ruleFiringStatistics.values()) {
+            try {
+                projectStatistics.save();
+            } catch (IOException e) {
+                logger.error("Cannot save the rule firing statistics", e); //$NON-NLS-1$
+            }
+        }
+        for (RunJournal journal : journals.values()) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                journalError.compareAndSet(null, e);
+            }
+        }
+        if (journalError.get() != null) {
+            logger.error("Cannot write the run journal, this run cannot be fully resumed", journalError.get()); //$NON-NLS-1$
+        }
+        logger.info(statistics.getSummary() + "\n  rule order: " //$NON-NLS-1$
+                + (adaptiveRuleOrder ? "adaptive" : "declared") //$NON-NLS-1$ //$NON-NLS-2$
+                + "\n  changed files written: " + (transaction != null ? "at the end of the run" : "as refactored")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        final List<String> trippedRules= ruleHealth.getTrippedRules();
+        if (!trippedRules.isEmpty()) {
+            logger.warn("Rules skipped after failing " + ruleHealth.getMaxFailures() + " times: " + trippedRules); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Returns whether the rules which fire the most run first and the idle rules
+     * are skipped until a final full pass.
+     *
+     * @return true if the rule order is adaptive, false if the rules run in their
+     *         declared order
+     */
+    public boolean isAdaptiveRuleOrder() {
+        return adaptiveRuleOrder;
+    }
+
+    /**
+     * Returns the rule firing statistics of the provided project, loaded once per
+     * run.
+     *
+     * @param project the project
+     * @return the rule firing statistics of the provided project
+     */
+    public RuleFiringStatistics getRuleFiringStatistics(IProject project) {
+        RuleFiringStatistics projectStatistics= ruleFiringStatistics.get(project);
+        if (projectStatistics == null) {
+            projectStatistics= RuleFiringStatistics.load(project);
+            final RuleFiringStatistics existing= ruleFiringStatistics.putIfAbsent(project, projectStatistics);
+            if (existing != null) {
+                projectStatistics= existing;
+            }
+        }
+        return projectStatistics;
+    }
+
+    /**
+     * Returns whether the provided compilation unit was completed by the resumed
+     * run and was not modified since.
+     *
+     * @param compilationUnit the compilation unit
+     * @return true if the provided compilation unit can be skipped, false
+     *         otherwise
+     * @throws JavaModelException if the content of the compilation unit cannot be
+     *                            read
+     */
+    public boolean isCompleted(ICompilationUnit compilationUnit) throws JavaModelException {
+        final RunJournal journal= getJournal(compilationUnit.getJavaProject().getProject());
+        return journal != null && journal.isCompleted(compilationUnit);
+    }
+
+    /**
+     * Records in the journal of its project that the provided compilation unit is
+     * refactored up to the fixpoint. Does nothing if this run is not journaled.
+     *
+     * @param compilationUnit the compilation unit
+     * @throws JavaModelException if the content of the compilation unit cannot be
+     *                            read
+     */
+    public void recordCompleted(ICompilationUnit compilationUnit) throws JavaModelException {
+        recordCompleted(compilationUnit, compilationUnit.getSource());
+    }
+
+    /**
+     * Records in the journal of its project that the provided compilation unit is
+     * refactored up to the fixpoint. Does nothing if this run is not journaled.
+     *
+     * @param compilationUnit the compilation unit
+     * @param source          the content of the compilation unit after the
+     *                        refactorings
+     */
+    public void recordCompleted(ICompilationUnit compilationUnit, String source) {
+        final RunJournal journal= getJournal(compilationUnit.getJavaProject().getProject());
+        if (journal != null) {
+            try {
+                journal.recordCompleted(compilationUnit.getPath().toString(), source);
+            } catch (IOException e) {
+                // The journal only helps resuming: keep refactoring
+                journalError.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /** Returns the journal of the provided project, opened once per run, or null if the run is not journaled. */
+    private RunJournal getJournal(IProject project) {
+        if (journalFingerprint == null) {
+            return null;
+        }
+        final RunJournal journal= journals.get(project);
+        if (journal != null) {
+            return journal;
+        }
+        // Opening a journal twice would truncate it, so only one worker opens it
+        synchronized (journals) {
+            RunJournal newJournal= journals.get(project);
+            if (newJournal == null) {
+                try {
+                    newJournal= RunJournal.open(project, journalFingerprint, resume);
+                } catch (IOException e) {
+                    journalError.compareAndSet(null, e);
+                    try {
+                        newJournal= new RunJournal(null, journalFingerprint, false);
+                    } catch (IOException cannotHappen) {
+                        throw new UnhandledException(null, cannotHappen);
+                    }
+                }
+                journals.put(project, newJournal);
+            }
+            return newJournal;
+        }
+    }
+
+    /**
+     * Returns the staged new contents of the transactional run.
+     *
+     * @return the staged new contents of the transactional run, or null if the
+     *         files are written as they are refactored
+     */
+    public RefactoringTransaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Returns the statistics of this run.
+     *
+     * @return the statistics of this run
+     */
+    public RunStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the health of the rules during this run.
+     *
+     * @return the health of the rules during this run
+     */
+    public RuleHealth getRuleHealth() {
+        return ruleHealth;
+    }
+
+    /**
+     * Returns the cache of the top level types of each package.
+     *
+     * @return the cache of the top level types of each package
+     */
+    public PackageTypesCache getPackageTypesCache() {
+        return packageTypesCache;
+    }
+}
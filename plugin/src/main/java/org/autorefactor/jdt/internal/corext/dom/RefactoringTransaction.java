@@ -0,0 +1,148 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+
+/**
+ * The new contents of the compilation units refactored by a transactional
+ * AutoRefactor run.
+ * <p>
+ * The workers refactor working copies of the compilation units, so all the
+ * workers see the files as they were when the run started. They stage the new
+ * contents here instead of writing them. When all the workers are done, the
+ * staged contents are written in one workspace operation, which produces one
+ * resource delta and one build. A cancelled run discards them, so no file is
+ * changed.
+ * <p>
+ * It is safe to stage changes from several threads.
+ */
+public class RefactoringTransaction {
+    /** The new content of a compilation unit. */
+    private static final class StagedChange {
+        private final ICompilationUnit compilationUnit;
+        private final String originalSource;
+        private final String newSource;
+
+        private StagedChange(ICompilationUnit compilationUnit, String originalSource, String newSource) {
+            this.compilationUnit= compilationUnit;
+            this.originalSource= originalSource;
+            this.newSource= newSource;
+        }
+    }
+
+    private final Queue<StagedChange> stagedChanges= new ConcurrentLinkedQueue<>();
+
+    /**
+     * Stages the new content of the provided compilation unit.
+     *
+     * @param compilationUnit the compilation unit
+     * @param originalSource  the content of the compilation unit the new content
+     *                        was computed from
+     * @param newSource       the new content of the compilation unit
+     */
+    public void stage(ICompilationUnit compilationUnit, String originalSource, String newSource) {
+        stagedChanges.add(new StagedChange(compilationUnit, originalSource, newSource));
+    }
+
+    /**
+     * Returns the number of staged compilation units.
+     *
+     * @return the number of staged compilation units
+     */
+    public int size() {
+        return stagedChanges.size();
+    }
+
+    /** Discards the staged contents. */
+    public void discard() {
+        stagedChanges.clear();
+    }
+
+    /**
+     * Writes the staged contents in one workspace operation and records them in
+     * the journal of the run.
+     * <p>
+     * A compilation unit modified since the run started, for example in an
+     * editor, is not written. A compilation unit with unsaved changes, for
+     * example in an editor, gets its new content in its buffer and is left
+     * unsaved, like with a run which is not transactional: writing its file
+     * would be overwritten when the editor saves.
+     *
+     * @param run     the run which staged the contents
+     * @param monitor the progress monitor
+     * @return the paths of the compilation units which were not written, with the
+     *         reason
+     * @throws CoreException if the workspace operation fails
+     */
+    public List<String> commit(final RefactoringRun run, IProgressMonitor monitor) throws CoreException {
+        final List<String> conflicts= new ArrayList<>();
+        final IWorkspace workspace= ResourcesPlugin.getWorkspace();
+        workspace.run(new IWorkspaceRunnable() {
+            @Override
+            public void run(IProgressMonitor workspaceMonitor) throws CoreException {
+                final SubMonitor subMonitor= SubMonitor.convert(workspaceMonitor, stagedChanges.size());
+                for (StagedChange change; (change= stagedChanges.poll()) != null;) {
+                    final ICompilationUnit compilationUnit= change.compilationUnit;
+                    if (!change.originalSource.equals(compilationUnit.getSource())) {
+                        conflicts.add(compilationUnit.getPath() + ": modified during the run"); //$NON-NLS-1$
+                        subMonitor.worked(1);
+                        continue;
+                    }
+                    try {
+                        if (compilationUnit.hasUnsavedChanges()) {
+                            compilationUnit.getBuffer().setContents(change.newSource);
+                            subMonitor.worked(1);
+                        } else {
+                            final IFile file= (IFile) compilationUnit.getResource();
+                            file.setContents(new ByteArrayInputStream(change.newSource.getBytes(file.getCharset())),
+                                    IResource.KEEP_HISTORY, subMonitor.newChild(1));
+                        }
+                        run.recordCompleted(compilationUnit, change.newSource);
+                    } catch (CoreException | UnsupportedEncodingException e) {
+                        conflicts.add(compilationUnit.getPath() + ": " + e.getMessage()); //$NON-NLS-1$
+                    }
+                }
+            }
+        }, workspace.getRoot(), IWorkspace.AVOID_UPDATE, monitor);
+        return conflicts;
+    }
+}
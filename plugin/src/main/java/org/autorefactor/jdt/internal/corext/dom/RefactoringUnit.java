@@ -31,6 +31,7 @@ import org.eclipse.jdt.core.ICompilationUnit;
 public class RefactoringUnit {
     private final ICompilationUnit compilationUnit;
     private final JavaProjectOptions options;
+    private final LineRanges changedLines;
 
     /**
      * CleanupUnit.
@@ -39,8 +40,21 @@ public class RefactoringUnit {
      * @param options         options
      */
     public RefactoringUnit(ICompilationUnit compilationUnit, JavaProjectOptions options) {
+        this(compilationUnit, options, null);
+    }
+
+    /**
+     * CleanupUnit.
+     *
+     * @param compilationUnit compilationUnit
+     * @param options         options
+     * @param changedLines    the only lines to refactor, or null to refactor the
+     *                        whole compilation unit
+     */
+    public RefactoringUnit(ICompilationUnit compilationUnit, JavaProjectOptions options, LineRanges changedLines) {
         this.compilationUnit= compilationUnit;
         this.options= options;
+        this.changedLines= changedLines;
     }
 
     ICompilationUnit getCompilationUnit() {
@@ -51,6 +65,10 @@ public class RefactoringUnit {
         return options;
     }
 
+    LineRanges getChangedLines() {
+        return changedLines;
+    }
+
     @Override
     public String toString() {
         return getCompilationUnit().toString();
@@ -25,18 +25,16 @@
  */
 package org.autorefactor.jdt.internal.corext.dom;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Callable;
 
 import org.autorefactor.environment.EventLoop;
-import org.autorefactor.util.Pair;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.dom.AST;
@@ -62,17 +60,23 @@ import org.eclipse.text.edits.TextEdit;
 public class Refactorings {
     private static final String UNTOUCH_COMMENT= "untouchComment"; //$NON-NLS-1$
 
+    private final CompilationUnit astRoot;
     private final EventLoop eventLoop;
     private final SubMonitor monitor;
+    private final LineRanges changedLines;
     private boolean hasRefactorings;
     private final ASTRewrite rewrite;
     private final ImportRewrite importRewrite;
     private TextEdit edits;
-    private final Map<Pair<ASTNode, ChildListPropertyDescriptor>, ListRewrite> listRewriteCache= new HashMap<>();
+    /** The list rewrites of each list holder, usually only one. */
+    private final Map<ASTNode, List<ListRewrite>> listRewriteCache= new IdentityHashMap<>();
     private final ASTCommentRewriter commentRewriter;
     private final SourceRewriter sourceRewriter= new SourceRewriter();
-    /** Nodes that cannot be visited. */
-    private final Set<ASTNode> refactoredNodes= new HashSet<>();
+    /**
+     * Nodes that cannot be visited. The ancestors of a refactored node are always
+     * refactored nodes too.
+     */
+    private final Map<ASTNode, Boolean> refactoredNodes= new IdentityHashMap<>();
 
     /**
      * Builds an instance of this class.
@@ -82,8 +86,24 @@ public class Refactorings {
      * @param monitor   TODO
      */
     public Refactorings(CompilationUnit astRoot, EventLoop eventLoop, SubMonitor monitor) {
+        this(astRoot, eventLoop, monitor, null);
+    }
+
+    /**
+     * Builds an instance of this class only rewriting the source and the comments
+     * in the provided lines.
+     *
+     * @param astRoot      the compilation unit, root of the AST
+     * @param eventLoop    the event loop
+     * @param monitor      the progress monitor
+     * @param changedLines the only lines to refactor, or null to refactor all the
+     *                     lines
+     */
+    public Refactorings(CompilationUnit astRoot, EventLoop eventLoop, SubMonitor monitor, LineRanges changedLines) {
+        this.astRoot= astRoot;
         this.eventLoop= eventLoop;
         this.monitor= monitor;
+        this.changedLines= changedLines;
         this.rewrite= ASTRewrite.create(astRoot.getAST());
         this.rewrite.setTargetSourceRangeComputer(new TargetSourceRangeComputer() {
             @Override
@@ -109,6 +129,30 @@ public class Refactorings {
         return rewrite.getAST();
     }
 
+    /**
+     * Returns whether the provided source range intersects the lines to refactor.
+     *
+     * @param startPosition the start position of the source range
+     * @param endPosition   the end position of the source range, exclusive
+     * @return true if the provided source range intersects the lines to refactor,
+     *         false otherwise
+     */
+    public boolean isInChangedLines(int startPosition, int endPosition) {
+        if (changedLines == null) {
+            return true;
+        }
+        final int lastPosition= endPosition > startPosition ? endPosition - 1 : startPosition;
+        return changedLines.intersects(astRoot.getLineNumber(startPosition), astRoot.getLineNumber(lastPosition));
+    }
+
+    private boolean isInChangedLines(ASTNode node) {
+        return isInChangedLines(node.getStartPosition(), SourceLocation.getEndPosition(node));
+    }
+
+    private boolean isInChangedLines(SourceLocation location) {
+        return isInChangedLines(location.getStartPosition(), location.getEndPosition());
+    }
+
     /**
      * Returns whether the provided node has been the target of a cleanup.
      *
@@ -116,14 +160,15 @@ public class Refactorings {
      * @return true if the provided node has been refactored, false otherwise
      */
     public boolean hasBeenRefactored(ASTNode node) {
-        return refactoredNodes.contains(node);
+        return refactoredNodes.containsKey(node);
     }
 
     private void addRefactoredNodes(ASTNode node) {
         hasRefactorings= true;
-        refactoredNodes.add(node);
-        if (node.getParent() != null) {
-            addRefactoredNodes(node.getParent());
+        // Stop as soon as an ancestor is already marked: its own ancestors are marked too
+        ASTNode ancestor= node;
+        while (ancestor != null && refactoredNodes.put(ancestor, Boolean.TRUE) == null) {
+            ancestor= ancestor.getParent();
         }
     }
 
@@ -175,12 +220,21 @@ public class Refactorings {
     }
 
     private ListRewrite getListRewrite(ASTNode node, ChildListPropertyDescriptor listProperty) {
-        final Pair<ASTNode, ChildListPropertyDescriptor> key= Pair.of(node, listProperty);
-        ListRewrite listRewrite= listRewriteCache.get(key);
-        if (listRewrite == null) {
-            listRewrite= rewrite.getListRewrite(node, listProperty);
-            listRewriteCache.put(key, listRewrite);
+        List<ListRewrite> listRewrites= listRewriteCache.get(node);
+        if (listRewrites == null) {
+            listRewrites= new ArrayList<>(1);
+            listRewriteCache.put(node, listRewrites);
+        } else {
+            for (int i= 0; i < listRewrites.size(); i++) {
+                final ListRewrite listRewrite= listRewrites.get(i);
+                if (listRewrite.getLocationInParent() == listProperty) {
+                    return listRewrite;
+                }
+            }
         }
+
+        final ListRewrite listRewrite= rewrite.getListRewrite(node, listProperty);
+        listRewrites.add(listRewrite);
         return listRewrite;
     }
 
@@ -281,24 +335,31 @@ public class Refactorings {
     }
 
     /**
-     * Replaces the provided comment with the provided text.
+     * Replaces the provided comment with the provided text. Comments outside the
+     * lines to refactor are left untouched.
      *
      * @param comment     the comment to replace
      * @param replacement the replacement text
      */
     public void replace(Comment comment, String replacement) {
+        if (!isInChangedLines(comment)) {
+            return;
+        }
         hasRefactorings= true;
         commentRewriter.replace(comment, replacement);
     }
 
     /**
      * Replaces the provided source location with the replacement string in the
-     * source.
+     * source. Source locations outside the lines to refactor are left untouched.
      *
      * @param toReplace   the source location to replace
      * @param replacement the replacement string
      */
     public void replace(SourceLocation toReplace, String replacement) {
+        if (!isInChangedLines(toReplace)) {
+            return;
+        }
         hasRefactorings= true;
         this.sourceRewriter.replace(toReplace, replacement);
     }
@@ -311,6 +372,9 @@ public class Refactorings {
      */
     public void remove(ASTNode node) {
         if (node instanceof Comment) {
+            if (!isInChangedLines(node)) {
+                return;
+            }
             commentRewriter.remove((Comment) node);
         } else {
             rewrite.remove(node, null);
@@ -330,7 +394,8 @@ public class Refactorings {
     }
 
     /**
-     * Removes the provided source location from the source.
+     * Removes the provided source location from the source. Source locations
+     * outside the lines to refactor are left untouched.
      *
      * @param toRemove the source location to remove
      */
@@ -338,6 +403,9 @@ public class Refactorings {
         if (toRemove.getLength() == 0) {
             throw new IllegalArgumentException("Cannot remove an empty source range: " + toRemove); //$NON-NLS-1$
         }
+        if (!isInChangedLines(toRemove)) {
+            return;
+        }
         hasRefactorings= true;
         sourceRewriter.remove(toRemove);
     }
@@ -459,6 +527,9 @@ public class Refactorings {
      * @param nextNode    the AST node immediately following the line comment
      */
     public void toJavadoc(LineComment lineComment, ASTNode nextNode) {
+        if (!isInChangedLines(lineComment)) {
+            return;
+        }
         hasRefactorings= true;
         commentRewriter.toJavadoc(lineComment, nextNode);
     }
@@ -469,6 +540,9 @@ public class Refactorings {
      * @param blockComment the block comment to convert to javadoc
      */
     public void toJavadoc(BlockComment blockComment) {
+        if (!isInChangedLines(blockComment)) {
+            return;
+        }
         hasRefactorings= true;
         commentRewriter.toJavadoc(blockComment);
     }
@@ -498,8 +572,10 @@ public class Refactorings {
     public void applyTo(final IDocument document, boolean hasToSave) throws BadLocationException, CoreException {
         edits= rewrite.rewriteAST(document, null);
         final TextEdit importEdits= importRewrite.rewriteImports(monitor);
-        commentRewriter.addEdits(document, edits);
-        sourceRewriter.addEdits(document, edits);
+        final EditIntervalIndex editIndex= new EditIntervalIndex();
+        editIndex.addAll(edits);
+        commentRewriter.addEdits(document, edits, editIndex);
+        sourceRewriter.addEdits(document, edits, editIndex);
 
         if (hasToSave) {
             applyEditsToDocument(edits, importEdits, document);
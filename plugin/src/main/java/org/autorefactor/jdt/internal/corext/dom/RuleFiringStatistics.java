@@ -0,0 +1,192 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * How often each cleanup rule fired on a project, accumulated over the
+ * AutoRefactor runs and persisted in the working location of the project.
+ * <p>
+ * The history loaded at the start of a run is not modified by the run, so that
+ * all the workers of a run see the same rule order. The firings of the current
+ * run are recorded with lock free counters and merged into the history when
+ * saving.
+ */
+public class RuleFiringStatistics {
+    private static final String FILE_NAME= "rule-firing-statistics.properties"; //$NON-NLS-1$
+    private static final String FIRINGS_SUFFIX= ".firings"; //$NON-NLS-1$
+    private static final String IDLE_RUNS_SUFFIX= ".idleRuns"; //$NON-NLS-1$
+
+    /** Where the statistics are persisted, null if they cannot be persisted. */
+    private final File file;
+    private final Properties history= new Properties();
+    private final ConcurrentMap<String, LongAdder> firings= new ConcurrentHashMap<>();
+    private final Set<String> rulesRun= ConcurrentHashMap.newKeySet();
+
+    private RuleFiringStatistics(File file) {
+        this.file= file;
+    }
+
+    /**
+     * Loads the statistics persisted for the provided project.
+     *
+     * @param project the project
+     * @return the statistics persisted for the provided project, empty if none
+     *         have been persisted yet
+     */
+    public static RuleFiringStatistics load(IProject project) {
+        final IPath workingLocation= project.isOpen() ? project.getWorkingLocation(PluginConstant.PLUGIN_ID) : null;
+        final RuleFiringStatistics statistics= new RuleFiringStatistics(
+                workingLocation != null ? workingLocation.append(FILE_NAME).toFile() : null);
+        statistics.loadHistory();
+        return statistics;
+    }
+
+    private void loadHistory() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (InputStream input= new FileInputStream(file)) {
+            history.load(input);
+        } catch (IOException | IllegalArgumentException e) {
+            // The statistics only drive the adaptive rule order: start from scratch
+            history.clear();
+        }
+    }
+
+    /**
+     * Returns how many times the provided rule fired on this project in the
+     * previous runs.
+     *
+     * @param rule the rule
+     * @return how many times the provided rule fired on this project in the
+     *         previous runs
+     */
+    public long getFirings(Object rule) {
+        return getLong(ruleName(rule) + FIRINGS_SUFFIX);
+    }
+
+    /**
+     * Returns the number of consecutive previous runs in which the provided rule
+     * has been run on this project without firing.
+     *
+     * @param rule the rule
+     * @return the number of consecutive previous runs without firing, 0 for the
+     *         rules never run on this project
+     */
+    public long getIdleRuns(Object rule) {
+        return getLong(ruleName(rule) + IDLE_RUNS_SUFFIX);
+    }
+
+    private long getLong(String key) {
+        final String value= history.getProperty(key);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Records that the provided rules are run on this project by the current run.
+     *
+     * @param rules the rules
+     */
+    public void recordRulesRun(Collection<?> rules) {
+        for (Object rule : rules) {
+            rulesRun.add(ruleName(rule));
+        }
+    }
+
+    /**
+     * Records that the provided rules fired once on this project in the current
+     * run.
+     *
+     * @param rules the rules which contributed cleanups
+     */
+    public void recordFirings(Collection<?> rules) {
+        for (Object rule : rules) {
+            final String ruleName= ruleName(rule);
+            LongAdder counter= firings.get(ruleName);
+            if (counter == null) {
+                counter= new LongAdder();
+                final LongAdder existing= firings.putIfAbsent(ruleName, counter);
+                if (existing != null) {
+                    counter= existing;
+                }
+            }
+            counter.increment();
+        }
+    }
+
+    /**
+     * Merges the firings of the current run into the history and persists it.
+     *
+     * @throws IOException if the statistics cannot be written
+     */
+    public void save() throws IOException {
+        if (file == null || rulesRun.isEmpty()) {
+            return;
+        }
+        final Properties merged= new Properties();
+        merged.putAll(history);
+        for (String ruleName : rulesRun) {
+            final LongAdder counter= firings.get(ruleName);
+            final long nbFirings= counter != null ? counter.sum() : 0;
+            final long idleRuns= nbFirings > 0 ? 0 : getLong(ruleName + IDLE_RUNS_SUFFIX) + 1;
+            merged.setProperty(ruleName + FIRINGS_SUFFIX,
+                    Long.toString(getLong(ruleName + FIRINGS_SUFFIX) + nbFirings));
+            merged.setProperty(ruleName + IDLE_RUNS_SUFFIX, Long.toString(idleRuns));
+        }
+
+        file.getParentFile().mkdirs();
+        try (OutputStream output= new FileOutputStream(file)) {
+            merged.store(output, "AutoRefactor rule firing statistics"); //$NON-NLS-1$
+        }
+    }
+
+    private static String ruleName(Object rule) {
+        return rule.getClass().getName();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker of the cleanup rules of one AutoRefactor run.
+ * <p>
+ * Each worker has its own instances of the rules, so the failures are counted
+ * per rule class across all the workers. A rule is tripped once it has failed
+ * the maximum number of times, and then skipped by all the workers for the
+ * rest of the run, instead of failing again on every file. The counters are
+ * lock free, so that checking the health of the rules does not slow the
+ * workers down.
+ */
+public class RuleHealth {
+    private final int maxFailures;
+    private final ConcurrentMap<Class<?>, AtomicInteger> failures= new ConcurrentHashMap<>();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param maxFailures the number of failures which trips a rule
+     */
+    public RuleHealth(int maxFailures) {
+        this.maxFailures= maxFailures;
+    }
+
+    /**
+     * Records a failure of the provided rule.
+     *
+     * @param ruleClass the class of the failing rule
+     * @return true if this failure trips the rule, false if the rule was already
+     *         tripped or is not tripped yet
+     */
+    public boolean recordFailure(Class<?> ruleClass) {
+        AtomicInteger counter= failures.get(ruleClass);
+        if (counter == null) {
+            counter= new AtomicInteger();
+            final AtomicInteger existing= failures.putIfAbsent(ruleClass, counter);
+            if (existing != null) {
+                counter= existing;
+            }
+        }
+        return counter.incrementAndGet() == maxFailures;
+    }
+
+    /**
+     * Returns whether the provided rule is tripped and must be skipped for the
+     * rest of the run.
+     *
+     * @param ruleClass the class of the rule
+     * @return true if the provided rule is tripped, false otherwise
+     */
+    public boolean isTripped(Class<?> ruleClass) {
+        final AtomicInteger counter= failures.get(ruleClass);
+        return counter != null && counter.get() >= maxFailures;
+    }
+
+    /**
+     * Returns the number of failures which trips a rule.
+     *
+     * @return the number of failures which trips a rule
+     */
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    /**
+     * Returns the simple class names of the tripped rules with their number of
+     * failures, sorted.
+     *
+     * @return the simple class names of the tripped rules with their number of
+     *         failures
+     */
+    public List<String> getTrippedRules() {
+        final List<String> trippedRules= new ArrayList<>();
+        for (Map.Entry<Class<?>, AtomicInteger> entry : failures.entrySet()) {
+            final int nbFailures= entry.getValue().get();
+            if (nbFailures >= maxFailures) {
+                trippedRules.add(entry.getKey().getSimpleName() + " (" + nbFailures + " failures)"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        Collections.sort(trippedRules);
+        return trippedRules;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Journal of the compilation units of a project which an AutoRefactor run
+ * refactored up to the fixpoint, persisted in the working location of the
+ * project.
+ * <p>
+ * Each completed compilation unit is appended to the journal with the hash of
+ * its content, so that a crash or a cancellation only loses the compilation
+ * units in flight. The journal starts with the fingerprint of the rules of the
+ * run: resuming a run only skips the compilation units completed with the same
+ * rules and not modified since.
+ */
+public class RunJournal {
+    private static final String FILE_NAME= "run-journal.txt"; //$NON-NLS-1$
+    private static final char SEPARATOR= '\t';
+
+    /** Where the journal is persisted, null if it cannot be persisted. */
+    private final File file;
+    private final Map<String, String> completedHashes= new HashMap<>();
+    private Writer writer;
+
+    /**
+     * Builds an instance of this class and starts journaling.
+     *
+     * @param file        the journal file, or null to only keep the journal in
+     *                    memory
+     * @param fingerprint the fingerprint of the rules of the run
+     * @param resume      true to keep the completed compilation units of the
+     *                    previous run with the same fingerprint, false to start
+     *                    a new journal
+     * @throws IOException if the journal cannot be read or written
+     */
+    public RunJournal(File file, String fingerprint, boolean resume) throws IOException {
+        this.file= file;
+        if (file == null) {
+            return;
+        }
+        final boolean append= resume && load(fingerprint);
+        file.getParentFile().mkdirs();
+        writer= new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8);
+        // When appending, ends the last line in case a crash cut it
+        writer.write(append ? "\n" : fingerprint + "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        writer.flush();
+    }
+
+    /**
+     * Opens the journal of the provided project.
+     *
+     * @param project     the project
+     * @param fingerprint the fingerprint of the rules of the run
+     * @param resume      true to keep the completed compilation units of the
+     *                    previous run with the same fingerprint, false to start
+     *                    a new journal
+     * @return the journal of the provided project
+     * @throws IOException if the journal cannot be read or written
+     */
+    public static RunJournal open(IProject project, String fingerprint, boolean resume) throws IOException {
+        final IPath workingLocation= project.isOpen() ? project.getWorkingLocation(PluginConstant.PLUGIN_ID) : null;
+        return new RunJournal(workingLocation != null ? workingLocation.append(FILE_NAME).toFile() : null,
+                fingerprint, resume);
+    }
+
+    /** Loads the completed compilation units, returns whether the journal has the provided fingerprint. */
+    private boolean load(String fingerprint) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (BufferedReader reader= new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!fingerprint.equals(reader.readLine())) {
+                return false;
+            }
+            for (String line= reader.readLine(); line != null; line= reader.readLine()) {
+                final int separatorIndex= line.lastIndexOf(SEPARATOR);
+                // A line cut by a crash has no separator or a truncated hash, which never matches
+                if (separatorIndex > 0) {
+                    completedHashes.put(line.substring(0, separatorIndex), line.substring(separatorIndex + 1));
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the provided rules, applied in this order.
+     *
+     * @param rules               the rules of the run
+     * @param changedLinesBaseRef the git reference of the changed lines, or null
+     *                            if all the lines are refactored
+     * @return the fingerprint of the provided rules
+     */
+    public static String fingerprint(List<RefactoringRule> rules, String changedLinesBaseRef) {
+        final StringBuilder sb= new StringBuilder();
+        for (RefactoringRule rule : rules) {
+            sb.append(rule.getClass().getName()).append('\n');
+        }
+        sb.append(changedLinesBaseRef);
+        return hash(sb.toString());
+    }
+
+    /**
+     * Returns the hash of the provided content.
+     *
+     * @param content the content
+     * @return the hash of the provided content
+     */
+    public static String hash(String content) {
+        try {
+            final byte[] digest= MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+            final StringBuilder sb= new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnhandledException(null, e);
+        }
+    }
+
+    /**
+     * Returns whether the provided compilation unit was completed by the resumed
+     * run and was not modified since.
+     *
+     * @param compilationUnit the compilation unit
+     * @return true if the provided compilation unit can be skipped, false
+     *         otherwise
+     * @throws JavaModelException if the content of the compilation unit cannot be
+     *                            read
+     */
+    public boolean isCompleted(ICompilationUnit compilationUnit) throws JavaModelException {
+        return isCompleted(compilationUnit.getPath().toString(), compilationUnit.getSource());
+    }
+
+    /**
+     * Returns whether the provided file was completed by the resumed run and
+     * was not modified since.
+     *
+     * @param path    the path of the file
+     * @param content the current content of the file
+     * @return true if the provided file can be skipped, false otherwise
+     */
+    public synchronized boolean isCompleted(String path, String content) {
+        final String completedHash= completedHashes.get(path);
+        return completedHash != null && content != null && completedHash.equals(hash(content));
+    }
+
+    /**
+     * Records that the provided file is refactored up to the fixpoint.
+     *
+     * @param path    the path of the file
+     * @param content the content of the file after the refactorings
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void recordCompleted(String path, String content) throws IOException {
+        final String contentHash= hash(content);
+        completedHashes.put(path, contentHash);
+        if (writer != null) {
+            writer.write(path + SEPARATOR + contentHash + "\n"); //$NON-NLS-1$
+            // Flushed for each compilation unit, so that a crash only loses the ones in flight
+            writer.flush();
+        }
+    }
+
+    /**
+     * Closes the journal. The journal is kept so that the next run can resume
+     * from it.
+     *
+     * @throws IOException if the journal cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer= null;
+        }
+    }
+}
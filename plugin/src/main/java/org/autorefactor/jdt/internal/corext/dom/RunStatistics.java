@@ -0,0 +1,403 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2019 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.jdt.internal.corext.dom;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Statistics gathered by all the workers of an AutoRefactor run.
+ * <p>
+ * Counters are lock free so that workers can update them concurrently. They
+ * are shared by all the workers, so that the progress of each worker reports
+ * the progress of the whole run.
+ */
+public class RunStatistics {
+    /** Number of slowest files and rules reported in the summary. */
+    private static final int NB_SLOWEST= 10;
+    /** The last bucket of the iteration histogram counts the files changed by this many iterations or more. */
+    private static final int MAX_HISTOGRAM_ITERATIONS= 10;
+
+    /** The time spent refactoring a file. */
+    private static final class FileTiming implements Comparable<FileTiming> {
+        private final String path;
+        private final long nanos;
+
+        private FileTiming(String path, long nanos) {
+            this.path= path;
+            this.nanos= nanos;
+        }
+
+        @Override
+        public int compareTo(FileTiming o) {
+            if (nanos != o.nanos) {
+                return nanos < o.nanos ? -1 : 1;
+            }
+            return path.compareTo(o.path);
+        }
+    }
+
+    private final LongAdder packageTypesCacheHits= new LongAdder();
+    private final LongAdder packageTypesCacheMisses= new LongAdder();
+    private final LongAdder filesRefactored= new LongAdder();
+    private final LongAdder iterations= new LongAdder();
+    private final LongAdder refactoringNanos= new LongAdder();
+    private final LongAccumulator maxIterations= new LongAccumulator(new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    }, 0);
+    private final LongAdder unitsQueued= new LongAdder();
+    private final LongAdder unitsDone= new LongAdder();
+    private final AtomicLongArray iterationHistogram= new AtomicLongArray(MAX_HISTOGRAM_ITERATIONS + 1);
+    /** The slowest files, the fastest first. */
+    private final ConcurrentSkipListSet<FileTiming> slowestFiles= new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Class<?>, LongAdder> ruleIterationNanos= new ConcurrentHashMap<>();
+    private volatile long startNanos;
+
+    /** Starts measuring the throughput of the run. */
+    public void start() {
+        startNanos= System.nanoTime();
+    }
+
+    /**
+     * Records compilation units queued for refactoring.
+     *
+     * @param nbUnits the number of queued compilation units
+     */
+    public void recordUnitsQueued(int nbUnits) {
+        unitsQueued.add(nbUnits);
+    }
+
+    /** Records that a worker is done with a compilation unit. */
+    public void recordUnitDone() {
+        unitsDone.increment();
+    }
+
+    /** Records that the types of a package have been found in the cache. */
+    public void recordPackageTypesCacheHit() {
+        packageTypesCacheHits.increment();
+    }
+
+    /** Records that the types of a package had to be searched. */
+    public void recordPackageTypesCacheMiss() {
+        packageTypesCacheMisses.increment();
+    }
+
+    /**
+     * Records that a file has been refactored.
+     *
+     * @param path         the path of the file
+     * @param nbIterations the number of iterations which changed the file
+     * @param nanos        the time spent refactoring the file, in nanoseconds
+     */
+    public void recordFileRefactored(String path, int nbIterations, long nanos) {
+        filesRefactored.increment();
+        iterations.add(nbIterations);
+        refactoringNanos.add(nanos);
+        maxIterations.accumulate(nbIterations);
+        iterationHistogram.incrementAndGet(Math.min(nbIterations, MAX_HISTOGRAM_ITERATIONS));
+        recordFileTiming(path, nanos);
+    }
+
+    private void recordFileTiming(String path, long nanos) {
+        if (slowestFiles.size() >= NB_SLOWEST) {
+            // Avoid allocating for the files which are obviously not among the slowest
+            final FileTiming fastest= slowestFiles.first();
+            if (fastest != null && nanos <= fastest.nanos) {
+                return;
+            }
+        }
+        slowestFiles.add(new FileTiming(path, nanos));
+        while (slowestFiles.size() > NB_SLOWEST) {
+            slowestFiles.pollFirst();
+        }
+    }
+
+    /**
+     * Records an iteration which changed a file.
+     * <p>
+     * The rules are not timed individually, which would slow the visit of every
+     * node down. Instead, the time of each iteration is charged to the rules
+     * which contributed its changes, because these changes are why the file is
+     * parsed and visited again.
+     *
+     * @param rules the rules which contributed the changes of the iteration
+     * @param nanos the time spent by the iteration, in nanoseconds
+     */
+    public void recordIteration(Collection<?> rules, long nanos) {
+        for (Object rule : rules) {
+            LongAdder ruleNanos= ruleIterationNanos.get(rule.getClass());
+            if (ruleNanos == null) {
+                ruleNanos= new LongAdder();
+                final LongAdder existing= ruleIterationNanos.putIfAbsent(rule.getClass(), ruleNanos);
+                if (existing != null) {
+                    ruleNanos= existing;
+                }
+            }
+            ruleNanos.add(nanos);
+        }
+    }
+
+    /**
+     * Returns the number of package types cache hits.
+     *
+     * @return the number of package types cache hits
+     */
+    public long getPackageTypesCacheHits() {
+        return packageTypesCacheHits.sum();
+    }
+
+    /**
+     * Returns the number of package types cache misses.
+     *
+     * @return the number of package types cache misses
+     */
+    public long getPackageTypesCacheMisses() {
+        return packageTypesCacheMisses.sum();
+    }
+
+    /**
+     * Returns the package types cache hit rate.
+     *
+     * @return the package types cache hit rate, between 0 and 1
+     */
+    public double getPackageTypesCacheHitRate() {
+        final long hits= getPackageTypesCacheHits();
+        final long lookups= hits + getPackageTypesCacheMisses();
+        return lookups != 0 ? (double) hits / lookups : 0;
+    }
+
+    /**
+     * Returns the number of refactored files.
+     *
+     * @return the number of refactored files
+     */
+    public long getFilesRefactored() {
+        return filesRefactored.sum();
+    }
+
+    /**
+     * Returns the average number of iterations which changed a file.
+     *
+     * @return the average number of iterations which changed a file
+     */
+    public double getAverageIterations() {
+        final long nbFiles= getFilesRefactored();
+        return nbFiles != 0 ? (double) iterations.sum() / nbFiles : 0;
+    }
+
+    /**
+     * Returns the maximum number of iterations which changed a file.
+     *
+     * @return the maximum number of iterations which changed a file
+     */
+    public long getMaxIterations() {
+        return maxIterations.get();
+    }
+
+    /**
+     * Returns the average time spent refactoring a file, in milliseconds.
+     *
+     * @return the average time spent refactoring a file, in milliseconds
+     */
+    public double getAverageMillis() {
+        final long nbFiles= getFilesRefactored();
+        return nbFiles != 0 ? refactoringNanos.sum() / 1e6 / nbFiles : 0;
+    }
+
+    /**
+     * Returns the number of compilation units queued for refactoring.
+     *
+     * @return the number of compilation units queued for refactoring
+     */
+    public long getUnitsQueued() {
+        return unitsQueued.sum();
+    }
+
+    /**
+     * Returns the number of compilation units the workers are done with.
+     *
+     * @return the number of compilation units the workers are done with
+     */
+    public long getUnitsDone() {
+        return unitsDone.sum();
+    }
+
+    /**
+     * Returns the number of compilation units the workers are done with per
+     * second since the run started.
+     *
+     * @return the number of compilation units per second, 0 if the run is not
+     *         started
+     */
+    public double getUnitsPerSecond() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        final long elapsedNanos= System.nanoTime() - startNanos;
+        return elapsedNanos > 0 ? getUnitsDone() * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns the estimated number of seconds before the workers are done with
+     * all the queued compilation units, at the current throughput.
+     *
+     * @return the estimated number of seconds left, or -1 if it cannot be
+     *         estimated yet
+     */
+    public long getEstimatedSecondsLeft() {
+        final double unitsPerSecond= getUnitsPerSecond();
+        if (unitsPerSecond == 0) {
+            return -1;
+        }
+        return Math.round(Math.max(0, getUnitsQueued() - getUnitsDone()) / unitsPerSecond);
+    }
+
+    /**
+     * Returns the number of files changed by each number of iterations. The last
+     * element counts the files changed by at least that many iterations.
+     *
+     * @return the number of files changed by each number of iterations
+     */
+    public long[] getIterationHistogram() {
+        final long[] histogram= new long[iterationHistogram.length()];
+        for (int i= 0; i < histogram.length; i++) {
+            histogram[i]= iterationHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the paths of the slowest files with the time spent refactoring
+     * them, the slowest first.
+     *
+     * @return the paths of the slowest files with the time spent refactoring them
+     */
+    public List<String> getSlowestFiles() {
+        final List<String> files= new ArrayList<>(NB_SLOWEST);
+        for (FileTiming timing : slowestFiles.descendingSet()) {
+            files.add(timing.path + " (" + timing.nanos / 1000000 + " ms)"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return files;
+    }
+
+    /**
+     * Returns the simple class names of the rules whose changes cost the most
+     * iteration time, with this time, the costliest first.
+     *
+     * @return the simple class names of the rules whose changes cost the most
+     *         iteration time
+     * @see #recordIteration(Collection, long)
+     */
+    public List<String> getSlowestRules() {
+        final List<Map.Entry<Class<?>, Long>> rules= new ArrayList<>();
+        for (Map.Entry<Class<?>, LongAdder> entry : ruleIterationNanos.entrySet()) {
+            rules.add(new AbstractMap.SimpleImmutableEntry<Class<?>, Long>(entry.getKey(),
+                    entry.getValue().sum()));
+        }
+        Collections.sort(rules, new Comparator<Map.Entry<Class<?>, Long>>() {
+            @Override
+            public int compare(Map.Entry<Class<?>, Long> o1, Map.Entry<Class<?>, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        final List<String> slowestRules= new ArrayList<>(NB_SLOWEST);
+        for (Map.Entry<Class<?>, Long> rule : rules.subList(0, Math.min(NB_SLOWEST, rules.size()))) {
+            slowestRules.add(rule.getKey().getSimpleName() + " (" + rule.getValue() / 1000000 + " ms)"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return slowestRules;
+    }
+
+    /**
+     * Returns a short human readable progress of the run, for the progress
+     * monitors.
+     *
+     * @return a short human readable progress of the run
+     */
+    public String getProgress() {
+        final long secondsLeft= getEstimatedSecondsLeft();
+        return getUnitsDone() + "/" + getUnitsQueued() + " files, " //$NON-NLS-1$ //$NON-NLS-2$
+                + String.format("%.1f files/s", getUnitsPerSecond()) //$NON-NLS-1$
+                + (secondsLeft >= 0 ? ", " + formatDuration(secondsLeft) + " left" : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    private static String formatDuration(long seconds) {
+        if (seconds < 60) {
+            return seconds + " s"; //$NON-NLS-1$
+        }
+        if (seconds < 3600) {
+            return seconds / 60 + " min " + seconds % 60 + " s"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return seconds / 3600 + " h " + seconds % 3600 / 60 + " min"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Returns a human readable summary of these statistics.
+     *
+     * @return a human readable summary of these statistics
+     */
+    public String getSummary() {
+        final StringBuilder histogram= new StringBuilder();
+        final long[] nbFiles= getIterationHistogram();
+        for (int i= 0; i < nbFiles.length; i++) {
+            if (nbFiles[i] != 0) {
+                histogram.append(histogram.length() != 0 ? ", " : "").append(i) //$NON-NLS-1$ //$NON-NLS-2$
+                        .append(i == MAX_HISTOGRAM_ITERATIONS ? "+" : "").append(": ").append(nbFiles[i]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+        }
+        return "AutoRefactor run statistics:" //$NON-NLS-1$
+                + "\n  package types cache: " + getPackageTypesCacheHits() + " hits, " //$NON-NLS-1$ //$NON-NLS-2$
+                + getPackageTypesCacheMisses() + " misses, " //$NON-NLS-1$
+                + Math.round(getPackageTypesCacheHitRate() * 100) + "% hit rate" //$NON-NLS-1$
+                + "\n  files: " + getFilesRefactored() //$NON-NLS-1$
+                + String.format(", %.1f iterations per file (max %d), %.1f ms per file", //$NON-NLS-1$
+                        getAverageIterations(), getMaxIterations(), getAverageMillis())
+                + "\n  compilation units: " + getUnitsDone() + " done out of " + getUnitsQueued() + " queued, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + String.format("%.1f per second", getUnitsPerSecond()) //$NON-NLS-1$
+                + "\n  files per number of iterations: " + histogram //$NON-NLS-1$
+                + "\n  slowest files: " + getSlowestFiles() //$NON-NLS-1$
+                + "\n  rules whose changes cost the most iteration time: " + getSlowestRules(); //$NON-NLS-1$
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
@@ -25,8 +25,10 @@
  */
 package org.autorefactor.jdt.internal.corext.dom;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -64,18 +66,37 @@ public class SourceRewriter {
     /**
      * Adds the edits contained in the current instance to the provided edits for
      * the provided document.
+     * <p>
+     * The edits which overlap with the edits already recorded in the provided
+     * index are dropped, instead of making the whole edit tree malformed. The
+     * edits only touching each other are kept, like the text edits allow. The
+     * other edits are kept and recorded in the provided index as soon as they are
+     * accepted, so that the edits of this rewriter cannot overlap either.
      *
-     * @param document the document to edit
-     * @param edits    where to add edits
+     * @param document  the document to edit
+     * @param edits     where to add edits
+     * @param editIndex the index of the edits already added to the provided edits
      */
-    public void addEdits(IDocument document, TextEdit edits) {
+    public void addEdits(IDocument document, TextEdit edits, EditIntervalIndex editIndex) {
+        final List<TextEdit> acceptedEdits= new ArrayList<>(removals.size() + replacements.size());
         for (SourceLocation loc : this.removals) {
-            edits.addChild(new DeleteEdit(loc.getStartPosition(), loc.getLength()));
+            addIfNoOverlap(acceptedEdits, new DeleteEdit(loc.getStartPosition(), loc.getLength()), editIndex);
         }
         for (Entry<SourceLocation, String> entry : this.replacements.entrySet()) {
             SourceLocation loc= entry.getKey();
             String replacement= entry.getValue();
-            edits.addChild(new ReplaceEdit(loc.getStartPosition(), loc.getLength(), replacement));
+            addIfNoOverlap(acceptedEdits, new ReplaceEdit(loc.getStartPosition(), loc.getLength(), replacement),
+                    editIndex);
+        }
+        for (TextEdit edit : acceptedEdits) {
+            edits.addChild(edit);
+        }
+    }
+
+    private void addIfNoOverlap(List<TextEdit> acceptedEdits, TextEdit edit, EditIntervalIndex editIndex) {
+        if (!editIndex.overlapsHalfOpen(edit)) {
+            acceptedEdits.add(edit);
+            editIndex.add(edit);
         }
     }
 }
@@ -25,9 +25,13 @@
  */
 package org.autorefactor.jdt.internal.corext.dom;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -38,6 +42,7 @@ import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.ImportDeclaration;
 import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.VariableDeclaration;
@@ -59,15 +64,86 @@ public class TypeNameDecider {
      * FIXME Horribly brittle hack that uses reflection to resolve type bindings.
      * <p>
      * But how could I do otherwise?
+     * <p>
+     * The reflective lookups are only done once per JDT class and kept as method
+     * handles. The binding resolver and the compilation unit scope are only looked
+     * up once per instance.
      *
      * @see org.eclipse.jdt.core.dom.DefaultBindingResolver#resolveWellKnownType(String)
      */
     static final class ReflectionResolveTypeBindingStrategy implements ResolveTypeBindingStrategy {
-        private final ASTNode parsedNode;
+        private static final String INTERNAL_TYPE_BINDING_CLASS= "org.eclipse.jdt.internal.compiler.lookup.TypeBinding"; //$NON-NLS-1$
+
+        private static final ClassValue<MethodHandle> RESOLVER_GETTERS= new ReflectiveHandles() {
+            @Override
+            MethodHandle lookup(Class<?> type) throws ReflectiveOperationException {
+                return getter(type, "resolver"); //$NON-NLS-1$
+            }
+        };
+        private static final ClassValue<MethodHandle> SCOPE_GETTERS= new ReflectiveHandles() {
+            @Override
+            MethodHandle lookup(Class<?> type) throws ReflectiveOperationException {
+                return getter(type, "scope"); //$NON-NLS-1$
+            }
+        };
+        private static final ClassValue<MethodHandle> GET_TYPE_METHODS= new ReflectiveHandles() {
+            @Override
+            MethodHandle lookup(Class<?> type) throws ReflectiveOperationException {
+                final Method getType= type.getMethod("getType", char[][].class, int.class); //$NON-NLS-1$
+                getType.setAccessible(true);
+                return MethodHandles.lookup().unreflect(getType)
+                        .asType(MethodType.methodType(Object.class, Object.class, char[][].class, int.class));
+            }
+        };
+        private static final ClassValue<MethodHandle> GET_TYPE_BINDING_METHODS= new ReflectiveHandles() {
+            @Override
+            MethodHandle lookup(Class<?> type) throws ReflectiveOperationException {
+                for (Method method : type.getDeclaredMethods()) {
+                    if ("getTypeBinding".equals(method.getName()) && method.getParameterTypes().length == 1 //$NON-NLS-1$
+                            && INTERNAL_TYPE_BINDING_CLASS.equals(method.getParameterTypes()[0].getName())) {
+                        method.setAccessible(true);
+                        return MethodHandles.lookup().unreflect(method)
+                                .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+                    }
+                }
+                throw new NoSuchMethodException(
+                        type.getName() + ".getTypeBinding(" + INTERNAL_TYPE_BINDING_CLASS + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        };
+
+        /** Lazily looks up a method handle once per class. */
+        private abstract static class ReflectiveHandles extends ClassValue<MethodHandle> {
+            @Override
+            protected MethodHandle computeValue(Class<?> type) {
+                try {
+                    return lookup(type);
+                } catch (ReflectiveOperationException e) {
+                    throw new UnhandledException(null, e);
+                }
+            }
+
+            abstract MethodHandle lookup(Class<?> type) throws ReflectiveOperationException;
+
+            static MethodHandle getter(Class<?> type, String fieldName) throws ReflectiveOperationException {
+                for (Class<?> clazz= type; clazz != null; clazz= clazz.getSuperclass()) {
+                    try {
+                        final Field field= clazz.getDeclaredField(fieldName);
+                        field.setAccessible(true);
+                        return MethodHandles.lookup().unreflectGetter(field)
+                                .asType(MethodType.methodType(Object.class, Object.class));
+                    } catch (NoSuchFieldException e) {
+                        // Look into the super class
+                    }
+                }
+                throw new NoSuchFieldException(type.getName() + "." + fieldName); //$NON-NLS-1$
+            }
+        }
+
         private final ITypeBinding anyTypeBinding;
+        private Object bindingResolver;
+        private Object compilationUnitScope;
 
-        public ReflectionResolveTypeBindingStrategy(ASTNode parsedNode, ITypeBinding anyTypeBinding) {
-            this.parsedNode= parsedNode;
+        public ReflectionResolveTypeBindingStrategy(ITypeBinding anyTypeBinding) {
             this.anyTypeBinding= anyTypeBinding;
         }
 
@@ -80,41 +156,62 @@ public class TypeNameDecider {
          */
         public ITypeBinding resolveTypeBinding(String fullyQualifiedName) {
             try {
-                final Object bindingResolver= getField(anyTypeBinding, "resolver"); //$NON-NLS-1$
-                final Object compilationUnitScope= getField(bindingResolver, "scope"); //$NON-NLS-1$
+                if (compilationUnitScope == null) {
+                    bindingResolver= RESOLVER_GETTERS.get(anyTypeBinding.getClass())
+                            .invokeExact((Object) anyTypeBinding);
+                    compilationUnitScope= SCOPE_GETTERS.get(bindingResolver.getClass()).invokeExact(bindingResolver);
+                }
 
                 final char[][] simpleNamesArray= toSimpleNamesArray(fullyQualifiedName);
-                final Method getType= compilationUnitScope.getClass().getMethod("getType", char[][].class, int.class); //$NON-NLS-1$
-                final Object internalTypeBinding= invokeMethod(compilationUnitScope, getType, simpleNamesArray,
-                        simpleNamesArray.length);
-
-                final Method getTypeBinding= bindingResolver.getClass().getDeclaredMethod("getTypeBinding", //$NON-NLS-1$
-                        internalTypeBinding.getClass().getSuperclass().getSuperclass());
-                return invokeMethod(bindingResolver, getTypeBinding, internalTypeBinding);
-            } catch (Exception e) {
-                throw new UnhandledException(parsedNode, e);
+                final Object internalTypeBinding= GET_TYPE_METHODS.get(compilationUnitScope.getClass())
+                        .invokeExact(compilationUnitScope, simpleNamesArray, simpleNamesArray.length);
+                final Object typeBinding= GET_TYPE_BINDING_METHODS.get(bindingResolver.getClass())
+                        .invokeExact(bindingResolver, internalTypeBinding);
+                return (ITypeBinding) typeBinding;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // The strategy is shared by all the nodes of the AST: the caller reports its node
+                throw new UnhandledException(null, e);
             }
         }
-
-        @SuppressWarnings("unchecked")
-        private <T> T invokeMethod(Object object, Method method, Object... args)
-                throws IllegalAccessException, InvocationTargetException {
-            method.setAccessible(true);
-            return (T) method.invoke(object, args);
-        }
-
-        @SuppressWarnings("unchecked")
-        private <T> T getField(Object object, String fieldName)
-                throws IllegalAccessException, InvocationTargetException, NoSuchFieldException {
-            final Field f= object.getClass().getDeclaredField(fieldName);
-            f.setAccessible(true);
-            return (T) f.get(object);
-        }
     }
 
+    private static final String TYPE_NAME_DECIDER= "typeNameDecider"; //$NON-NLS-1$
+
+    /** The node of the caller, reported when a type binding cannot be resolved. */
+    private final ASTNode parsedNode;
     private final ResolveTypeBindingStrategy resolveTypeBindingStrategy;
     private final TreeSet<String> importedTypes;
     private final String packageName;
+    private final Map<String, ITypeBinding> typeBindings;
+    private final Map<String, String> simplestNames;
+
+    /**
+     * Returns the type name decider shared by all the nodes of the provided node
+     * AST, creating it if needed.
+     * <p>
+     * The imported types are only extracted once per parse, and the resolved type
+     * bindings and the simplest names are memoized across all the callers. The
+     * decider is only shared once it could be built from a resolved type binding,
+     * so that an unresolved node only fails its own caller.
+     *
+     * @param parsedNode the node where to extract information from
+     * @return the type name decider shared by all the nodes of the provided node
+     *         AST
+     */
+    public static TypeNameDecider of(final ASTNode parsedNode) {
+        final ASTNode root= parsedNode.getRoot();
+        final TypeNameDecider sharedDecider= (TypeNameDecider) root.getProperty(TYPE_NAME_DECIDER);
+        if (sharedDecider != null) {
+            return new TypeNameDecider(sharedDecider, parsedNode);
+        }
+        final TypeNameDecider typeNameDecider= new TypeNameDecider(parsedNode);
+        if (getAnyTypeBinding(parsedNode) != null) {
+            root.setProperty(TYPE_NAME_DECIDER, typeNameDecider);
+        }
+        return typeNameDecider;
+    }
 
     /**
      * Builds an instance, and extracts out of the provided node: a type binding and
@@ -123,8 +220,10 @@ public class TypeNameDecider {
      * @param parsedNode the node where to extract information from
      */
     public TypeNameDecider(final ASTNode parsedNode) {
-        this.resolveTypeBindingStrategy= new ReflectionResolveTypeBindingStrategy(parsedNode,
-                getAnyTypeBinding(parsedNode));
+        this.parsedNode= parsedNode;
+        this.resolveTypeBindingStrategy= new ReflectionResolveTypeBindingStrategy(getAnyTypeBinding(parsedNode));
+        this.typeBindings= new HashMap<>();
+        this.simplestNames= new HashMap<>();
         final ASTNode root= parsedNode.getRoot();
         if (!(root instanceof CompilationUnit)) {
             throw new IllegalArgumentException(parsedNode, "Expected the root to be a CompilationUnit"); //$NON-NLS-1$
@@ -141,16 +240,30 @@ public class TypeNameDecider {
      * @param importedTypes              the imported types
      */
     public TypeNameDecider(ResolveTypeBindingStrategy resolveTypeBindingStrategy, TreeSet<String> importedTypes) {
+        this.parsedNode= null;
         this.resolveTypeBindingStrategy= resolveTypeBindingStrategy;
         this.packageName= ""; //$NON-NLS-1$
         this.importedTypes= importedTypes;
+        this.typeBindings= new HashMap<>();
+        this.simplestNames= new HashMap<>();
+    }
+
+    /** Builds a view of the provided shared decider, reporting the provided node. */
+    private TypeNameDecider(TypeNameDecider sharedDecider, ASTNode parsedNode) {
+        this.parsedNode= parsedNode;
+        this.resolveTypeBindingStrategy= sharedDecider.resolveTypeBindingStrategy;
+        this.packageName= sharedDecider.packageName;
+        this.importedTypes= sharedDecider.importedTypes;
+        this.typeBindings= sharedDecider.typeBindings;
+        this.simplestNames= sharedDecider.simplestNames;
     }
 
-    private ITypeBinding getAnyTypeBinding(final ASTNode parsedNode) {
+    private static ITypeBinding getAnyTypeBinding(final ASTNode parsedNode) {
         if (parsedNode instanceof Expression) {
             return ((Expression) parsedNode).resolveTypeBinding();
         } else if (parsedNode instanceof VariableDeclaration) {
-            return ((VariableDeclaration) parsedNode).resolveBinding().getType();
+            final IVariableBinding variableBinding= ((VariableDeclaration) parsedNode).resolveBinding();
+            return variableBinding != null ? variableBinding.getType() : null;
         } else {
             throw new NotImplementedException(parsedNode);
         }
@@ -183,7 +296,18 @@ public class TypeNameDecider {
      * @return a type binding
      */
     public ITypeBinding resolveTypeBinding(String fullyQualifiedName) {
-        return resolveTypeBindingStrategy.resolveTypeBinding(fullyQualifiedName);
+        ITypeBinding typeBinding= typeBindings.get(fullyQualifiedName);
+        if (typeBinding == null) {
+            try {
+                typeBinding= resolveTypeBindingStrategy.resolveTypeBinding(fullyQualifiedName);
+            } catch (UnhandledException e) {
+                throw new UnhandledException(parsedNode, e.getCause());
+            }
+            if (typeBinding != null) {
+                typeBindings.put(fullyQualifiedName, typeBinding);
+            }
+        }
+        return typeBinding;
     }
 
     /**
@@ -194,6 +318,19 @@ public class TypeNameDecider {
      * @return the simplest possible name to use when referring to the type
      */
     public String useSimplestPossibleName(ITypeBinding typeBinding) {
+        final String key= typeBinding.getKey();
+        if (key == null) {
+            return computeSimplestPossibleName(typeBinding);
+        }
+        String simplestName= simplestNames.get(key);
+        if (simplestName == null) {
+            simplestName= computeSimplestPossibleName(typeBinding);
+            simplestNames.put(key, simplestName);
+        }
+        return simplestName;
+    }
+
+    private String computeSimplestPossibleName(ITypeBinding typeBinding) {
         final String pkgName= typeBinding.getPackage().getName();
         if ("java.lang".equals(pkgName) || pkgName.equals(this.packageName)) { //$NON-NLS-1$
             // TODO beware of name shadowing!
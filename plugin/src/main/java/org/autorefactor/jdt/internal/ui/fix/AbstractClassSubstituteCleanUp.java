@@ -42,6 +42,8 @@ import static org.eclipse.jdt.core.dom.ASTNode.VARIABLE_DECLARATION_FRAGMENT;
 import static org.eclipse.jdt.core.dom.ASTNode.VARIABLE_DECLARATION_STATEMENT;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -53,20 +55,55 @@ import org.autorefactor.jdt.internal.corext.dom.TypeNameDecider;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.InstanceofExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
 /** See {@link #getDescription()} method. */
 public abstract class AbstractClassSubstituteCleanUp extends NewClassImportCleanUp {
+    /**
+     * The substituted types, with their names, the refactored method calls, and the
+     * nodes they belong to.
+     */
+    private static final Collection<Class<? extends ASTNode>> PRODUCED_NODE_TYPES= Arrays
+            .<Class<? extends ASTNode>>asList(Type.class, Name.class, ClassInstanceCreation.class,
+                    MethodInvocation.class, VariableDeclarationStatement.class, ImportDeclaration.class,
+                    CompilationUnit.class);
+
+    /**
+     * The visited blocks, the instantiations, the variables and the method calls
+     * analyzed from there, the parents which prevent the substitution and the
+     * already imported or declared classes.
+     */
+    private static final Collection<Class<? extends ASTNode>> CONSUMED_NODE_TYPES= Arrays
+            .<Class<? extends ASTNode>>asList(Block.class, ClassInstanceCreation.class, Type.class, Name.class,
+                    MethodInvocation.class, VariableDeclaration.class, VariableDeclarationStatement.class,
+                    VariableDeclarationExpression.class, Assignment.class, ReturnStatement.class,
+                    CastExpression.class, InstanceofExpression.class, ConstructorInvocation.class,
+                    ConditionalExpression.class, ParenthesizedExpression.class, EnhancedForStatement.class,
+                    AnonymousClassDeclaration.class, ImportDeclaration.class, TypeDeclaration.class);
+
     private final class RefactoringWithObjectsClass extends CleanUpWithNewClassImport {
         @Override
         public boolean visit(Block node) {
@@ -85,6 +122,16 @@ public abstract class AbstractClassSubstituteCleanUp extends NewClassImportClean
         return new HashSet<String>(0);
     }
 
+    @Override
+    public Collection<Class<? extends ASTNode>> getProducedNodeTypes() {
+        return PRODUCED_NODE_TYPES;
+    }
+
+    @Override
+    public Collection<Class<? extends ASTNode>> getConsumedNodeTypes() {
+        return CONSUMED_NODE_TYPES;
+    }
+
     /**
      * Get the existing class canonical name.
      *
@@ -196,7 +243,7 @@ public abstract class AbstractClassSubstituteCleanUp extends NewClassImportClean
                 substitutingClassName= getSimpleName(substitutingClassName);
             }
 
-            final TypeNameDecider typeNameDecider= new TypeNameDecider(originalExpression);
+            final TypeNameDecider typeNameDecider= TypeNameDecider.of(originalExpression);
 
             if (origTypeBinding.isParameterizedType()) {
                 final ITypeBinding[] origTypeArgs= origTypeBinding.getTypeArguments();
@@ -25,6 +25,8 @@
  */
 package org.autorefactor.jdt.internal.ui.fix;
 
+import java.util.Collection;
+
 import org.autorefactor.jdt.internal.corext.dom.InterruptibleVisitor;
 import org.autorefactor.jdt.internal.corext.dom.JavaRefactoringRule;
 import org.autorefactor.jdt.internal.corext.dom.Refactorings;
@@ -95,7 +97,34 @@ public abstract class AbstractCleanUpRule extends ASTVisitor implements JavaRefa
     }
 
     /**
-     * Set the cleanup context.
+     * Returns the types of the nodes this cleanup rule creates, moves or modifies.
+     * After this cleanup rule changed the code, only the cleanup rules consuming
+     * one of these types are run again until a final pass with all the cleanup
+     * rules.
+     *
+     * @return the types of the produced nodes, or null if this cleanup rule may
+     *         produce any type of node
+     * @see #getConsumedNodeTypes()
+     */
+    public Collection<Class<? extends ASTNode>> getProducedNodeTypes() {
+        return null;
+    }
+
+    /**
+     * Returns the types of the nodes this cleanup rule analyzes, including the
+     * nodes it looks at below or around the visited nodes.
+     *
+     * @return the types of the consumed nodes, or null if this cleanup rule may
+     *         have more work to do after any type of node has been produced
+     * @see #getProducedNodeTypes()
+     */
+    public Collection<Class<? extends ASTNode>> getConsumedNodeTypes() {
+        return null;
+    }
+
+    /**
+     * Set the cleanup context. Rule instances are reused by a worker for all its
+     * compilation units, so the rules keeping state in fields must reset it here.
      *
      * @param ctx the cleanup context.
      */
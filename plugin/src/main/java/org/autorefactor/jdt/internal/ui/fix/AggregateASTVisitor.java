@@ -28,6 +28,7 @@ package org.autorefactor.jdt.internal.ui.fix;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -38,14 +39,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.autorefactor.environment.LogEvent;
 import org.autorefactor.jdt.internal.corext.dom.JavaRefactoringRule;
 import org.autorefactor.jdt.internal.corext.dom.RefactoringRule;
 import org.autorefactor.jdt.internal.corext.dom.Refactorings;
 import org.autorefactor.jdt.internal.corext.dom.Release;
+import org.autorefactor.jdt.internal.corext.dom.RuleHealth;
 import org.autorefactor.preferences.Preferences;
-import org.autorefactor.util.AutoRefactorException;
 import org.autorefactor.util.NotImplementedException;
-import org.autorefactor.util.UnhandledException;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
@@ -59,6 +60,7 @@ import org.eclipse.jdt.core.dom.ArrayType;
 import org.eclipse.jdt.core.dom.AssertStatement;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.BlockComment;
 import org.eclipse.jdt.core.dom.BooleanLiteral;
 import org.eclipse.jdt.core.dom.BreakStatement;
@@ -144,8 +146,56 @@ import org.eclipse.jdt.core.dom.WildcardType;
  * performances. When one visitor refactors a subtree of the AST, visitors
  * coming after will not be able to visit it. Visitors throwing exceptions are
  * isolated and ignored for the rest of a run for stability.
+ * <p>
+ * An instance is meant to be built once per worker and reused for all the
+ * compilation units of the worker: {@link #setRefactoringContext(RefactoringContext)}
+ * resets the state of the aggregate and of the visitors before each pass.
  */
 public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRule {
+    /**
+     * The visitor methods overridden by each visitor class. They only depend on
+     * the class, so they are computed once and shared by all the workers.
+     */
+    private static final ClassValue<VisitorMethods> VISITOR_METHODS= new ClassValue<VisitorMethods>() {
+        @Override
+        protected VisitorMethods computeValue(Class<?> type) {
+            return new VisitorMethods(type);
+        }
+    };
+
+    /** The visitor methods overridden by a visitor class and its super classes. */
+    private static final class VisitorMethods {
+        private boolean preVisit;
+        private boolean preVisit2;
+        private boolean postVisit;
+        private final List<Class<?>> visitedTypes= new ArrayList<>();
+        private final List<Class<?>> endVisitedTypes= new ArrayList<>();
+
+        private VisitorMethods(Class<?> clazz) {
+            analyze(clazz);
+        }
+
+        private void analyze(Class<?> clazz) {
+            if (ASTVisitor.class.equals(clazz)) {
+                return;
+            }
+            for (Method m : clazz.getDeclaredMethods()) {
+                if (is("preVisit", m)) { //$NON-NLS-1$
+                    preVisit= true;
+                } else if (is("preVisit2", m)) { //$NON-NLS-1$
+                    preVisit2= true;
+                } else if (is("postVisit", m)) { //$NON-NLS-1$
+                    postVisit= true;
+                } else if (isVisit(m)) {
+                    visitedTypes.add(m.getParameterTypes()[0]);
+                } else if (isEndVisit(m)) {
+                    endVisitedTypes.add(m.getParameterTypes()[0]);
+                }
+            }
+            analyze(clazz.getSuperclass());
+        }
+    }
+
     private final Map<Class<?>, List<ASTVisitor>> visitorsMap= new HashMap<>();
     private final Map<Class<?>, List<ASTVisitor>> endVisitorsMap= new HashMap<>();
     private final Set<ASTVisitor> preVisitors= new LinkedHashSet<>();
@@ -156,6 +206,9 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     private RefactoringContext ctx;
     private final Set<ASTVisitor> visitorsContributingRefactoring= new HashSet<>();
+    /** Shared with the aggregates returned by {@link #getVisitorsEnabledBy(Collection)}. */
+    private final Set<ASTVisitor> faultyVisitors;
+    private final Set<ASTVisitor> trippedVisitors= new HashSet<>();
 
     /**
      * Builds an instance of this class.
@@ -163,9 +216,14 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
      * @param visitors the visitors that will be executed by this
      *                 {@link AggregateASTVisitor}
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" }) // $NON-NLS-2$
     public AggregateASTVisitor(List<RefactoringRule> visitors) {
+        this(visitors, new HashSet<ASTVisitor>());
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" }) // $NON-NLS-2$
+    private AggregateASTVisitor(List<RefactoringRule> visitors, Set<ASTVisitor> faultyVisitors) {
         this.visitors= (List) visitors;
+        this.faultyVisitors= faultyVisitors;
         analyzeVisitors();
     }
 
@@ -209,28 +267,23 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     private void analyzeVisitors() {
         for (ASTVisitor v : this.visitors) {
-            analyzeVisitor(v, v.getClass());
-        }
-    }
-
-    private void analyzeVisitor(ASTVisitor v, Class<?> clazz) {
-        if (ASTVisitor.class.equals(clazz)) {
-            return;
-        }
-        for (Method m : clazz.getDeclaredMethods()) {
-            if (is("preVisit", m)) { //$NON-NLS-1$
+            final VisitorMethods methods= VISITOR_METHODS.get(v.getClass());
+            if (methods.preVisit) {
                 preVisitors.add(v);
-            } else if (is("preVisit2", m)) { //$NON-NLS-1$
+            }
+            if (methods.preVisit2) {
                 preVisitors2.add(v);
-            } else if (is("postVisit", m)) { //$NON-NLS-1$
+            }
+            if (methods.postVisit) {
                 postVisitors.add(v);
-            } else if (isVisit(m)) {
-                put(visitorsMap, m.getParameterTypes()[0], v);
-            } else if (isEndVisit(m)) {
-                put(endVisitorsMap, m.getParameterTypes()[0], v);
+            }
+            for (Class<?> visitedType : methods.visitedTypes) {
+                put(visitorsMap, visitedType, v);
+            }
+            for (Class<?> endVisitedType : methods.endVisitedTypes) {
+                put(endVisitorsMap, endVisitedType, v);
             }
         }
-        analyzeVisitor(v, clazz.getSuperclass());
     }
 
     private static boolean is(String methodName, Method m) {
@@ -285,7 +338,8 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
     }
 
     /**
-     * Set the cleanup context.
+     * Set the cleanup context. It resets the visitors for a new pass, possibly on
+     * another compilation unit.
      *
      * @param ctx the cleanup context.
      */
@@ -296,6 +350,30 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
             v.setRefactoringContext(ctx);
         }
         this.visitorsContributingRefactoring.clear();
+        removeTrippedVisitors();
+    }
+
+    /**
+     * Removes the visitors which failed too many times during this run, possibly
+     * in other workers.
+     */
+    private void removeTrippedVisitors() {
+        final RuleHealth ruleHealth= ctx.getRefactoringRun().getRuleHealth();
+        for (ASTVisitor v : visitors) {
+            if (!trippedVisitors.contains(v) && ruleHealth.isTripped(v.getClass())) {
+                trippedVisitors.add(v);
+                faultyVisitors.add(v);
+                preVisitors.remove(v);
+                preVisitors2.remove(v);
+                postVisitors.remove(v);
+                for (List<ASTVisitor> visitorList : visitorsMap.values()) {
+                    visitorList.remove(v);
+                }
+                for (List<ASTVisitor> visitorList : endVisitorsMap.values()) {
+                    visitorList.remove(v);
+                }
+            }
+        }
     }
 
     /**
@@ -319,6 +397,15 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
         return this.ctx.getRefactorings();
     }
 
+    /**
+     * Returns the visitors executed by this aggregate.
+     *
+     * @return the visitors executed by this aggregate
+     */
+    public List<ASTVisitor> getVisitors() {
+        return Collections.unmodifiableList(visitors);
+    }
+
     /**
      * Returns the visitors that contributed cleanups in the last run.
      *
@@ -328,6 +415,67 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
         return visitorsContributingRefactoring;
     }
 
+    /**
+     * Returns an aggregate of the visitors which may have more work to do after
+     * the provided visitors contributed cleanups: the contributing visitors and
+     * the visitors consuming the node types they produce. The faulty visitors are
+     * shared with the returned aggregate, so that the visitors failing in any of
+     * them are skipped by the next aggregates.
+     *
+     * @param contributingVisitors the visitors which contributed cleanups
+     * @return this aggregate if all its visitors may have more work to do, a new
+     *         aggregate of a subset of its visitors otherwise
+     * @see AbstractCleanUpRule#getProducedNodeTypes()
+     * @see AbstractCleanUpRule#getConsumedNodeTypes()
+     */
+    public AggregateASTVisitor getVisitorsEnabledBy(Collection<ASTVisitor> contributingVisitors) {
+        final List<RefactoringRule> enabledVisitors= new ArrayList<>(visitors.size());
+        for (ASTVisitor v : visitors) {
+            if (!faultyVisitors.contains(v) && isEnabledBy(v, contributingVisitors)) {
+                enabledVisitors.add((RefactoringRule) v);
+            }
+        }
+        if (enabledVisitors.size() == visitors.size()) {
+            return this;
+        }
+        return new AggregateASTVisitor(enabledVisitors, faultyVisitors);
+    }
+
+    private static boolean isEnabledBy(ASTVisitor consumer, Collection<ASTVisitor> producers) {
+        if (producers.contains(consumer)) {
+            return true;
+        }
+        for (ASTVisitor producer : producers) {
+            if (isEnabledBy(consumer, producer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEnabledBy(ASTVisitor consumer, ASTVisitor producer) {
+        final Collection<Class<? extends ASTNode>> producedTypes= producer instanceof AbstractCleanUpRule
+                ? ((AbstractCleanUpRule) producer).getProducedNodeTypes()
+                : null;
+        if (producedTypes == null) {
+            return true;
+        }
+        final Collection<Class<? extends ASTNode>> consumedTypes= consumer instanceof AbstractCleanUpRule
+                ? ((AbstractCleanUpRule) consumer).getConsumedNodeTypes()
+                : null;
+        if (consumedTypes == null) {
+            return !producedTypes.isEmpty();
+        }
+        for (Class<? extends ASTNode> producedType : producedTypes) {
+            for (Class<? extends ASTNode> consumedType : consumedTypes) {
+                if (producedType.isAssignableFrom(consumedType) || consumedType.isAssignableFrom(producedType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Verify whether the following visitors can visit the current node.
      *
@@ -354,9 +502,8 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
     }
 
     private void logBadlyBehavedVisitor(ASTVisitor v, ASTNode node) {
-        String message= "Visitor " + v.getClass().getName() + " is badly behaved:" //$NON-NLS-1$ $NON-NLS-2$
-                + " it reported doing a refactoring, but it did not actually contribute any refactoring."; //$NON-NLS-1$
-        ctx.getLogger().error(message, new AutoRefactorException(node, message));
+        ctx.getLogger().log(newLogEvent(LogEvent.Category.BADLY_BEHAVED_RULE, v, node,
+                "it reported doing a refactoring, but it did not actually contribute any refactoring.", null)); //$NON-NLS-1$
     }
 
     private void logFaultyVisitor(ASTVisitor v, ASTNode node, Exception e) {
@@ -364,9 +511,34 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
             // Let the user cancel the current operation
             throw (OperationCanceledException) e;
         }
-        String message= "Visitor " + v.getClass().getName() + " is faulty," //$NON-NLS-1$ $NON-NLS-2$
-                + " it will be disabled for the rest of this run."; //$NON-NLS-1$
-        ctx.getLogger().error(message, new UnhandledException(node, message, e));
+        faultyVisitors.add(v);
+        final RuleHealth ruleHealth= ctx.getRefactoringRun().getRuleHealth();
+        final String message;
+        if (ruleHealth.recordFailure(v.getClass())) {
+            message= "it failed " + ruleHealth.getMaxFailures() //$NON-NLS-1$
+                    + " times and will be skipped for the rest of this run."; //$NON-NLS-1$
+        } else {
+            message= "this worker will skip it on this kind of node for the rest of this run."; //$NON-NLS-1$
+        }
+        ctx.getLogger().log(newLogEvent(LogEvent.Category.FAULTY_RULE, v, node, message, e));
+    }
+
+    /**
+     * Builds the event from the rule and the node without formatting anything, so
+     * that the events which are not logged cost nearly nothing.
+     */
+    private LogEvent newLogEvent(LogEvent.Category category, ASTVisitor v, ASTNode node, String message,
+            Exception e) {
+        final String file= ctx.getCompilationUnit() != null ? ctx.getCompilationUnit().getPath().toString() : null;
+        int line= -1;
+        int column= -1;
+        if (node != null && node.getRoot() instanceof CompilationUnit) {
+            final CompilationUnit astRoot= (CompilationUnit) node.getRoot();
+            line= astRoot.getLineNumber(node.getStartPosition());
+            column= astRoot.getColumnNumber(node.getStartPosition()) + 1;
+        }
+        return new LogEvent(LogEvent.Severity.ERROR, category, v.getClass().getName(), file, line, column, message,
+                e);
     }
 
     /**
@@ -1655,6 +1827,10 @@ public class AggregateASTVisitor extends ASTVisitor implements JavaRefactoringRu
 
     @Override
     public boolean preVisit2(ASTNode node) {
+        if (node instanceof BodyDeclaration && !ctx.isInChangedLines(node)) {
+            // Only the declarations changed by the developer are refactored
+            return false;
+        }
         for (Iterator<ASTVisitor> iter= preVisitors2.iterator(); iter.hasNext();) {
             final ASTVisitor v= iter.next();
             try {
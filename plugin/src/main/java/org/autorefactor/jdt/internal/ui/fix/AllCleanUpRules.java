@@ -27,6 +27,8 @@
 package org.autorefactor.jdt.internal.ui.fix;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -76,6 +78,7 @@ public final class AllCleanUpRules {
                 new XORRatherThanDuplicateConditionsCleanUp(), new ORConditionRatherThanRedundantClausesCleanUp(),
                 new TernaryOperatorRatherThanDuplicateConditionsCleanUp(),
                 // Must come after BooleanRefactoring, which may remove some targets
+                // (declared in getOrderingSegmentStarts())
                 new WorkWithNullCheckedExpressionFirstCleanUp(), new InvertEqualsCleanUp(), new ComparisonCleanUp(),
                 new DoubleCompareRatherThanEqualityCleanUp(), new RemoveUnneededThisExpressionCleanUp(),
                 new AggregateConstructorRatherThanGWTMethodCleanUp(),
@@ -133,6 +136,26 @@ public final class AllCleanUpRules {
                 new SimpleNameRatherThanQualifiedNameCleanUp(), new SimplifyExpressionCleanUp());
     }
 
+    /**
+     * Returns the cleanup rules declaring an ordering constraint: each of them
+     * must run after all the cleanup rules coming before it in
+     * {@link #getAllCleanUpRules()}. Reordering the cleanup rules is only allowed
+     * between two such cleanup rules.
+     *
+     * @return the cleanup rules declaring an ordering constraint
+     */
+    public static Collection<Class<?>> getOrderingSegmentStarts() {
+        return Arrays.<Class<?>>asList(
+                // Must come after BooleanRefactoring, which may remove some targets
+                WorkWithNullCheckedExpressionFirstCleanUp.class,
+                // Those cleanups should end the list because they clean the previous
+                // changes
+                RemoveSemiColonCleanUp.class, AddBracketsToControlStatementCleanUp.class,
+                RemoveUnnecessaryLocalBeforeReturnCleanUp.class, RedundantModifiersCleanUp.class,
+                RemoveUnnecessaryCastCleanUp.class, PushNegationDownCleanUp.class,
+                SimpleNameRatherThanQualifiedNameCleanUp.class, SimplifyExpressionCleanUp.class);
+    }
+
     private static List<RefactoringRule> newArrayList(final RefactoringRule... refactorings) {
         final List<RefactoringRule> results= new ArrayList<RefactoringRule>(refactorings.length);
         for (RefactoringRule r : refactorings) {
@@ -114,7 +114,7 @@ public class AndroidViewHolderCleanUp extends AbstractCleanUpRule {
             if (visitor.canApplyRefactoring()) {
                 final ASTNodeFactory b= this.ctx.getASTBuilder();
                 final Refactorings r= this.ctx.getRefactorings();
-                final TypeNameDecider typeNameDecider= new TypeNameDecider(visitor.viewVariableName);
+                final TypeNameDecider typeNameDecider= TypeNameDecider.of(visitor.viewVariableName);
 
                 // Transform tree
 
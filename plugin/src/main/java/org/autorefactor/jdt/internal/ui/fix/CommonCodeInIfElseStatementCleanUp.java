@@ -34,6 +34,7 @@ import java.util.List;
 import org.autorefactor.jdt.internal.corext.dom.ASTMatcherSameVariablesAndMethods;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodeFactory;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodes;
+import org.autorefactor.jdt.internal.corext.dom.ASTSemanticHasher;
 import org.autorefactor.jdt.internal.corext.dom.ASTSemanticMatcher;
 import org.autorefactor.jdt.internal.corext.dom.Refactorings;
 import org.autorefactor.util.IllegalStateException;
@@ -99,7 +100,8 @@ public class CommonCodeInIfElseStatementCleanUp extends AbstractCleanUpRule {
             // Identify matching statements starting from the end of each case
             boolean hasCodeToMove= false;
             for (int stmtIndex= 1; stmtIndex <= minSize; stmtIndex++) {
-                if (!match(matcher, allCasesStatements, stmtIndex, 0, allCasesStatements.size())
+                if (!haveSameHash(allCasesStatements, stmtIndex)
+                        || !match(matcher, allCasesStatements, stmtIndex, 0, allCasesStatements.size())
                         || anyContains(caseStmtsToRemove, allCasesStatements, stmtIndex)) {
                     break;
                 }
@@ -238,6 +240,18 @@ public class CommonCodeInIfElseStatementCleanUp extends AbstractCleanUpRule {
         }
     }
 
+    private boolean haveSameHash(List<List<Statement>> allCasesStatements, int stmtIndex) {
+        final List<Statement> firstCaseStmts= allCasesStatements.get(0);
+        final int firstHash= ASTSemanticHasher.hash(firstCaseStmts.get(firstCaseStmts.size() - stmtIndex));
+        for (int i= 1; i < allCasesStatements.size(); i++) {
+            final List<Statement> caseStmts= allCasesStatements.get(i);
+            if (ASTSemanticHasher.hash(caseStmts.get(caseStmts.size() - stmtIndex)) != firstHash) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean match(ASTSemanticMatcher matcher, List<List<Statement>> allCasesStatements, int stmtIndex,
             int startIndex, int endIndex) {
         if (startIndex == endIndex || startIndex == endIndex - 1) {
@@ -143,7 +143,7 @@ public class GenericListRatherThanRawListCleanUp extends AbstractClassSubstitute
             return null;
         }
 
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(originalExpression);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(originalExpression);
 
         final ParameterizedType parameterizedType= b.getAST().newParameterizedType(b.copy(origType));
         ASTNodes.typeArguments(parameterizedType).clear();
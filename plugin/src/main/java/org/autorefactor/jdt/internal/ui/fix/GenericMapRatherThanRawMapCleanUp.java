@@ -162,7 +162,7 @@ public class GenericMapRatherThanRawMapCleanUp extends AbstractClassSubstituteCl
             return null;
         }
 
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(originalExpression);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(originalExpression);
 
         final ParameterizedType parameterizedType= b.getAST().newParameterizedType(b.copy(origType));
         final List<Type> typeArgs= ASTNodes.typeArguments(parameterizedType);
@@ -263,7 +263,7 @@ public class LambdaCleanUp extends AbstractCleanUpRule {
     private void replaceByCreationReference(final LambdaExpression node, final ClassInstanceCreation ci) {
         final ASTNodeFactory b= ctx.getASTBuilder();
 
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(ci);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(ci);
 
         final CreationReference creationRef= b.creationRef();
         creationRef.setType(b.toType(ci.resolveTypeBinding().getErasure(), typeNameDecider));
@@ -281,7 +281,7 @@ public class LambdaCleanUp extends AbstractCleanUpRule {
     private void replaceByTypeReference(final LambdaExpression node, final MethodInvocation mi) {
         final ASTNodeFactory b= ctx.getASTBuilder();
 
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(mi);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(mi);
 
         final TypeMethodReference typeMethodRef= b.typeMethodRef();
         typeMethodRef.setType(b.toType(ASTNodes.getCalledType(mi).getErasure(), typeNameDecider));
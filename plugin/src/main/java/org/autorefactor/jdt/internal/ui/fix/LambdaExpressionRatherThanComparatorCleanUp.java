@@ -240,7 +240,7 @@ public class LambdaExpressionRatherThanComparatorCleanUp extends NewClassImportC
         final ASTNodeFactory b= ctx.getASTBuilder();
         final Refactorings r= ctx.getRefactorings();
 
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(method);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(method);
 
         final TypeMethodReference typeMethodRef= b.typeMethodRef();
         typeMethodRef.setType(b.toType(type, typeNameDecider));
@@ -261,7 +261,7 @@ public class LambdaExpressionRatherThanComparatorCleanUp extends NewClassImportC
         final ASTNodeFactory b= ctx.getASTBuilder();
         final Refactorings r= ctx.getRefactorings();
 
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(field);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(field);
 
         final LambdaExpression lambdaExpression= b.lambda();
         final ITypeBinding destinationType= ASTNodes.getTargetType(node);
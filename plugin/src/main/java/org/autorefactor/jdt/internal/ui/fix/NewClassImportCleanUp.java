@@ -35,6 +35,7 @@ import org.autorefactor.jdt.internal.corext.dom.InterruptibleVisitor;
 import org.autorefactor.jdt.internal.corext.dom.Refactorings;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ImportDeclaration;
 import org.eclipse.jdt.core.dom.SimpleName;
@@ -69,6 +70,13 @@ public abstract class NewClassImportCleanUp extends AbstractCleanUpRule {
         public Set<String> getClassesToUseWithImport() {
             return classesToUseWithImport;
         }
+
+        @Override
+        public boolean preVisit2(ASTNode node) {
+            // This visitor walks the whole compilation unit by itself,
+            // so it skips the declarations outside the lines to refactor like the aggregate visitor does
+            return !(node instanceof BodyDeclaration) || ctx.isInChangedLines(node);
+        }
     }
 
     private class LocalClassVisitor extends InterruptibleVisitor {
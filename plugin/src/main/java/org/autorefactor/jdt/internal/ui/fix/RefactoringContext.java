@@ -25,13 +25,22 @@
  */
 package org.autorefactor.jdt.internal.ui.fix;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.autorefactor.cfg.CFGBuilder;
+import org.autorefactor.cfg.MethodDataFlow;
 import org.autorefactor.environment.Environment;
 import org.autorefactor.environment.Logger;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodeFactory;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodes;
 import org.autorefactor.jdt.internal.corext.dom.JavaProjectOptions;
+import org.autorefactor.jdt.internal.corext.dom.LineRanges;
+import org.autorefactor.jdt.internal.corext.dom.RefactoringRun;
 import org.autorefactor.jdt.internal.corext.dom.Refactorings;
 import org.autorefactor.jdt.internal.corext.dom.SourceLocation;
+import org.autorefactor.util.IllegalStateException;
+import org.autorefactor.util.NotImplementedException;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -40,6 +49,7 @@ import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Comment;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 
 /** Class holding necessary data for a refactoring. */
 public class RefactoringContext {
@@ -50,6 +60,23 @@ public class RefactoringContext {
     private final JavaProjectOptions options;
     private final SubMonitor monitor;
     private final Environment environment;
+    private final RefactoringRun run;
+    private final Map<MethodDeclaration, MethodDataFlow> dataFlows= new IdentityHashMap<>();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param compilationUnit the compilation unit to refactor
+     * @param astRoot         the compilation unit, root of the AST
+     * @param options         the Java project options used to compile the project
+     * @param monitor         the progress monitor of the current job
+     * @param environment     the environment
+     * @param run             the state shared by all the workers of the run
+     */
+    public RefactoringContext(ICompilationUnit compilationUnit, CompilationUnit astRoot, JavaProjectOptions options,
+            SubMonitor monitor, Environment environment, RefactoringRun run) {
+        this(compilationUnit, astRoot, options, monitor, environment, run, null);
+    }
 
     /**
      * Builds an instance of this class.
@@ -59,14 +86,18 @@ public class RefactoringContext {
      * @param options         the Java project options used to compile the project
      * @param monitor         the progress monitor of the current job
      * @param environment     the environment
+     * @param run             the state shared by all the workers of the run
+     * @param changedLines    the only lines to refactor, or null to refactor all
+     *                        the lines
      */
     public RefactoringContext(ICompilationUnit compilationUnit, CompilationUnit astRoot, JavaProjectOptions options,
-            SubMonitor monitor, Environment environment) {
+            SubMonitor monitor, Environment environment, RefactoringRun run, LineRanges changedLines) {
         this.compilationUnit= compilationUnit;
         this.astRoot= astRoot;
         this.monitor= monitor;
         this.environment= environment;
-        this.refactorings= new Refactorings(astRoot, environment.getEventLoop(), monitor);
+        this.run= run;
+        this.refactorings= new Refactorings(astRoot, environment.getEventLoop(), monitor, changedLines);
         this.astBuilder= new ASTNodeFactory(refactorings);
         this.options= options;
     }
@@ -116,6 +147,15 @@ public class RefactoringContext {
         return monitor;
     }
 
+    /**
+     * Returns the state shared by all the workers of the current run.
+     *
+     * @return the state shared by all the workers of the current run
+     */
+    public RefactoringRun getRefactoringRun() {
+        return run;
+    }
+
     /**
      * Returns the {@link Refactorings} object containing the changes that must be
      * applied to the AST.
@@ -127,6 +167,34 @@ public class RefactoringContext {
         return refactorings;
     }
 
+    /**
+     * Returns the data flow analyses of the provided method.
+     * <p>
+     * The CFG of the method is built on the first call, then the analyses are
+     * cached until the end of the current refactoring iteration.
+     *
+     * @param node the method declaration
+     * @return the data flow analyses of the provided method, or null if the
+     *         method has no body or if its CFG cannot be built
+     */
+    public MethodDataFlow getDataFlow(MethodDeclaration node) {
+        if (dataFlows.containsKey(node)) {
+            return dataFlows.get(node);
+        }
+
+        MethodDataFlow dataFlow= null;
+        if (node.getBody() != null) {
+            try {
+                dataFlow= new MethodDataFlow(new CFGBuilder(getSource(node), options).buildCFG(node));
+            } catch (NotImplementedException | IllegalStateException e) {
+                // Some constructs are not supported by the CFG builder yet
+                dataFlow= null;
+            }
+        }
+        dataFlows.put(node, dataFlow);
+        return dataFlow;
+    }
+
     String getSource(ASTNode node) {
         try {
             return compilationUnit.getSource();
@@ -135,6 +203,17 @@ public class RefactoringContext {
         }
     }
 
+    /**
+     * Returns whether the provided node intersects the lines to refactor.
+     *
+     * @param node the node
+     * @return true if the provided node intersects the lines to refactor, false
+     *         otherwise
+     */
+    public boolean isInChangedLines(ASTNode node) {
+        return refactorings.isInChangedLines(node.getStartPosition(), SourceLocation.getEndPosition(node));
+    }
+
     boolean isInComment(int position) {
         for (Comment comment : ASTNodes.getCommentList(astRoot)) {
             if (comment.getStartPosition() <= position && position <= SourceLocation.getEndPosition(comment)) {
@@ -26,6 +26,8 @@
 package org.autorefactor.jdt.internal.ui.fix;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -90,6 +92,19 @@ public class RemoveSemiColonCleanUp extends AbstractCleanUpRule {
         return MultiFixMessages.CleanUpRefactoringWizard_RemoveSemiColonCleanUp_reason;
     }
 
+    @Override
+    public Collection<Class<? extends ASTNode>> getProducedNodeTypes() {
+        // Only removes tokens: it cannot give more work to any other cleanup rule
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Collection<Class<? extends ASTNode>> getConsumedNodeTypes() {
+        // The source between the body declarations and after the try resources
+        return Arrays.<Class<? extends ASTNode>>asList(BodyDeclaration.class, TryStatement.class,
+                VariableDeclarationExpression.class);
+    }
+
     @Override
     public boolean visit(AnnotationTypeDeclaration node) {
         return visit((BodyDeclaration) node);
@@ -155,7 +155,7 @@ public class SetRatherThanMapCleanUp extends AbstractClassSubstituteCleanUp {
         }
 
         final ITypeBinding origTypeBinding= origType.resolveBinding();
-        final TypeNameDecider typeNameDecider= new TypeNameDecider(originalExpression);
+        final TypeNameDecider typeNameDecider= TypeNameDecider.of(originalExpression);
 
         if (origTypeBinding.isParameterizedType()) {
             final ITypeBinding[] origTypeArgs= origTypeBinding.getTypeArguments();
@@ -45,9 +45,7 @@ import org.autorefactor.jdt.internal.corext.dom.ASTNodeFactory;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodes;
 import org.autorefactor.jdt.internal.corext.dom.CollectorVisitor;
 import org.autorefactor.util.NotImplementedException;
-import org.autorefactor.util.UnhandledException;
 import org.autorefactor.util.Utils;
-import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
@@ -71,11 +69,6 @@ import org.eclipse.jdt.core.dom.QualifiedName;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
-import org.eclipse.jdt.core.search.IJavaSearchConstants;
-import org.eclipse.jdt.core.search.SearchEngine;
-import org.eclipse.jdt.core.search.SearchPattern;
-import org.eclipse.jdt.core.search.TypeNameMatch;
-import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
 
 /** See {@link #getDescription()} method. */
 public class SimpleNameRatherThanQualifiedNameCleanUp extends AbstractCleanUpRule {
@@ -494,32 +487,9 @@ public class SimpleNameRatherThanQualifiedNameCleanUp extends AbstractCleanUpRul
     }
 
     private void importTypesFromPackage(final String pkgName, ASTNode node) {
-        final TypeNameMatchRequestor importTypeCollector= new TypeNameMatchRequestor() {
-            @Override
-            public void acceptTypeNameMatch(TypeNameMatch typeNameMatch) {
-                final boolean isTopLevelType= typeNameMatch.getType().getDeclaringType() == null;
-                if (isTopLevelType) {
-                    if (!pkgName.equals(typeNameMatch.getPackageName())) {
-                        // Sanity check failed
-                        throw new IllegalStateException("Expected package '" + typeNameMatch.getPackageName() //$NON-NLS-1$
-                                + "' to be equal to '" + pkgName + "'"); //$NON-NLS-1$ $NON-NLS-2$
-                    }
-                    QName qname= QName.valueOf(typeNameMatch.getFullyQualifiedName());
-                    types.addName(FQN.fromImport(qname, true));
-                }
-            }
-        };
-
-        try {
-            final SearchEngine searchEngine= new SearchEngine();
-            searchEngine.searchAllTypeNames(pkgName.toCharArray(), SearchPattern.R_EXACT_MATCH, // search in this package
-                    null, SearchPattern.R_EXACT_MATCH, // do not filter by type name
-                    TYPE, // look for all java types (class, interfaces, enums, etc.)
-                    SearchEngine.createWorkspaceScope(), // search everywhere
-                    importTypeCollector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, // wait in case the indexer is indexing
-                    ctx.getProgressMonitor());
-        } catch (JavaModelException e) {
-            throw new UnhandledException(node, e);
+        for (String typeName : ctx.getRefactoringRun().getPackageTypesCache().getTopLevelTypes(pkgName, node,
+                ctx.getProgressMonitor())) {
+            types.addName(FQN.fromImport(QName.valueOf(typeName), true));
         }
     }
 
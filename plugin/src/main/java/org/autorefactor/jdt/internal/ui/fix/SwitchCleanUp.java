@@ -29,13 +29,16 @@ package org.autorefactor.jdt.internal.ui.fix;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.autorefactor.jdt.internal.corext.dom.ASTMatcherSameVariablesAndMethods;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodeFactory;
 import org.autorefactor.jdt.internal.corext.dom.ASTNodes;
+import org.autorefactor.jdt.internal.corext.dom.ASTSemanticHasher;
 import org.autorefactor.jdt.internal.corext.dom.FinderVisitor;
 import org.autorefactor.jdt.internal.corext.dom.Refactorings;
 import org.autorefactor.util.NotImplementedException;
@@ -407,13 +410,29 @@ public class SwitchCleanUp extends AbstractCleanUpRule {
     public boolean visit(final SwitchStatement node) {
         final List<SwitchCaseSection> switchStructure= getSwitchStructure(node);
 
+        // Only the sections with the same hash code may have the same code
+        final int[] codeHashes= new int[switchStructure.size()];
+        final Map<Integer, List<Integer>> sectionIndexesByHash= new HashMap<>();
+        for (int i= 0; i < switchStructure.size(); i++) {
+            codeHashes[i]= ASTSemanticHasher.hashAll(switchStructure.get(i).statements);
+            List<Integer> sectionIndexes= sectionIndexesByHash.get(codeHashes[i]);
+            if (sectionIndexes == null) {
+                sectionIndexes= new ArrayList<>();
+                sectionIndexesByHash.put(codeHashes[i], sectionIndexes);
+            }
+            sectionIndexes.add(i);
+        }
+
         for (int referenceIndex= 0; referenceIndex < switchStructure.size() - 1; referenceIndex++) {
             final SwitchCaseSection referenceCase= switchStructure.get(referenceIndex);
             if (referenceCase.fallsThrough()) {
                 continue;
             }
 
-            for (int comparedIndex= referenceIndex + 1; comparedIndex < switchStructure.size(); comparedIndex++) {
+            for (int comparedIndex : sectionIndexesByHash.get(codeHashes[referenceIndex])) {
+                if (comparedIndex <= referenceIndex) {
+                    continue;
+                }
                 final SwitchCaseSection comparedCase= switchStructure.get(comparedIndex);
                 if (referenceCase.hasSameCode(comparedCase)) {
                     if (!previousSectionFallsthrough(switchStructure, comparedIndex)) {
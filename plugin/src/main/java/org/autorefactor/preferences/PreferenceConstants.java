@@ -28,7 +28,23 @@ package org.autorefactor.preferences;
 /** Interface holding preference constants. */
 public enum PreferenceConstants {
     /** Preference that turns debug mode on or off. */
-    DEBUG_MODE_ON("debug_mode_on", "Enable debug mode (for developers)", Boolean.FALSE); //$NON-NLS-1$ $NON-NLS-2$
+    DEBUG_MODE_ON("debug_mode_on", "Enable debug mode (for developers)", Boolean.FALSE), //$NON-NLS-1$ $NON-NLS-2$
+    /**
+     * Preference that turns on the rule order driven by how often each rule fired
+     * on the project.
+     */
+    ADAPTIVE_RULE_ORDER_ON("adaptive_rule_order_on", //$NON-NLS-1$
+            "Run first the rules which fire the most on the project and skip the idle ones until a final full pass", //$NON-NLS-1$
+            Boolean.FALSE),
+    /** Preference for the number of runs without firing after which a rule is skipped by the adaptive order. */
+    MAX_IDLE_RUNS("max_idle_runs", "Number of runs without firing before the adaptive order skips a rule", //$NON-NLS-1$ $NON-NLS-2$
+            Integer.valueOf(5)),
+    /** Preference that turns on writing all the changed files at the end of the run, in one workspace operation. */
+    TRANSACTIONAL_MODE_ON("transactional_mode_on", //$NON-NLS-1$
+            "Write all the changed files at the end of the run (a cancelled run changes no file)", Boolean.FALSE), //$NON-NLS-1$
+    /** Preference for the git reference the changed lines to refactor are computed against. */
+    CHANGED_LINES_BASE_REF("changed_lines_base_ref", //$NON-NLS-1$
+            "Git reference (branch, tag or commit) the changed lines to clean up are computed against", "HEAD"); //$NON-NLS-1$ $NON-NLS-2$
 
     /** TODO use this for preferences initialization. */
     private static final String JDT_ALWAYS_USE_THIS_FOR_NON_STATIC_METHOD_ACCESS= "cleanup.always_use_this_for_non_static_method_access"; //$NON-NLS-1$
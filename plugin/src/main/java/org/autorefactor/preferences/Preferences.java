@@ -36,6 +36,40 @@ public interface Preferences {
      */
     boolean debugModeOn();
 
+    /**
+     * Returns whether the rule order is driven by how often each rule fired on
+     * the project.
+     *
+     * @return true if the adaptive rule order is on, false otherwise.
+     */
+    boolean adaptiveRuleOrderOn();
+
+    /**
+     * Returns the number of runs without firing after which the adaptive rule
+     * order skips a rule until the final full pass.
+     *
+     * @return the number of runs without firing, 0 to never skip any rule.
+     */
+    int getMaxIdleRuns();
+
+    /**
+     * Returns whether the workers compute the new content of the files in
+     * memory and all the changed files are written at the end of the run, in
+     * one workspace operation.
+     *
+     * @return true if the changed files are written at the end of the run, false
+     *         if they are written as soon as they are refactored.
+     */
+    boolean transactionalModeOn();
+
+    /**
+     * Returns the git reference the changed lines to refactor are computed
+     * against.
+     *
+     * @return the git reference, for example <code>HEAD</code>.
+     */
+    String getChangedLinesBaseRef();
+
     /**
      * Returns whether this cleanup rule is on.
      *